@@ -2,7 +2,9 @@ package me.vrekt.lunar;
 
 import me.vrekt.lunar.input.InputListener;
 import me.vrekt.lunar.input.MouseInput;
+import me.vrekt.lunar.render.DirtyRegions;
 import me.vrekt.lunar.state.GameState;
+import me.vrekt.lunar.utilities.LoopPacer;
 import me.vrekt.lunar.window.FramePreferences;
 
 import javax.swing.JFrame;
@@ -10,18 +12,25 @@ import javax.swing.WindowConstants;
 
 import java.awt.Color;
 import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.event.KeyListener;
 import java.awt.event.MouseListener;
 import java.awt.image.BufferStrategy;
-import java.util.ArrayList;
+import java.awt.image.BufferedImage;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class Game implements Runnable {
     private JFrame frame;
     private int width, height, fps;
 
     private Thread thread;
-    private boolean running = true;
+    // the threads of threaded mode, ticks and frames run on their own thread.
+    private Thread simulationThread, renderThread;
+    private boolean threaded;
+    private long tickInterval;
+    private volatile boolean running = true;
 
     private Graphics graphics;
 
@@ -31,6 +40,18 @@ public class Game implements Runnable {
     
     private boolean showFPS = false;
 
+    // dirty region mode keeps the last frame in the back buffer and only redraws what changed.
+    private final DirtyRegions dirtyRegions = new DirtyRegions();
+    private boolean dirtyRegionMode = false;
+    private BufferedImage backBuffer;
+
+    // how far the loop is between the last tick and the next when a frame is drawn.
+    private float interpolationAlpha = 1;
+
+    // waits between ticks and frames so the loop doesn't keep a core busy, frames have their own in threaded mode.
+    private final LoopPacer pacer = new LoopPacer();
+    private final LoopPacer renderPacer = new LoopPacer();
+
     /**
      * Initialize the project.
      *
@@ -43,7 +64,7 @@ public class Game implements Runnable {
         this.width = width;
         this.height = height;
 
-        stack = new ArrayList<>();
+        stack = new CopyOnWriteArrayList<>();
 
         this.maxTPS = tickRate;
 
@@ -86,7 +107,7 @@ public class Game implements Runnable {
         this.width = width;
         this.height = height;
 
-        stack = new ArrayList<>();
+        stack = new CopyOnWriteArrayList<>();
 
         maxTPS = tickRate;
 
@@ -115,7 +136,7 @@ public class Game implements Runnable {
     	this.width = width;
         this.height = height;
 
-        stack = new ArrayList<>();
+        stack = new CopyOnWriteArrayList<>();
         addToStack(state);
 
         maxTPS = tickRate;
@@ -140,6 +161,14 @@ public class Game implements Runnable {
         frame.createBufferStrategy(3);
 
         running = true;
+        tickInterval = 1000000000L / maxTPS;
+        if (threaded) {
+            simulationThread = new Thread(this::simulate, "Simulation");
+            renderThread = new Thread(this::render, "Render");
+            simulationThread.start();
+            renderThread.start();
+            return;
+        }
         thread = new Thread(this);
         thread.start();
     }
@@ -151,6 +180,11 @@ public class Game implements Runnable {
     public synchronized void stop() {
         running = false;
         try {
+            if (threaded) {
+                simulationThread.join();
+                renderThread.join();
+                return;
+            }
             thread.join();
         } catch (InterruptedException e) {
             e.printStackTrace();
@@ -164,46 +198,110 @@ public class Game implements Runnable {
 
     @Override
     public void run() {
-        long lastTime = System.nanoTime();
-        
-        double maxTickDelta = 1000000000 / maxTPS;
-        double d = 0;
-        
-        long now = System.currentTimeMillis();
+        long start = System.nanoTime();
+        long nextTick = start + tickInterval;
+        long nextFrame = start;
+        long nextSecond = start + 1000000000L;
         int frameCount = 0;
 
         while (running) {
             long current = System.nanoTime();
-            
-            // Ticking
-            
-            d += (current - lastTime) / maxTickDelta;
-            while (d >= 1) {
+
+            // Ticking, more than a second behind the ticks are skipped instead of caught up.
+
+            if (current - nextTick > 1000000000L) {
+                nextTick = current;
+            }
+            while (current >= nextTick) {
                 onTick();
-                d--;
+                nextTick += tickInterval;
             }
-            
-            // Drawing
+            interpolationAlpha = 1 - (float) (nextTick - current) / tickInterval;
+
+            // Drawing, limited frames are spaced evenly within the second.
 
-            if (frameCount < maxFPS || maxFPS == 0) {
-            	onDraw();
+            long frameInterval = maxFPS == 0 ? 0 : 1000000000L / maxFPS;
+            if (frameInterval == 0 || current >= nextFrame) {
+                onDraw();
                 frameCount++;
+                // a frame more than an interval late starts a new schedule instead of a burst.
+                nextFrame = nextFrame + frameInterval > current ? nextFrame + frameInterval : current + frameInterval;
             }
 
             // Updating FPS count
-            
-            if (System.currentTimeMillis() - now >= 1000) {
-                now += 1000;
+
+            if (current >= nextSecond) {
+                nextSecond += 1000000000L;
                 fps = frameCount;
                 frameCount = 0;
             }
-            
-            lastTime = current;
 
+            // Waiting, unlimited frames draw again right away.
+
+            if (frameInterval != 0) {
+                pacer.waitUntil(Math.min(nextTick, nextFrame));
+            }
         }
         stop();
     }
 
+    /**
+     * The simulation thread of threaded mode, ticks the states and publishes their snapshots after every tick.
+     */
+    private void simulate() {
+        long nextTick = System.nanoTime() + tickInterval;
+        long tick = 0;
+
+        while (running) {
+            long current = System.nanoTime();
+            if (current - nextTick > 1000000000L) {
+                nextTick = current;
+            }
+            if (current >= nextTick) {
+                while (current >= nextTick) {
+                    onTick();
+                    tick++;
+                    nextTick += tickInterval;
+                }
+                // drawn from when the last tick was due, so frames move at the tick rate.
+                long due = nextTick - tickInterval;
+                for (GameState state : stack) {
+                    state.publishSnapshot(tick, due);
+                }
+            }
+            pacer.waitUntil(nextTick);
+        }
+    }
+
+    /**
+     * The render thread of threaded mode, draws the latest snapshots of the states.
+     */
+    private void render() {
+        long nextFrame = System.nanoTime();
+        long nextSecond = nextFrame + 1000000000L;
+        int frameCount = 0;
+
+        while (running) {
+            long current = System.nanoTime();
+            long frameInterval = maxFPS == 0 ? 0 : 1000000000L / maxFPS;
+            if (frameInterval == 0 || current >= nextFrame) {
+                onDraw();
+                frameCount++;
+                nextFrame = nextFrame + frameInterval > current ? nextFrame + frameInterval : current + frameInterval;
+            }
+
+            if (current >= nextSecond) {
+                nextSecond += 1000000000L;
+                fps = frameCount;
+                frameCount = 0;
+            }
+
+            if (frameInterval != 0) {
+                renderPacer.waitUntil(nextFrame);
+            }
+        }
+    }
+
     /**
      * Draw all game objects.
      */
@@ -215,9 +313,19 @@ public class Game implements Runnable {
             frameStrategy = frame.getBufferStrategy();
         }
         graphics = frameStrategy.getDrawGraphics();
-        graphics.clearRect(0, 0, width, height);
-        
-        stack.forEach(state -> state.onDraw(graphics));
+        if (threaded) {
+            graphics.clearRect(0, 0, width, height);
+            long now = System.nanoTime();
+            stack.forEach(state -> state.drawLatestSnapshot(graphics, now, tickInterval));
+        } else if (dirtyRegionMode) {
+            stack.forEach(state -> state.setInterpolationAlpha(interpolationAlpha));
+            drawDirtyRegions();
+            graphics.drawImage(backBuffer, 0, 0, null);
+        } else {
+            stack.forEach(state -> state.setInterpolationAlpha(interpolationAlpha));
+            graphics.clearRect(0, 0, width, height);
+            stack.forEach(state -> state.onDraw(graphics));
+        }
 
         if (showFPS) {
         	graphics.setColor(Color.GRAY);
@@ -229,6 +337,30 @@ public class Game implements Runnable {
 
     }
 
+    /**
+     * Redraw the changed regions of the back buffer, the states draw with a clip so only those pixels are touched.
+     */
+    private void drawDirtyRegions() {
+        if (backBuffer == null) {
+            backBuffer = frame.getGraphicsConfiguration().createCompatibleImage(width, height);
+            dirtyRegions.markAllDirty();
+        }
+
+        if (!dirtyRegions.isEmpty()) {
+            Graphics2D bufferGraphics = backBuffer.createGraphics();
+            bufferGraphics.setBackground(frame.getBackground());
+            bufferGraphics.setClip(dirtyRegions.toClip());
+            for (int i = 0; i < dirtyRegions.size(); i++) {
+                Rectangle region = dirtyRegions.get(i);
+                bufferGraphics.clearRect(region.x, region.y, region.width, region.height);
+            }
+
+            stack.forEach(state -> state.onDraw(bufferGraphics));
+            bufferGraphics.dispose();
+        }
+        dirtyRegions.finishFrame();
+    }
+
     /**
      * Update all game objects.
      */
@@ -237,6 +369,53 @@ public class Game implements Runnable {
         stack.forEach(GameState::onTick);
     }
 
+    /**
+     * Get how far the game loop is between the last tick and the next, from zero to one.
+     * Entities drawn between their position when the tick began and their position now using this move
+     * smoothly even when the tick rate is far below the frame rate.
+     */
+    public float getInterpolationAlpha() {
+        return interpolationAlpha;
+    }
+
+    /**
+     * Get the pacer the game loop waits with, it records how precisely ticks and frames start.
+     * The loop only waits when the frame rate is limited with {@link #setMaxFPS(int)}.
+     * In threaded mode it is the pacer of the simulation thread, which always waits for the next tick.
+     */
+    public LoopPacer getPacer() {
+        return pacer;
+    }
+
+    /**
+     * Get the pacer the render thread waits with in threaded mode.
+     */
+    public LoopPacer getRenderPacer() {
+        return renderPacer;
+    }
+
+    /**
+     * Run ticks and frames on two threads, set before the game starts. The simulation thread ticks the states and
+     * has each write a snapshot with {@link GameState#writeSnapshot(me.vrekt.lunar.render.RenderSnapshot)} after
+     * every tick, the render thread draws the latest snapshots with
+     * {@link GameState#drawSnapshot(Graphics, me.vrekt.lunar.render.RenderSnapshot, float)}. A slow frame no longer
+     * delays ticks and a slow tick no longer drops frames.
+     * Dirty region mode isn't used in threaded mode, every frame is drawn whole.
+     */
+    public void setThreadedMode(boolean threaded) {
+        if (simulationThread != null || thread != null) {
+            throw new IllegalStateException("The game already started.");
+        }
+        this.threaded = threaded;
+    }
+
+    /**
+     * @return if ticks and frames run on two threads.
+     */
+    public boolean isThreadedMode() {
+        return threaded;
+    }
+
     /**
      * Gets the width of the Game's window.
      * @return the width
@@ -262,13 +441,41 @@ public class Game implements Runnable {
     }
     
     /**
-     * Limits the maximum FPS.
+     * Limits the maximum FPS, frames are spaced evenly and the loop sleeps between them.
      * Set to 0 for unlimited FPS.
      */
     public void setMaxFPS(int frames) {
     	this.maxFPS = frames;
     }
     
+    /**
+     * Only redraw the areas of the screen that changed. States report changes with
+     * {@link GameState#markDirty(int, int, int, int)} and worlds report tiles and entities
+     * that were added or removed, everything else is kept from the previous frame.
+     * Suited for mostly static screens like menus.
+     */
+    public void setDirtyRegionMode(boolean enabled) {
+        dirtyRegionMode = enabled;
+        dirtyRegions.setBounds(width, height);
+        dirtyRegions.setEnabled(enabled);
+        backBuffer = null;
+    }
+
+    /**
+     * @return if dirty region mode is enabled.
+     */
+    public boolean isDirtyRegionMode() {
+        return dirtyRegionMode;
+    }
+
+    /**
+     * Get the dirty regions, pass them to worlds so they can report changes.
+     * Also holds how many pixels each frame didn't have to repaint.
+     */
+    public DirtyRegions getDirtyRegions() {
+        return dirtyRegions;
+    }
+
     /**
      * Gets the FPS of the Game.
      * @return the frames per second count,
@@ -283,6 +490,8 @@ public class Game implements Runnable {
      */
     public void addToStack(GameState state) {
         stack.add(state);
+        state.setDirtyRegions(dirtyRegions);
+        dirtyRegions.markAllDirty();
         stack.sort((state1, state2) -> {
 
             if (state1.getPriority() < state2.getPriority()) {
@@ -304,6 +513,7 @@ public class Game implements Runnable {
      */
     public void removeFromStack(GameState state) {
         stack.remove(state);
+        dirtyRegions.markAllDirty();
     }
 
     /**
@@ -311,6 +521,7 @@ public class Game implements Runnable {
      */
     public void clearStack() {
         stack.clear();
+        dirtyRegions.markAllDirty();
     }
 
     /**
@@ -96,6 +96,13 @@ public class Animation {
         return currentFrame;
     }
 
+    /**
+     * Get the image of the current frame.
+     */
+    public BufferedImage getCurrentImage() {
+        return frames[currentFrame];
+    }
+
     /**
      * Check if the animation is running.
      */
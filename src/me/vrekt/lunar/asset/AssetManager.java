@@ -3,18 +3,37 @@ package me.vrekt.lunar.asset;
 import me.vrekt.lunar.tile.Tile;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
 public class AssetManager {
 
+	/**
+	 * The highest tile ID that can be looked up without a search, and stored in a palette.
+	 */
+	public static final int MAX_PALETTE_ID = Short.MAX_VALUE - 1;
+
 	private List<Tile> tiles = new ArrayList<>();
 
+	// tiles indexed by their ID.
+	private Tile[] palette = new Tile[64];
+
 	/**
 	 * Add a tile.
 	 */
 	public void addTile(Tile tile) {
 		tiles.add(tile);
+
+		int ID = tile.getID();
+		if (ID >= 0 && ID <= MAX_PALETTE_ID) {
+			if (ID >= palette.length) {
+				palette = Arrays.copyOf(palette, Math.min(MAX_PALETTE_ID + 1, Math.max(ID + 1, palette.length << 1)));
+			}
+			if (palette[ID] == null) {
+				palette[ID] = tile;
+			}
+		}
 	}
 
 	/**
@@ -22,12 +41,23 @@ public class AssetManager {
 	 */
 	public void removeTile(Tile tile) {
 		tiles.remove(tile);
+
+		int ID = tile.getID();
+		if (ID >= 0 && ID < palette.length && palette[ID] == tile) {
+			palette[ID] = null;
+			// another tile may share the ID.
+			tiles.stream().filter(other -> other.getID() == ID).findFirst().ifPresent(other -> palette[ID] = other);
+		}
 	}
 
 	/**
 	 * Get the tile by ID.
 	 */
 	public Tile getByID(int ID) {
+		if (ID >= 0 && ID <= MAX_PALETTE_ID) {
+			return ID < palette.length ? palette[ID] : null;
+		}
+
 		Optional<Tile> stream = tiles.stream().filter(tile -> tile.getID() == ID).findAny();
 		return stream.isPresent() ? stream.get() : null;
 	}
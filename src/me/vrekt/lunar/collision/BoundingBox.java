@@ -2,32 +2,26 @@ package me.vrekt.lunar.collision;
 
 import java.awt.Rectangle;
 
+/**
+ * An axis aligned box. A BoundingBox keeps its bounds itself, or once added to a {@link BoundingBoxStore}
+ * it is a view of its slot and the bounds are kept in the arrays of the store.
+ */
 public class BoundingBox {
 
 	/**
-	 * The x origin of this BoundingBox.
+	 * The store this BoundingBox is kept in, or null.
 	 */
-	public int x;
+	private BoundingBoxStore store;
 
 	/**
-	 * The y origin of this BoundingBox.
+	 * The slot of this BoundingBox in the store, or -1.
 	 */
-	public int y;
+	private int slot = -1;
 
 	/**
-	 * The width of this BoundingBox.
+	 * The bounds while this BoundingBox isn't kept in a store.
 	 */
-	public int width;
-
-	/**
-	 * The height of this BoundingBox.
-	 */
-	public int height;
-
-	/**
-	 * The bounds of this BoundingBox.
-	 */
-	public Rectangle bounds;
+	private int x, y, width, height;
 
 	/**
 	 * Initialize the BoundingBox.
@@ -37,12 +31,20 @@ public class BoundingBox {
 	 * @param height The height to initialize this BoundingBox with.
 	 */
 	public BoundingBox(int x, int y, int width, int height) {
-		this.x = x;
-		this.y = y;
-		this.width = width;
-		this.height = height;
+		update(x, y, width, height);
+	}
 
-		this.bounds = new Rectangle(x, y, width, height);
+	/**
+	 * Initialize the BoundingBox and add it to the store.
+	 * @param store The store to keep this BoundingBox in.
+	 * @param x The x origin to initialize this BoundingBox with.
+	 * @param y The y origin to initialize this BoundingBox with.
+	 * @param width The width to initialize this BoundingBox with.
+	 * @param height The height to initialize this BoundingBox with.
+	 */
+	public BoundingBox(BoundingBoxStore store, int x, int y, int width, int height) {
+		this(x, y, width, height);
+		store.add(this);
 	}
 
 	/**
@@ -53,21 +55,88 @@ public class BoundingBox {
 	 * @param height The height to set.
 	 */
 	public void update(int x, int y, int width, int height) {
-		this.x = x;
-		this.y = y;
-		this.width = width;
-		this.height = height;
+		if (store != null) {
+			store.set(slot, x, y, width, height);
+		} else {
+			this.x = x;
+			this.y = y;
+			this.width = width;
+			this.height = height;
+		}
+	}
 
-		bounds.setBounds(x, y, width, height);
+	/**
+	 * Move the bounds into the slot of the store, or back into this BoundingBox if the store is null.
+	 * Called by the store.
+	 */
+	void setSlot(BoundingBoxStore store, int slot) {
+		int x = getX(), y = getY(), width = getWidth(), height = getHeight();
+		this.store = store;
+		this.slot = slot;
+		update(x, y, width, height);
 	}
 
 	/**
 	 * Return if the current BoundingBox intersects with another.
+	 * Touching edges don't count and an empty BoundingBox never intersects.
 	 * @param box The other BoundingBox to check against.
 	 * @return True if the passed in BoundingBox intersects with this one,
 	 * otherwise false.
 	 */
 	public boolean doesIntersect(BoundingBox box) {
-		return bounds.intersects(box.bounds);
+		if (store != null && box.store == store) {
+			return store.intersects(slot, box.slot);
+		}
+		return BoundingBoxStore.overlaps(getX(), getY(), getWidth(), getHeight(),
+				box.getX(), box.getY(), box.getWidth(), box.getHeight());
+	}
+
+	/**
+	 * @return The x origin of this BoundingBox.
+	 */
+	public int getX() {
+		return store != null ? store.getX(slot) : x;
+	}
+
+	/**
+	 * @return The y origin of this BoundingBox.
+	 */
+	public int getY() {
+		return store != null ? store.getY(slot) : y;
+	}
+
+	/**
+	 * @return The width of this BoundingBox.
+	 */
+	public int getWidth() {
+		return store != null ? store.getWidth(slot) : width;
+	}
+
+	/**
+	 * @return The height of this BoundingBox.
+	 */
+	public int getHeight() {
+		return store != null ? store.getHeight(slot) : height;
+	}
+
+	/**
+	 * @return A new Rectangle with the bounds of this BoundingBox.
+	 */
+	public Rectangle getBounds() {
+		return new Rectangle(getX(), getY(), getWidth(), getHeight());
+	}
+
+	/**
+	 * @return The store this BoundingBox is kept in, or null.
+	 */
+	public BoundingBoxStore getStore() {
+		return store;
+	}
+
+	/**
+	 * @return The slot of this BoundingBox in its store, or -1.
+	 */
+	public int getSlot() {
+		return slot;
 	}
 }
@@ -0,0 +1,252 @@
+package me.vrekt.lunar.collision;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the X, Y, width and height of many bounding boxes in parallel arrays indexed by slot.
+ * A {@link BoundingBox} added to a store is a view of its slot, and batch checks over the arrays read memory
+ * in order instead of following a reference per box.
+ * <p>
+ * Slots are packed, the last box takes the place of a removed one. A store that boxes are added to and removed from
+ * in step with a list, like a world does with its entities, keeps the same slots as the list, so the slots a query
+ * returns are indices into it.
+ * Boxes overlap like {@link java.awt.Rectangle#intersects(java.awt.Rectangle)}, touching edges don't count.
+ * Not thread safe, use a store from the game thread.
+ */
+public class BoundingBoxStore {
+
+    // read directly by the broadphase, which is in this package.
+    int[] x, y, width, height;
+    private BoundingBox[] boxes;
+    private int size;
+
+    /**
+     * Initialize the store.
+     */
+    public BoundingBoxStore() {
+        this(64);
+    }
+
+    /**
+     * Initialize the store.
+     *
+     * @param capacity the amount of boxes expected.
+     */
+    public BoundingBoxStore(int capacity) {
+        capacity = Math.max(capacity, 4);
+        x = new int[capacity];
+        y = new int[capacity];
+        width = new int[capacity];
+        height = new int[capacity];
+        boxes = new BoundingBox[capacity];
+    }
+
+    /**
+     * Keep the box in the next slot, its bounds move into the store.
+     *
+     * @return the slot of the box.
+     */
+    public int add(BoundingBox box) {
+        if (box.getStore() != null) {
+            throw new IllegalArgumentException("The box is already kept in a store.");
+        }
+
+        if (size == x.length) {
+            int capacity = size << 1;
+            x = Arrays.copyOf(x, capacity);
+            y = Arrays.copyOf(y, capacity);
+            width = Arrays.copyOf(width, capacity);
+            height = Arrays.copyOf(height, capacity);
+            boxes = Arrays.copyOf(boxes, capacity);
+        }
+
+        boxes[size] = box;
+        box.setSlot(this, size);
+        return size++;
+    }
+
+    /**
+     * Remove the box, it keeps its bounds itself again and the last box takes its slot.
+     */
+    public void remove(BoundingBox box) {
+        if (box.getStore() == this) {
+            remove(box.getSlot());
+        }
+    }
+
+    /**
+     * Remove the box in the slot, it keeps its bounds itself again and the last box takes its slot.
+     *
+     * @return the box removed.
+     */
+    public BoundingBox remove(int slot) {
+        if (slot < 0 || slot >= size) {
+            throw new IllegalArgumentException("No box is kept in slot " + slot + ".");
+        }
+
+        BoundingBox box = boxes[slot];
+        int last = --size;
+        box.setSlot(null, -1);
+        if (slot != last) {
+            BoundingBox moved = boxes[last];
+            boxes[slot] = moved;
+            moved.setSlot(this, slot);
+        }
+        boxes[last] = null;
+        return box;
+    }
+
+    /**
+     * Keep the box in the slot in place of the box there, which keeps its bounds itself again.
+     * The bounds of the new box move into the store.
+     */
+    public void replace(int slot, BoundingBox box) {
+        BoundingBox old = boxes[slot];
+        if (old == box) {
+            return;
+        }
+        if (box.getStore() != null) {
+            throw new IllegalArgumentException("The box is already kept in a store.");
+        }
+
+        old.setSlot(null, -1);
+        boxes[slot] = box;
+        box.setSlot(this, slot);
+    }
+
+    /**
+     * Set the box in the slot.
+     */
+    public void set(int slot, int x, int y, int width, int height) {
+        this.x[slot] = x;
+        this.y[slot] = y;
+        this.width[slot] = width;
+        this.height[slot] = height;
+    }
+
+    /**
+     * Get the box in the slot.
+     */
+    public BoundingBox getBox(int slot) {
+        return boxes[slot];
+    }
+
+    /**
+     * Get the X of the box in the slot.
+     */
+    public int getX(int slot) {
+        return x[slot];
+    }
+
+    /**
+     * Get the Y of the box in the slot.
+     */
+    public int getY(int slot) {
+        return y[slot];
+    }
+
+    /**
+     * Get the width of the box in the slot.
+     */
+    public int getWidth(int slot) {
+        return width[slot];
+    }
+
+    /**
+     * Get the height of the box in the slot.
+     */
+    public int getHeight(int slot) {
+        return height[slot];
+    }
+
+    /**
+     * Return if the boxes in the two slots overlap.
+     */
+    public boolean intersects(int first, int second) {
+        return overlaps(x[first], y[first], width[first], height[first], x[second], y[second], width[second], height[second]);
+    }
+
+    /**
+     * Find the boxes overlapping the rectangle, a single pass over the arrays.
+     *
+     * @param result the slots found are written here, the search stops once it is full.
+     * @return the amount of slots written.
+     */
+    public int query(int x, int y, int width, int height, int[] result) {
+        if (width <= 0 || height <= 0) {
+            return 0;
+        }
+
+        int right = x + width;
+        int bottom = y + height;
+        int[] xs = this.x, ys = this.y, widths = this.width, heights = this.height;
+        int found = 0;
+        for (int slot = 0; slot < size && found < result.length; slot++) {
+            int boxX = xs[slot];
+            int boxY = ys[slot];
+            int boxWidth = widths[slot];
+            int boxHeight = heights[slot];
+            if (boxWidth > 0 && boxHeight > 0 && boxX < right && boxY < bottom
+                    && boxX + boxWidth > x && boxY + boxHeight > y) {
+                result[found++] = slot;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Find the boxes overlapping the box in the slot, other than itself.
+     *
+     * @param result the slots found are written here, the search stops once it is full.
+     * @return the amount of slots written.
+     */
+    public int queryOverlapping(int slot, int[] result) {
+        int found = query(x[slot], y[slot], width[slot], height[slot], result);
+        for (int i = 0; i < found; i++) {
+            if (result[i] == slot) {
+                result[i] = result[--found];
+                break;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Count the boxes overlapping the rectangle.
+     */
+    public int count(int x, int y, int width, int height) {
+        if (width <= 0 || height <= 0) {
+            return 0;
+        }
+
+        int right = x + width;
+        int bottom = y + height;
+        int[] xs = this.x, ys = this.y, widths = this.width, heights = this.height;
+        int found = 0;
+        for (int slot = 0; slot < size; slot++) {
+            int boxWidth = widths[slot];
+            int boxHeight = heights[slot];
+            if (boxWidth > 0 && boxHeight > 0 && xs[slot] < right && ys[slot] < bottom
+                    && xs[slot] + boxWidth > x && ys[slot] + boxHeight > y) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Get the amount of boxes, slots range from zero to this.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Return if two rectangles overlap, empty rectangles never do.
+     */
+    static boolean overlaps(int x, int y, int width, int height, int otherX, int otherY, int otherWidth, int otherHeight) {
+        return width > 0 && height > 0 && otherWidth > 0 && otherHeight > 0
+                && x < otherX + otherWidth && otherX < x + width
+                && y < otherY + otherHeight && otherY < y + height;
+    }
+}
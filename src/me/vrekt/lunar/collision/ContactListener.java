@@ -0,0 +1,29 @@
+package me.vrekt.lunar.collision;
+
+import me.vrekt.lunar.entity.Entity;
+
+/**
+ * Told about pairs of entities whose bounding boxes overlap, see {@link SweepAndPrune}.
+ * The order of the two entities of a pair is the same in every event.
+ */
+public interface ContactListener {
+
+    /**
+     * The entities started overlapping this tick.
+     */
+    default void contactBegin(Entity first, Entity second) {
+    }
+
+    /**
+     * The entities overlapped last tick and still do.
+     */
+    default void contactStay(Entity first, Entity second) {
+    }
+
+    /**
+     * The entities stopped overlapping this tick, or one of them was removed.
+     */
+    default void contactEnd(Entity first, Entity second) {
+    }
+
+}
@@ -0,0 +1,315 @@
+package me.vrekt.lunar.collision;
+
+import me.vrekt.lunar.entity.Entity;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Finds every pair of entities whose bounding boxes overlap, once per tick.
+ * The boxes are kept sorted by their left edge, and since entities move little between ticks
+ * an insertion sort puts them back in order in close to linear time. A sweep over the sorted boxes then
+ * only compares boxes that overlap on the X axis, so the cost depends on the amount of entities plus the
+ * amount of overlaps instead of the square of the amount of entities.
+ * <p>
+ * The pairs are kept in a reusable buffer of longs, sorted, each holding the proxy IDs of both entities.
+ * A {@link ContactListener} is told which pairs began, stayed or ended since the last update.
+ * Boxes overlap like {@link BoundingBox#doesIntersect(BoundingBox)}, touching edges don't count.
+ */
+public class SweepAndPrune {
+
+    private final Map<Entity, Integer> proxies = new IdentityHashMap<>();
+
+    // by proxy ID, the entity and its box from the last update.
+    private Entity[] entities = new Entity[64];
+    private int[] minX = new int[64], minY = new int[64], maxX = new int[64], maxY = new int[64];
+    private boolean[] removed = new boolean[64];
+
+    private int[] freeIDs = new int[16];
+    private int freeCount, nextID;
+
+    // proxy IDs sorted by the left edge of their box.
+    private int[] order = new int[64];
+    private int orderCount;
+
+    // proxies added or removed since the last update.
+    private int[] added = new int[16], pendingRemoval = new int[16];
+    private int addedCount, removalCount;
+
+    private long[] pairs = new long[64], previousPairs = new long[64];
+    private int pairCount, previousPairCount;
+
+    private ContactListener listener;
+
+    /**
+     * Initialize the broadphase.
+     */
+    public SweepAndPrune() {
+    }
+
+    /**
+     * Initialize the broadphase.
+     *
+     * @param listener told about contacts every update.
+     */
+    public SweepAndPrune(ContactListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Add the entity, it is included from the next update.
+     */
+    public void add(Entity entity) {
+        if (proxies.containsKey(entity)) {
+            return;
+        }
+
+        int ID = freeCount > 0 ? freeIDs[--freeCount] : nextID++;
+        if (ID == entities.length) {
+            int length = ID << 1;
+            entities = Arrays.copyOf(entities, length);
+            minX = Arrays.copyOf(minX, length);
+            minY = Arrays.copyOf(minY, length);
+            maxX = Arrays.copyOf(maxX, length);
+            maxY = Arrays.copyOf(maxY, length);
+            removed = Arrays.copyOf(removed, length);
+        }
+
+        entities[ID] = entity;
+        removed[ID] = false;
+        proxies.put(entity, ID);
+        added = push(added, addedCount++, ID);
+    }
+
+    /**
+     * Remove the entity, its contacts end on the next update.
+     */
+    public void remove(Entity entity) {
+        Integer ID = proxies.remove(entity);
+        if (ID != null) {
+            removed[ID] = true;
+            pendingRemoval = push(pendingRemoval, removalCount++, ID);
+        }
+    }
+
+    /**
+     * Return if the entity was added.
+     */
+    public boolean contains(Entity entity) {
+        return proxies.containsKey(entity);
+    }
+
+    /**
+     * Remove every entity, their contacts end on the next update.
+     */
+    public void clear() {
+        for (Entity entity : proxies.keySet().toArray(new Entity[0])) {
+            remove(entity);
+        }
+    }
+
+    /**
+     * Set the listener told about contacts, or null.
+     */
+    public void setListener(ContactListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Read the bounding boxes, find the overlapping pairs and tell the listener what changed.
+     */
+    public void update() {
+        applyMembership();
+
+        for (int i = 0; i < orderCount; i++) {
+            int ID = order[i];
+            BoundingBox box = entities[ID].getBoundingBox();
+            BoundingBoxStore store = box.getStore();
+            if (store != null) {
+                // the boxes of entities in a world, read straight from the arrays of its store.
+                int slot = box.getSlot();
+                minX[ID] = store.x[slot];
+                minY[ID] = store.y[slot];
+                maxX[ID] = store.x[slot] + store.width[slot];
+                maxY[ID] = store.y[slot] + store.height[slot];
+            } else {
+                minX[ID] = box.getX();
+                minY[ID] = box.getY();
+                maxX[ID] = box.getX() + box.getWidth();
+                maxY[ID] = box.getY() + box.getHeight();
+            }
+        }
+
+        sort();
+        sweep();
+        Arrays.sort(pairs, 0, pairCount);
+        report();
+
+        // the proxies removed are no longer in any pair, their IDs can be reused.
+        for (int i = 0; i < removalCount; i++) {
+            int ID = pendingRemoval[i];
+            entities[ID] = null;
+            freeIDs = push(freeIDs, freeCount++, ID);
+        }
+        removalCount = 0;
+
+        long[] swap = previousPairs;
+        previousPairs = pairs;
+        previousPairCount = pairCount;
+        pairs = swap;
+    }
+
+    /**
+     * Drop the removed proxies from the order and append the added ones.
+     */
+    private void applyMembership() {
+        if (removalCount > 0) {
+            int kept = 0;
+            for (int i = 0; i < orderCount; i++) {
+                if (!removed[order[i]]) {
+                    order[kept++] = order[i];
+                }
+            }
+            orderCount = kept;
+        }
+
+        for (int i = 0; i < addedCount; i++) {
+            int ID = added[i];
+            // added and removed before an update, never part of the order.
+            if (!removed[ID]) {
+                order = push(order, orderCount++, ID);
+            }
+        }
+        addedCount = 0;
+    }
+
+    /**
+     * Insertion sort by the left edge, close to linear when the order barely changed.
+     */
+    private void sort() {
+        for (int i = 1; i < orderCount; i++) {
+            int ID = order[i];
+            int key = minX[ID];
+            int j = i - 1;
+            while (j >= 0 && minX[order[j]] > key) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = ID;
+        }
+    }
+
+    private void sweep() {
+        pairCount = 0;
+        for (int i = 0; i < orderCount; i++) {
+            int first = order[i];
+            int right = maxX[first];
+            int top = minY[first];
+            int bottom = maxY[first];
+            if (right <= minX[first] || bottom <= top) {
+                continue;
+            }
+
+            // every box after this one starts at or after its left edge, stop at the first that starts past its right edge.
+            for (int j = i + 1; j < orderCount; j++) {
+                int second = order[j];
+                if (minX[second] >= right) {
+                    break;
+                }
+                if (maxX[second] > minX[second] && minY[second] < bottom && maxY[second] > top
+                        && maxY[second] > minY[second]) {
+                    pairs = push(pairs, pairCount++, first < second
+                            ? ((long) first << 32) | second : ((long) second << 32) | first);
+                }
+            }
+        }
+    }
+
+    /**
+     * Walk the sorted pairs of this update and the last one together to find what began, stayed and ended.
+     */
+    private void report() {
+        if (listener == null) {
+            return;
+        }
+
+        int current = 0;
+        int previous = 0;
+        while (current < pairCount || previous < previousPairCount) {
+            long pair = current < pairCount ? pairs[current] : Long.MAX_VALUE;
+            long old = previous < previousPairCount ? previousPairs[previous] : Long.MAX_VALUE;
+            if (pair == old) {
+                listener.contactStay(entities[first(pair)], entities[second(pair)]);
+                current++;
+                previous++;
+            } else if (pair < old) {
+                listener.contactBegin(entities[first(pair)], entities[second(pair)]);
+                current++;
+            } else {
+                listener.contactEnd(entities[first(old)], entities[second(old)]);
+                previous++;
+            }
+        }
+    }
+
+    /**
+     * Get the amount of overlapping pairs found by the last update.
+     */
+    public int getPairCount() {
+        return previousPairCount;
+    }
+
+    /**
+     * Get the pairs found by the last update, only the first {@link #getPairCount()} are valid.
+     * Use {@link #getFirst(long)} and {@link #getSecond(long)} to get the entities of a pair.
+     */
+    public long[] getPairs() {
+        return previousPairs;
+    }
+
+    /**
+     * Get the first entity of a pair.
+     */
+    public Entity getFirst(long pair) {
+        return entities[first(pair)];
+    }
+
+    /**
+     * Get the second entity of a pair.
+     */
+    public Entity getSecond(long pair) {
+        return entities[second(pair)];
+    }
+
+    /**
+     * Get the amount of entities.
+     */
+    public int size() {
+        return proxies.size();
+    }
+
+    private static int first(long pair) {
+        return (int) (pair >>> 32);
+    }
+
+    private static int second(long pair) {
+        return (int) pair;
+    }
+
+    private static int[] push(int[] array, int index, int value) {
+        if (index == array.length) {
+            array = Arrays.copyOf(array, index << 1);
+        }
+        array[index] = value;
+        return array;
+    }
+
+    private static long[] push(long[] array, int index, long value) {
+        if (index == array.length) {
+            array = Arrays.copyOf(array, index << 1);
+        }
+        array[index] = value;
+        return array;
+    }
+}
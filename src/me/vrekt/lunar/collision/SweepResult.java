@@ -0,0 +1,77 @@
+package me.vrekt.lunar.collision;
+
+/**
+ * Where a box moving through the tile grid first touched a solid tile, filled in by {@link TileSweep}.
+ * Reuse one result per thread so sweeping doesn't allocate.
+ */
+public class SweepResult {
+
+    private boolean hit;
+    private double time = 1;
+    private int normalX, normalY;
+    private int column, row;
+
+    void reset() {
+        hit = false;
+        time = 1;
+        normalX = normalY = 0;
+        column = row = 0;
+    }
+
+    void set(double time, int normalX, int normalY, int column, int row) {
+        this.hit = true;
+        this.time = time;
+        this.normalX = normalX;
+        this.normalY = normalY;
+        this.column = column;
+        this.row = row;
+    }
+
+    /**
+     * Return if the box touched a solid tile.
+     */
+    public boolean isHit() {
+        return hit;
+    }
+
+    /**
+     * Get the share of the movement done before the box touched the tile, one if it touched nothing.
+     */
+    public double getTime() {
+        return time;
+    }
+
+    /**
+     * Get the X of the normal of the touched side, -1, 0 or 1, pointing back at the box.
+     */
+    public int getNormalX() {
+        return normalX;
+    }
+
+    /**
+     * Get the Y of the normal of the touched side, -1, 0 or 1, pointing back at the box.
+     */
+    public int getNormalY() {
+        return normalY;
+    }
+
+    /**
+     * Get the column of the tile touched.
+     */
+    public int getColumn() {
+        return column;
+    }
+
+    /**
+     * Get the row of the tile touched.
+     */
+    public int getRow() {
+        return row;
+    }
+
+    @Override
+    public String toString() {
+        return hit ? "SweepResult[time: " + time + ", normal: (" + normalX + ", " + normalY + "), tile: (" + column + ", " + row + ")]"
+                : "SweepResult[no hit]";
+    }
+}
@@ -0,0 +1,115 @@
+package me.vrekt.lunar.collision;
+
+import me.vrekt.lunar.world.World;
+import me.vrekt.lunar.world.storage.TileStorage;
+
+/**
+ * Moves boxes through the tile grid of a world without passing through solid tiles, however fast they move.
+ * Instead of checking where a box ends up, the tile columns and rows its leading edges cross are visited in the
+ * order they are crossed, and the first crossing into a solid tile gives the time of impact and the normal.
+ * The cost depends on the amount of tiles crossed, nothing is allocated.
+ * <p>
+ * Positions are pixels relative to the world anchor, tiles are {@link World#getTileWidth()} by {@link World#getTileHeight()}
+ * pixels and solidity comes from the collision layer. Like {@link World#isPointPassable(int, int)} the area
+ * outside the world is solid. A box already overlapping a solid tile can move out of it.
+ */
+public final class TileSweep {
+
+    // how far past a crossing the perpendicular edges are measured, so a box crossing a corner exactly sees the corner tile.
+    private static final double EPSILON = 1e-9;
+
+    private TileSweep() {
+    }
+
+    /**
+     * Sweep the box along the movement and find the first solid tile it touches.
+     *
+     * @param result filled in with the time of impact and the normal.
+     * @return if the box touched a solid tile.
+     */
+    public static boolean sweep(World world, double x, double y, double width, double height,
+                                double dx, double dy, SweepResult result) {
+        result.reset();
+        if (dx == 0 && dy == 0) {
+            return false;
+        }
+
+        int tileWidth = world.getTileWidth();
+        int tileHeight = world.getTileHeight();
+        if (tileWidth <= 0 || tileHeight <= 0) {
+            throw new IllegalArgumentException("The world has no tile size.");
+        }
+        x -= world.getWorldAnchorX();
+        y -= world.getWorldAnchorY();
+
+        // the next column the leading X edge enters and when, in shares of the movement.
+        int stepX = dx > 0 ? 1 : -1;
+        int column = 0;
+        double nextX = Double.POSITIVE_INFINITY, deltaX = Double.POSITIVE_INFINITY;
+        if (dx > 0) {
+            column = (int) Math.ceil((x + width) / tileWidth);
+            nextX = (column * (double) tileWidth - (x + width)) / dx;
+            deltaX = tileWidth / dx;
+        } else if (dx < 0) {
+            column = (int) Math.floor(x / tileWidth) - 1;
+            nextX = (x - (column + 1) * (double) tileWidth) / -dx;
+            deltaX = tileWidth / -dx;
+        }
+
+        int stepY = dy > 0 ? 1 : -1;
+        int row = 0;
+        double nextY = Double.POSITIVE_INFINITY, deltaY = Double.POSITIVE_INFINITY;
+        if (dy > 0) {
+            row = (int) Math.ceil((y + height) / tileHeight);
+            nextY = (row * (double) tileHeight - (y + height)) / dy;
+            deltaY = tileHeight / dy;
+        } else if (dy < 0) {
+            row = (int) Math.floor(y / tileHeight) - 1;
+            nextY = (y - (row + 1) * (double) tileHeight) / -dy;
+            deltaY = tileHeight / -dy;
+        }
+
+        while (nextX <= 1 || nextY <= 1) {
+            if (nextX <= nextY) {
+                double time = Math.max(0, nextX);
+                double top = y + dy * (time + EPSILON);
+                int firstRow = (int) Math.floor(top / tileHeight);
+                int lastRow = (int) Math.ceil((top + height) / tileHeight) - 1;
+                for (int r = firstRow; r <= lastRow; r++) {
+                    if (isSolid(world, column, r)) {
+                        result.set(time, -stepX, 0, column, r);
+                        return true;
+                    }
+                }
+                column += stepX;
+                nextX += deltaX;
+            } else {
+                double time = Math.max(0, nextY);
+                double left = x + dx * (time + EPSILON);
+                int firstColumn = (int) Math.floor(left / tileWidth);
+                int lastColumn = (int) Math.ceil((left + width) / tileWidth) - 1;
+                for (int c = firstColumn; c <= lastColumn; c++) {
+                    if (isSolid(world, c, row)) {
+                        result.set(time, 0, -stepY, c, row);
+                        return true;
+                    }
+                }
+                row += stepY;
+                nextY += deltaY;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return if the tile at the column and row is solid, outside the world counts as solid.
+     */
+    public static boolean isSolid(World world, int column, int row) {
+        if (column < 0 || row < 0 || column >= world.getWidth() || row >= world.getHeight()) {
+            return true;
+        }
+
+        TileStorage storage = world.getCollisionLayer().getStorage();
+        return world.isSolidAt(column * storage.getCellWidth(), row * storage.getCellHeight());
+    }
+}
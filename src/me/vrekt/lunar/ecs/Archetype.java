@@ -0,0 +1,221 @@
+package me.vrekt.lunar.ecs;
+
+import java.util.Arrays;
+
+/**
+ * Every entity with exactly the same set of components. Each field of each component is a primitive
+ * array indexed by row, so a system walks the rows of an archetype in order through a few arrays.
+ * <p>
+ * The arrays are replaced when the archetype grows, take them again for every update and don't keep them.
+ * Rows are not stable, removing an entity moves the last entity into its row.
+ */
+public final class Archetype {
+
+    private final long mask;
+    private final ComponentType[] types;
+
+    // by component ID, int[][], float[][] or Object[][] with an array per field.
+    private final Object[] columns;
+
+    private int[] entities;
+    private int size;
+
+    Archetype(long mask, ComponentType[] types, int componentTypes) {
+        this.mask = mask;
+        this.types = types;
+        this.columns = new Object[componentTypes];
+        this.entities = new int[16];
+
+        for (ComponentType type : types) {
+            switch (type.getKind()) {
+                case INT:
+                    columns[type.getID()] = new int[type.getFields()][16];
+                    break;
+                case FLOAT:
+                    columns[type.getID()] = new float[type.getFields()][16];
+                    break;
+                default:
+                    columns[type.getID()] = new Object[type.getFields()][16];
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Get the bits of the component IDs of this archetype.
+     */
+    public long getMask() {
+        return mask;
+    }
+
+    /**
+     * Return if entities of this archetype have the component.
+     */
+    public boolean has(ComponentType type) {
+        return (mask & type.bit()) != 0;
+    }
+
+    /**
+     * Get the component types of this archetype.
+     */
+    public ComponentType[] getTypes() {
+        return types.clone();
+    }
+
+    /**
+     * Get the amount of entities.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the entity in the row.
+     */
+    public int getEntity(int row) {
+        return entities[row];
+    }
+
+    /**
+     * Get the entities by row, only the first {@link #size()} are valid.
+     */
+    public int[] getEntities() {
+        return entities;
+    }
+
+    /**
+     * Get the values of an int field by row, only the first {@link #size()} are valid.
+     */
+    public int[] getInts(ComponentType type, int field) {
+        return ((int[][]) column(type, ComponentType.Kind.INT))[field];
+    }
+
+    /**
+     * Get the values of a float field by row, only the first {@link #size()} are valid.
+     */
+    public float[] getFloats(ComponentType type, int field) {
+        return ((float[][]) column(type, ComponentType.Kind.FLOAT))[field];
+    }
+
+    /**
+     * Get the values of an object component by row, only the first {@link #size()} are valid.
+     */
+    public Object[] getObjects(ComponentType type) {
+        return ((Object[][]) column(type, ComponentType.Kind.OBJECT))[0];
+    }
+
+    private Object column(ComponentType type, ComponentType.Kind kind) {
+        Object column = type.getID() < columns.length ? columns[type.getID()] : null;
+        if (column == null || type.getKind() != kind) {
+            throw new IllegalArgumentException("The archetype has no " + kind + " component " + type + ".");
+        }
+        return column;
+    }
+
+    /**
+     * Append a row for the entity with every field zero.
+     *
+     * @return the row.
+     */
+    int add(int entity) {
+        if (size == entities.length) {
+            int capacity = size << 1;
+            entities = Arrays.copyOf(entities, capacity);
+            for (ComponentType type : types) {
+                Object column = columns[type.getID()];
+                for (int field = 0; field < type.getFields(); field++) {
+                    switch (type.getKind()) {
+                        case INT:
+                            ((int[][]) column)[field] = Arrays.copyOf(((int[][]) column)[field], capacity);
+                            break;
+                        case FLOAT:
+                            ((float[][]) column)[field] = Arrays.copyOf(((float[][]) column)[field], capacity);
+                            break;
+                        default:
+                            ((Object[][]) column)[field] = Arrays.copyOf(((Object[][]) column)[field], capacity);
+                            break;
+                    }
+                }
+            }
+        }
+
+        entities[size] = entity;
+        return size++;
+    }
+
+    /**
+     * Remove the row, the last row takes its place.
+     *
+     * @return the entity moved into the row, or -1 if the row was the last.
+     */
+    int remove(int row) {
+        int last = --size;
+        for (ComponentType type : types) {
+            Object column = columns[type.getID()];
+            for (int field = 0; field < type.getFields(); field++) {
+                switch (type.getKind()) {
+                    case INT:
+                        int[] ints = ((int[][]) column)[field];
+                        ints[row] = ints[last];
+                        ints[last] = 0;
+                        break;
+                    case FLOAT:
+                        float[] floats = ((float[][]) column)[field];
+                        floats[row] = floats[last];
+                        floats[last] = 0;
+                        break;
+                    default:
+                        Object[] objects = ((Object[][]) column)[field];
+                        objects[row] = objects[last];
+                        objects[last] = null;
+                        break;
+                }
+            }
+        }
+
+        if (row == last) {
+            return -1;
+        }
+        entities[row] = entities[last];
+        return entities[row];
+    }
+
+    /**
+     * Copy the fields both archetypes have from a row of this one to a row of the other.
+     */
+    void copyRow(int row, Archetype to, int toRow) {
+        for (ComponentType type : types) {
+            if (!to.has(type)) {
+                continue;
+            }
+
+            Object from = columns[type.getID()];
+            Object into = to.columns[type.getID()];
+            for (int field = 0; field < type.getFields(); field++) {
+                switch (type.getKind()) {
+                    case INT:
+                        ((int[][]) into)[field][toRow] = ((int[][]) from)[field][row];
+                        break;
+                    case FLOAT:
+                        ((float[][]) into)[field][toRow] = ((float[][]) from)[field][row];
+                        break;
+                    default:
+                        ((Object[][]) into)[field][toRow] = ((Object[][]) from)[field][row];
+                        break;
+                }
+            }
+        }
+    }
+
+    int[][] intColumn(ComponentType type) {
+        return (int[][]) column(type, ComponentType.Kind.INT);
+    }
+
+    float[][] floatColumn(ComponentType type) {
+        return (float[][]) column(type, ComponentType.Kind.FLOAT);
+    }
+
+    Object[][] objectColumn(ComponentType type) {
+        return (Object[][]) column(type, ComponentType.Kind.OBJECT);
+    }
+}
@@ -0,0 +1,65 @@
+package me.vrekt.lunar.ecs;
+
+/**
+ * A kind of component, a fixed amount of int, float or object fields.
+ * Created by {@link Registry#registerInts(String, int)}, {@link Registry#registerFloats(String, int)}
+ * and {@link Registry#registerObjects(String)}, a type only works with the registry that created it.
+ */
+public final class ComponentType {
+
+    /**
+     * What the fields of a component hold.
+     */
+    public enum Kind {
+        INT, FLOAT, OBJECT
+    }
+
+    private final int ID;
+    private final String name;
+    private final Kind kind;
+    private final int fields;
+
+    ComponentType(int ID, String name, Kind kind, int fields) {
+        this.ID = ID;
+        this.name = name;
+        this.kind = kind;
+        this.fields = fields;
+    }
+
+    /**
+     * Get the ID, unique within the registry.
+     */
+    public int getID() {
+        return ID;
+    }
+
+    /**
+     * Get the name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get what the fields hold.
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Get the amount of fields.
+     */
+    public int getFields() {
+        return fields;
+    }
+
+    long bit() {
+        return 1L << ID;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,132 @@
+package me.vrekt.lunar.ecs;
+
+import me.vrekt.lunar.entity.Entity;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Lets {@link Entity} objects take part in a registry. Every linked entity gets a registry entity with an
+ * entity component holding the object and a bounds component holding its X, Y, width and height,
+ * copied from the object before the other systems update. Systems can then find the entities of the
+ * class hierarchy with the same queries as their own.
+ * <p>
+ * The adapter updates before every other system so they see the current bounds.
+ */
+public class EntityAdapter implements EntitySystem {
+
+    /**
+     * The fields of the bounds component.
+     */
+    public static final int X = 0, Y = 1, WIDTH = 2, HEIGHT = 3;
+
+    private final Registry registry;
+    private final ComponentType entityType;
+    private final ComponentType boundsType;
+    private final Query query;
+
+    private final Map<Entity, Integer> linked = new IdentityHashMap<>();
+
+    /**
+     * Initialize the adapter, registers its component types and adds itself as the first system.
+     * A registry has one adapter, see {@link Registry#getEntityAdapter()}.
+     */
+    EntityAdapter(Registry registry) {
+        this.registry = registry;
+        this.entityType = registry.registerObjects("entity");
+        this.boundsType = registry.registerInts("bounds", 4);
+        this.query = registry.query(entityType, boundsType);
+        registry.addSystem(0, this);
+    }
+
+    /**
+     * Give the entity a registry entity, nothing happens if it has one.
+     * If systems are running the registry entity is created after them.
+     */
+    public void link(Entity entity) {
+        if (linked.containsKey(entity)) {
+            return;
+        }
+
+        // reserved so a second link before the entity is created does nothing.
+        linked.put(entity, -1);
+        registry.createLater(ID -> {
+            Integer reserved = linked.get(entity);
+            if (reserved != null && reserved == -1) {
+                linked.put(entity, ID);
+                registry.setObject(ID, entityType, entity);
+                copyBounds(entity, ID);
+            } else {
+                registry.destroy(ID);
+            }
+        }, entityType, boundsType);
+    }
+
+    /**
+     * Destroy the registry entity of the entity.
+     */
+    public void unlink(Entity entity) {
+        Integer ID = linked.remove(entity);
+        if (ID != null && ID != -1) {
+            registry.destroyLater(ID);
+        }
+    }
+
+    /**
+     * Get the registry entity of the entity, or -1 if it has none.
+     */
+    public int getID(Entity entity) {
+        Integer ID = linked.get(entity);
+        return ID == null ? -1 : ID;
+    }
+
+    /**
+     * Get the component holding the {@link Entity}.
+     */
+    public ComponentType getEntityType() {
+        return entityType;
+    }
+
+    /**
+     * Get the component holding the X, Y, width and height of the entity.
+     */
+    public ComponentType getBoundsType() {
+        return boundsType;
+    }
+
+    /**
+     * Get the amount of linked entities.
+     */
+    public int size() {
+        return linked.size();
+    }
+
+    /**
+     * Copy the bounds of every linked entity.
+     */
+    @Override
+    public void update(Registry registry) {
+        for (int i = 0; i < query.getArchetypeCount(); i++) {
+            Archetype archetype = query.getArchetype(i);
+            Object[] entities = archetype.getObjects(entityType);
+            int[] x = archetype.getInts(boundsType, X);
+            int[] y = archetype.getInts(boundsType, Y);
+            int[] width = archetype.getInts(boundsType, WIDTH);
+            int[] height = archetype.getInts(boundsType, HEIGHT);
+            for (int row = 0; row < archetype.size(); row++) {
+                Entity entity = (Entity) entities[row];
+                x[row] = entity.getX();
+                y[row] = entity.getY();
+                width[row] = entity.getWidth();
+                height[row] = entity.getHeight();
+            }
+        }
+    }
+
+    private void copyBounds(Entity entity, int ID) {
+        registry.setInt(ID, boundsType, X, entity.getX());
+        registry.setInt(ID, boundsType, Y, entity.getY());
+        registry.setInt(ID, boundsType, WIDTH, entity.getWidth());
+        registry.setInt(ID, boundsType, HEIGHT, entity.getHeight());
+    }
+}
@@ -0,0 +1,15 @@
+package me.vrekt.lunar.ecs;
+
+/**
+ * Updates the entities of a registry, usually by walking the archetypes of a {@link Query}.
+ */
+public interface EntitySystem {
+
+    /**
+     * Update the entities, called every {@link Registry#update()}.
+     * Entities can't be created, destroyed or change components here, use
+     * {@link Registry#createLater(java.util.function.IntConsumer, ComponentType...)} and {@link Registry#destroyLater(int)}.
+     */
+    void update(Registry registry);
+
+}
@@ -0,0 +1,71 @@
+package me.vrekt.lunar.ecs;
+
+import java.util.Arrays;
+
+/**
+ * The archetypes that have every component of a set, kept up to date as the registry creates archetypes.
+ * <pre>
+ * for (int i = 0; i &lt; query.getArchetypeCount(); i++) {
+ *     Archetype archetype = query.getArchetype(i);
+ *     float[] x = archetype.getFloats(position, 0);
+ *     float[] velocityX = archetype.getFloats(velocity, 0);
+ *     for (int row = 0; row &lt; archetype.size(); row++) {
+ *         x[row] += velocityX[row];
+ *     }
+ * }
+ * </pre>
+ */
+public final class Query {
+
+    private final long mask;
+    private Archetype[] archetypes = new Archetype[4];
+    private int count;
+
+    Query(long mask) {
+        this.mask = mask;
+    }
+
+    /**
+     * Include the archetype if it has every component of the query.
+     */
+    void offer(Archetype archetype) {
+        if ((archetype.getMask() & mask) == mask) {
+            if (count == archetypes.length) {
+                archetypes = Arrays.copyOf(archetypes, count << 1);
+            }
+            archetypes[count++] = archetype;
+        }
+    }
+
+    /**
+     * Get the amount of archetypes matched.
+     */
+    public int getArchetypeCount() {
+        return count;
+    }
+
+    /**
+     * Get a matched archetype, some may have no entities.
+     */
+    public Archetype getArchetype(int index) {
+        return archetypes[index];
+    }
+
+    /**
+     * Get the amount of entities matched.
+     */
+    public int size() {
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            size += archetypes[i].size();
+        }
+        return size;
+    }
+
+    /**
+     * Get the bits of the component IDs of this query.
+     */
+    public long getMask() {
+        return mask;
+    }
+}
@@ -0,0 +1,481 @@
+package me.vrekt.lunar.ecs;
+
+import me.vrekt.lunar.render.RenderSnapshot;
+import me.vrekt.lunar.utilities.LongObjectMap;
+
+import java.awt.Graphics;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Keeps entities as IDs and their components in {@link Archetype}s, entities with the same components share
+ * an archetype and their fields are kept in primitive arrays. Systems walk the archetypes of a {@link Query}
+ * in tight loops, which is how many simple objects are simulated without an object per entity.
+ * <p>
+ * An entity ID is only valid until the entity is destroyed, {@link #isAlive(int)} tells if it still is.
+ * A registry holds up to 64 component types and 16 million entities. Not thread safe.
+ */
+public class Registry {
+
+    /**
+     * The most component types a registry can hold.
+     */
+    public static final int MAX_COMPONENT_TYPES = 64;
+
+    private static final int INDEX_BITS = 24;
+    private static final int INDEX_MASK = (1 << INDEX_BITS) - 1;
+    private static final int GENERATION_MASK = (1 << (32 - INDEX_BITS)) - 1;
+
+    private final List<ComponentType> types = new ArrayList<>();
+    private final LongObjectMap<Archetype> archetypesByMask = new LongObjectMap<>();
+    private final List<Archetype> archetypes = new ArrayList<>();
+    private final LongObjectMap<Query> queries = new LongObjectMap<>();
+    private final List<Query> queryList = new ArrayList<>();
+
+    // by entity index.
+    private int[] generations = new int[64];
+    private Archetype[] archetypeOf = new Archetype[64];
+    private int[] rowOf = new int[64];
+
+    private int[] freeIndices = new int[16];
+    private int freeCount, nextIndex, alive;
+
+    private final List<EntitySystem> systems = new ArrayList<>();
+    private final List<RenderSystem> renderSystems = new ArrayList<>();
+    private boolean running;
+
+    // changes asked for while systems ran, applied after them.
+    private int[] destroyQueue = new int[16];
+    private int destroyCount;
+    private final List<IntConsumer> createCallbacks = new ArrayList<>();
+    private final List<ComponentType[]> createTypes = new ArrayList<>();
+
+    // links Entity objects to this registry, created on first use.
+    private EntityAdapter entityAdapter;
+
+    /**
+     * Register a component of int fields.
+     *
+     * @param fields the amount of fields, at least one.
+     */
+    public ComponentType registerInts(String name, int fields) {
+        return register(name, ComponentType.Kind.INT, fields);
+    }
+
+    /**
+     * Register a component of float fields.
+     *
+     * @param fields the amount of fields, at least one.
+     */
+    public ComponentType registerFloats(String name, int fields) {
+        return register(name, ComponentType.Kind.FLOAT, fields);
+    }
+
+    /**
+     * Register a component holding an object.
+     */
+    public ComponentType registerObjects(String name) {
+        return register(name, ComponentType.Kind.OBJECT, 1);
+    }
+
+    private ComponentType register(String name, ComponentType.Kind kind, int fields) {
+        if (fields < 1) {
+            throw new IllegalArgumentException("A component needs at least one field.");
+        }
+        if (types.size() == MAX_COMPONENT_TYPES) {
+            throw new IllegalArgumentException("A registry holds at most " + MAX_COMPONENT_TYPES + " component types.");
+        }
+
+        ComponentType type = new ComponentType(types.size(), name, kind, fields);
+        types.add(type);
+        return type;
+    }
+
+    /**
+     * Create an entity with the components, every field starts at zero or null.
+     *
+     * @return the entity ID.
+     */
+    public int create(ComponentType... components) {
+        checkNotRunning();
+
+        long mask = 0;
+        for (ComponentType type : components) {
+            mask |= bit(type);
+        }
+
+        int index;
+        if (freeCount > 0) {
+            index = freeIndices[--freeCount];
+        } else {
+            if (nextIndex > INDEX_MASK) {
+                throw new IllegalStateException("The registry is full.");
+            }
+            index = nextIndex++;
+            if (index == generations.length) {
+                int capacity = index << 1;
+                generations = Arrays.copyOf(generations, capacity);
+                archetypeOf = Arrays.copyOf(archetypeOf, capacity);
+                rowOf = Arrays.copyOf(rowOf, capacity);
+            }
+        }
+
+        int entity = (generations[index] << INDEX_BITS) | index;
+        Archetype archetype = archetype(mask);
+        archetypeOf[index] = archetype;
+        rowOf[index] = archetype.add(entity);
+        alive++;
+        return entity;
+    }
+
+    /**
+     * Create an entity after the systems are done, or now if they aren't running.
+     *
+     * @param created given the new entity ID, to set its fields.
+     */
+    public void createLater(IntConsumer created, ComponentType... components) {
+        if (running) {
+            createCallbacks.add(created);
+            createTypes.add(components.clone());
+        } else {
+            created.accept(create(components));
+        }
+    }
+
+    /**
+     * Destroy the entity, its ID is no longer valid.
+     */
+    public void destroy(int entity) {
+        checkNotRunning();
+
+        int index = checkAlive(entity);
+        Archetype archetype = archetypeOf[index];
+        int moved = archetype.remove(rowOf[index]);
+        if (moved != -1) {
+            rowOf[moved & INDEX_MASK] = rowOf[index];
+        }
+
+        archetypeOf[index] = null;
+        generations[index] = (generations[index] + 1) & GENERATION_MASK;
+        if (freeCount == freeIndices.length) {
+            freeIndices = Arrays.copyOf(freeIndices, freeCount << 1);
+        }
+        freeIndices[freeCount++] = index;
+        alive--;
+    }
+
+    /**
+     * Destroy the entity after the systems are done, or now if they aren't running.
+     */
+    public void destroyLater(int entity) {
+        if (running) {
+            if (destroyCount == destroyQueue.length) {
+                destroyQueue = Arrays.copyOf(destroyQueue, destroyCount << 1);
+            }
+            destroyQueue[destroyCount++] = entity;
+        } else if (isAlive(entity)) {
+            destroy(entity);
+        }
+    }
+
+    /**
+     * Return if the entity exists.
+     */
+    public boolean isAlive(int entity) {
+        int index = entity & INDEX_MASK;
+        return index < nextIndex && archetypeOf[index] != null && generations[index] == entity >>> INDEX_BITS;
+    }
+
+    /**
+     * Give the entity a component, its fields start at zero or null. Moves the entity to another archetype.
+     */
+    public void add(int entity, ComponentType type) {
+        int index = checkAlive(entity);
+        Archetype from = archetypeOf[index];
+        if (!from.has(type)) {
+            move(index, from.getMask() | bit(type));
+        }
+    }
+
+    /**
+     * Take a component from the entity. Moves the entity to another archetype.
+     */
+    public void remove(int entity, ComponentType type) {
+        int index = checkAlive(entity);
+        Archetype from = archetypeOf[index];
+        if (from.has(type)) {
+            move(index, from.getMask() & ~type.bit());
+        }
+    }
+
+    private void move(int index, long mask) {
+        checkNotRunning();
+
+        Archetype from = archetypeOf[index];
+        Archetype to = archetype(mask);
+        int row = rowOf[index];
+        int toRow = to.add(from.getEntity(row));
+        from.copyRow(row, to, toRow);
+
+        int moved = from.remove(row);
+        if (moved != -1) {
+            rowOf[moved & INDEX_MASK] = row;
+        }
+        archetypeOf[index] = to;
+        rowOf[index] = toRow;
+    }
+
+    /**
+     * Return if the entity has the component.
+     */
+    public boolean has(int entity, ComponentType type) {
+        return archetypeOf[checkAlive(entity)].has(type);
+    }
+
+    /**
+     * Get an int field of a component of the entity.
+     */
+    public int getInt(int entity, ComponentType type, int field) {
+        int index = checkAlive(entity);
+        return archetypeOf[index].intColumn(type)[field][rowOf[index]];
+    }
+
+    /**
+     * Set an int field of a component of the entity.
+     */
+    public void setInt(int entity, ComponentType type, int field, int value) {
+        int index = checkAlive(entity);
+        archetypeOf[index].intColumn(type)[field][rowOf[index]] = value;
+    }
+
+    /**
+     * Get a float field of a component of the entity.
+     */
+    public float getFloat(int entity, ComponentType type, int field) {
+        int index = checkAlive(entity);
+        return archetypeOf[index].floatColumn(type)[field][rowOf[index]];
+    }
+
+    /**
+     * Set a float field of a component of the entity.
+     */
+    public void setFloat(int entity, ComponentType type, int field, float value) {
+        int index = checkAlive(entity);
+        archetypeOf[index].floatColumn(type)[field][rowOf[index]] = value;
+    }
+
+    /**
+     * Get the object of a component of the entity.
+     */
+    public Object getObject(int entity, ComponentType type) {
+        int index = checkAlive(entity);
+        return archetypeOf[index].objectColumn(type)[0][rowOf[index]];
+    }
+
+    /**
+     * Set the object of a component of the entity.
+     */
+    public void setObject(int entity, ComponentType type, Object value) {
+        int index = checkAlive(entity);
+        archetypeOf[index].objectColumn(type)[0][rowOf[index]] = value;
+    }
+
+    /**
+     * Get the archetype the entity is in.
+     */
+    public Archetype getArchetype(int entity) {
+        return archetypeOf[checkAlive(entity)];
+    }
+
+    /**
+     * Get the row of the entity in its archetype, valid until an entity of the archetype is destroyed or moved.
+     */
+    public int getRow(int entity) {
+        return rowOf[checkAlive(entity)];
+    }
+
+    /**
+     * Get the archetypes with every one of the components. Queries are cached, asking twice returns the same query.
+     */
+    public Query query(ComponentType... components) {
+        long mask = 0;
+        for (ComponentType type : components) {
+            mask |= bit(type);
+        }
+
+        Query query = queries.get(mask);
+        if (query == null) {
+            query = new Query(mask);
+            for (int i = 0; i < archetypes.size(); i++) {
+                query.offer(archetypes.get(i));
+            }
+            queries.put(mask, query);
+            queryList.add(query);
+        }
+        return query;
+    }
+
+    private Archetype archetype(long mask) {
+        Archetype archetype = archetypesByMask.get(mask);
+        if (archetype == null) {
+            List<ComponentType> components = new ArrayList<>();
+            for (int i = 0; i < types.size(); i++) {
+                if ((mask & types.get(i).bit()) != 0) {
+                    components.add(types.get(i));
+                }
+            }
+
+            archetype = new Archetype(mask, components.toArray(new ComponentType[0]), MAX_COMPONENT_TYPES);
+            archetypesByMask.put(mask, archetype);
+            archetypes.add(archetype);
+            for (int i = 0; i < queryList.size(); i++) {
+                queryList.get(i).offer(archetype);
+            }
+        }
+        return archetype;
+    }
+
+    /**
+     * Add a system, systems update in the order they were added.
+     */
+    public void addSystem(EntitySystem system) {
+        systems.add(system);
+    }
+
+    /**
+     * Add a system at a position in the update order, zero updates first.
+     */
+    public void addSystem(int position, EntitySystem system) {
+        systems.add(position, system);
+    }
+
+    /**
+     * Remove a system.
+     */
+    public void removeSystem(EntitySystem system) {
+        systems.remove(system);
+    }
+
+    /**
+     * Get the adapter that links {@link me.vrekt.lunar.entity.Entity} objects to this registry. It is created with
+     * its component types on the first call, and shared by every world that uses this registry.
+     */
+    public EntityAdapter getEntityAdapter() {
+        if (entityAdapter == null) {
+            entityAdapter = new EntityAdapter(this);
+        }
+        return entityAdapter;
+    }
+
+    /**
+     * Add a render system, render systems draw in the order they were added.
+     */
+    public void addRenderSystem(RenderSystem system) {
+        renderSystems.add(system);
+    }
+
+    /**
+     * Remove a render system.
+     */
+    public void removeRenderSystem(RenderSystem system) {
+        renderSystems.remove(system);
+    }
+
+    /**
+     * Update every system, then create and destroy the entities they asked for.
+     */
+    public void update() {
+        running = true;
+        try {
+            for (int i = 0; i < systems.size(); i++) {
+                systems.get(i).update(this);
+            }
+        } finally {
+            running = false;
+        }
+
+        for (int i = 0; i < destroyCount; i++) {
+            if (isAlive(destroyQueue[i])) {
+                destroy(destroyQueue[i]);
+            }
+        }
+        destroyCount = 0;
+
+        for (int i = 0; i < createCallbacks.size(); i++) {
+            createCallbacks.get(i).accept(create(createTypes.get(i)));
+        }
+        createCallbacks.clear();
+        createTypes.clear();
+    }
+
+    /**
+     * Draw every render system.
+     */
+    public void draw(Graphics graphics) {
+        running = true;
+        try {
+            for (int i = 0; i < renderSystems.size(); i++) {
+                renderSystems.get(i).draw(this, graphics);
+            }
+        } finally {
+            running = false;
+        }
+    }
+
+    /**
+     * Let every render system add what it draws to the snapshot, see {@link RenderSystem#writeSnapshot(Registry, RenderSnapshot)}.
+     */
+    public void writeSnapshot(RenderSnapshot snapshot) {
+        running = true;
+        try {
+            for (int i = 0; i < renderSystems.size(); i++) {
+                renderSystems.get(i).writeSnapshot(this, snapshot);
+            }
+        } finally {
+            running = false;
+        }
+    }
+
+    /**
+     * Return if systems are running, entities can only be created and destroyed later.
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Get the amount of entities.
+     */
+    public int size() {
+        return alive;
+    }
+
+    /**
+     * Get the amount of archetypes.
+     */
+    public int getArchetypeCount() {
+        return archetypes.size();
+    }
+
+    private long bit(ComponentType type) {
+        if (type.getID() >= types.size() || types.get(type.getID()) != type) {
+            throw new IllegalArgumentException("The component " + type + " belongs to another registry.");
+        }
+        return type.bit();
+    }
+
+    private int checkAlive(int entity) {
+        if (!isAlive(entity)) {
+            throw new IllegalArgumentException("The entity " + entity + " doesn't exist.");
+        }
+        return entity & INDEX_MASK;
+    }
+
+    private void checkNotRunning() {
+        if (running) {
+            throw new IllegalStateException("Entities can't be created, destroyed or change components while systems run.");
+        }
+    }
+}
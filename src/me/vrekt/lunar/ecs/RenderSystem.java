@@ -0,0 +1,25 @@
+package me.vrekt.lunar.ecs;
+
+import me.vrekt.lunar.render.RenderSnapshot;
+
+import java.awt.Graphics;
+
+/**
+ * Draws the entities of a registry, usually by walking the archetypes of a {@link Query}.
+ */
+public interface RenderSystem {
+
+    /**
+     * Draw the entities, called every {@link Registry#draw(Graphics)}.
+     */
+    void draw(Registry registry, Graphics graphics);
+
+    /**
+     * Add the images {@link #draw(Registry, Graphics)} would draw to the snapshot, called every
+     * {@link Registry#writeSnapshot(RenderSnapshot)} on the simulation thread when the game runs on two threads.
+     * Does nothing unless overridden, the render system then draws nothing in that mode.
+     */
+    default void writeSnapshot(Registry registry, RenderSnapshot snapshot) {
+    }
+
+}
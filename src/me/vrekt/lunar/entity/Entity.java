@@ -1,11 +1,15 @@
 package me.vrekt.lunar.entity;
 
 import me.vrekt.lunar.collision.BoundingBox;
+import me.vrekt.lunar.collision.SweepResult;
+import me.vrekt.lunar.collision.TileSweep;
 import me.vrekt.lunar.location.Location;
 import me.vrekt.lunar.tile.Tile;
+import me.vrekt.lunar.utilities.FixedPoint;
 import me.vrekt.lunar.utilities.Utilities;
 import me.vrekt.lunar.world.World;
 import me.vrekt.lunar.world.dir.Direction;
+import me.vrekt.lunar.world.index.EntityIndex;
 
 import java.awt.Graphics;
 import java.awt.image.BufferedImage;
@@ -20,8 +24,28 @@ public abstract class Entity {
     protected int entityID;
 
     protected BoundingBox boundingBox;
+
+    // the position in fixed-point, its integer part is kept in x and y, and the position when the tick began.
+    private int fixedX, fixedY;
+    private int previousFixedX, previousFixedY;
+
+    // the sweeps after the first contact of a slide, created on the first slide.
+    private SweepResult slideSweep;
     protected BufferedImage texture;
 
+    // the index of the world this entity is in, told when the position or bounding box is updated.
+    private EntityIndex entityIndex;
+
+    // where this entity is in the entity list of its world, -1 if it isn't in a world.
+    private int worldSlot = -1;
+
+    // the tick this entity last updated on when updated by activation zones, 0 if never.
+    private long lastTick;
+
+    // the pool this entity came from and returns to, and if it is waiting in the pool.
+    EntityPool<?> pool;
+    boolean pooled;
+
     /**
      * Initialize the entity; this is the primary constructor.
      * @param x The x position of this entity.
@@ -38,6 +62,8 @@ public abstract class Entity {
         this.height = height;
         this.entityID = entityID;
         this.location = new Location(x, y);
+        setPositionFixed(FixedPoint.fromInt(x), FixedPoint.fromInt(y));
+        storePreviousPosition();
 
         boundingBox = new BoundingBox(x, y, width, height);
 
@@ -104,11 +130,105 @@ public abstract class Entity {
 
     public abstract void updateEntity();
 
+    /**
+     * Draw the entity between its position when the tick began and its position now.
+     * Calls {@link #drawEntity(Graphics)}, override to draw at {@link #getInterpolatedX(float)} and
+     * {@link #getInterpolatedY(float)} for smooth movement when frames are drawn between ticks.
+     * @param graphics The Graphics object to draw to.
+     * @param alpha How far the game is between the last tick and the next, from zero to one.
+     */
+    public void drawEntity(Graphics graphics, float alpha) {
+        drawEntity(graphics);
+    }
+
+    /**
+     * Update the entity for several ticks at once, used when far away entities update less often.
+     * Calls {@link #updateEntity()} once, override to scale movement and timers by the ticks.
+     * @param ticks The amount of ticks since the last update, at least one.
+     */
+    public void updateEntity(int ticks) {
+        updateEntity();
+    }
+
+    /**
+     * Move the entity and clear what it kept from its last use, called when a pooled entity is spawned again.
+     * The location and bounding box are reused. Override {@link #onReset()} to reset the state of a subclass.
+     * @param x The x position to spawn at.
+     * @param y The y position to spawn at.
+     */
+    public final void reset(int x, int y) {
+        setPositionFixed(FixedPoint.fromInt(x), FixedPoint.fromInt(y));
+        storePreviousPosition();
+        location.setX(x);
+        location.setY(y);
+        boundingBox.update(x, y, width, height);
+        lastTick = 0;
+        onReset();
+    }
+
+    /**
+     * Reset the state of a subclass, called by {@link #reset(int, int)}.
+     */
+    protected void onReset() {
+    }
+
+    /**
+     * Get the pool this entity came from, or null if it was created with new.
+     */
+    public EntityPool<?> getPool() {
+        return pool;
+    }
+
+    /**
+     * Return if the entity is waiting in its pool and must not be used.
+     */
+    public boolean isPooled() {
+        return pooled;
+    }
+
     /**
      * Update the entity boundingBox.
      */
     public void updateBoundingBox() {
         boundingBox.update(x, y, width, height);
+        if (entityIndex != null) {
+            entityIndex.update(this);
+        }
+    }
+
+    /**
+     * Get where this entity is in the entity list of its world, or -1 if it isn't in a world.
+     */
+    public int getWorldSlot() {
+        return worldSlot;
+    }
+
+    /**
+     * Set where this entity is in the entity list of its world, kept up to date by the world.
+     */
+    public void setWorldSlot(int worldSlot) {
+        this.worldSlot = worldSlot;
+    }
+
+    /**
+     * Get the tick this entity last updated on, kept by {@link me.vrekt.lunar.world.tick.ActivationZones}.
+     */
+    public long getLastTick() {
+        return lastTick;
+    }
+
+    /**
+     * Set the tick this entity last updated on.
+     */
+    public void setLastTick(long lastTick) {
+        this.lastTick = lastTick;
+    }
+
+    /**
+     * Set the index to tell when the position or bounding box is updated, set by the world the entity is added to.
+     */
+    public void setEntityIndex(EntityIndex entityIndex) {
+        this.entityIndex = entityIndex;
     }
 
     /**
@@ -137,6 +257,8 @@ public abstract class Entity {
      */
     public void setX(int x) {
         this.x = x;
+        fixedX = FixedPoint.fromInt(x);
+        positionChanged();
     }
 
     /**
@@ -144,6 +266,138 @@ public abstract class Entity {
      */
     public void setY(int y) {
         this.y = y;
+        fixedY = FixedPoint.fromInt(y);
+        positionChanged();
+    }
+
+    /**
+     * Get the X in fixed-point, see {@link FixedPoint}. If x was changed directly the fraction is dropped.
+     */
+    public int getFixedX() {
+        if (FixedPoint.toInt(fixedX) != x) {
+            fixedX = FixedPoint.fromInt(x);
+        }
+        return fixedX;
+    }
+
+    /**
+     * Get the Y in fixed-point, see {@link FixedPoint}. If y was changed directly the fraction is dropped.
+     */
+    public int getFixedY() {
+        if (FixedPoint.toInt(fixedY) != y) {
+            fixedY = FixedPoint.fromInt(y);
+        }
+        return fixedY;
+    }
+
+    /**
+     * Set the position in fixed-point, x and y become its integer part.
+     */
+    public void setPositionFixed(int fixedX, int fixedY) {
+        this.fixedX = fixedX;
+        this.fixedY = fixedY;
+        this.x = FixedPoint.toInt(fixedX);
+        this.y = FixedPoint.toInt(fixedY);
+        positionChanged();
+    }
+
+    /**
+     * Move the entity in the index of its world, so it is found at its new position during the same tick.
+     */
+    private void positionChanged() {
+        if (entityIndex != null) {
+            entityIndex.update(this);
+        }
+    }
+
+    /**
+     * Move the entity by an amount in fixed-point, movements smaller than a pixel add up.
+     */
+    public void moveFixed(int dx, int dy) {
+        setPositionFixed(getFixedX() + dx, getFixedY() + dy);
+    }
+
+    /**
+     * Move the entity by an amount of pixels, movements smaller than a pixel add up.
+     */
+    public void move(float dx, float dy) {
+        moveFixed(FixedPoint.fromFloat(dx), FixedPoint.fromFloat(dy));
+    }
+
+    /**
+     * Move the entity through the tiles of the world, stopping at solid tiles and sliding along them.
+     * The path is swept, so fast entities can't pass through thin tiles. Doesn't allocate after the first call.
+     * @param world The world whose collision layer is solid.
+     * @param dx The pixels to move on the X axis.
+     * @param dy The pixels to move on the Y axis.
+     * @param result Filled in with the first solid tile touched, reuse it between calls.
+     * @return True if a solid tile was touched.
+     */
+    public boolean moveAndSlide(World world, float dx, float dy, SweepResult result) {
+        int remainingX = FixedPoint.fromFloat(dx);
+        int remainingY = FixedPoint.fromFloat(dy);
+        if (slideSweep == null) {
+            slideSweep = new SweepResult();
+        }
+
+        // at most three sweeps, the movement loses an axis every time a tile is touched.
+        SweepResult sweep = result;
+        boolean touched = false;
+        for (int i = 0; i < 3 && (remainingX != 0 || remainingY != 0); i++) {
+            if (!TileSweep.sweep(world, getFixedX() / (double) FixedPoint.ONE, getFixedY() / (double) FixedPoint.ONE,
+                    width, height, remainingX / (double) FixedPoint.ONE, remainingY / (double) FixedPoint.ONE, sweep)) {
+                moveFixed(remainingX, remainingY);
+                break;
+            }
+
+            // rounded toward the start so the entity ends up touching the tile, never inside it.
+            int movedX = (int) (remainingX * sweep.getTime());
+            int movedY = (int) (remainingY * sweep.getTime());
+            moveFixed(movedX, movedY);
+            remainingX = sweep.getNormalX() != 0 ? 0 : remainingX - movedX;
+            remainingY = sweep.getNormalY() != 0 ? 0 : remainingY - movedY;
+            touched = true;
+            sweep = slideSweep;
+        }
+        return touched;
+    }
+
+    /**
+     * Remember the current position as the position the tick began at, called by the world every tick.
+     */
+    public void storePreviousPosition() {
+        previousFixedX = getFixedX();
+        previousFixedY = getFixedY();
+    }
+
+    /**
+     * Get the X in fixed-point when the tick began.
+     */
+    public int getPreviousFixedX() {
+        return previousFixedX;
+    }
+
+    /**
+     * Get the Y in fixed-point when the tick began.
+     */
+    public int getPreviousFixedY() {
+        return previousFixedY;
+    }
+
+    /**
+     * Get the X to draw at, between the X when the tick began and the X now.
+     * @param alpha How far the game is between the last tick and the next, from zero to one.
+     */
+    public int getInterpolatedX(float alpha) {
+        return FixedPoint.toInt(FixedPoint.lerp(previousFixedX, getFixedX(), alpha));
+    }
+
+    /**
+     * Get the Y to draw at, between the Y when the tick began and the Y now.
+     * @param alpha How far the game is between the last tick and the next, from zero to one.
+     */
+    public int getInterpolatedY(float alpha) {
+        return FixedPoint.toInt(FixedPoint.lerp(previousFixedY, getFixedY(), alpha));
     }
 
     /**
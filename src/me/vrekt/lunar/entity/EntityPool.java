@@ -0,0 +1,164 @@
+package me.vrekt.lunar.entity;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * Keeps removed entities of one type so spawning reuses them instead of creating new ones,
+ * for entities like projectiles and effects that are spawned and removed many times a second.
+ * Entities are reset with {@link Entity#reset(int, int)} when they are taken from the pool.
+ * <p>
+ * Register pools with {@link me.vrekt.lunar.world.World#registerPool(Class, Supplier)}, the world returns
+ * pooled entities to their pool when they are removed through its removal queue.
+ *
+ * @param <T> the entity type.
+ */
+public class EntityPool<T extends Entity> {
+
+    /**
+     * The default amount of entities a pool keeps.
+     */
+    public static final int DEFAULT_MAX_SIZE = 256;
+
+    private final String name;
+    private final Supplier<T> factory;
+    private final int maxSize;
+
+    private Entity[] free = new Entity[16];
+    private int freeCount;
+
+    private long hits, misses, returns, discards;
+
+    /**
+     * Initialize the pool.
+     *
+     * @param name    the name, for metrics.
+     * @param factory creates entities when the pool is empty.
+     * @param maxSize the most entities kept, more are left to the garbage collector.
+     */
+    public EntityPool(String name, Supplier<T> factory, int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("The max size can't be negative.");
+        }
+        this.name = name;
+        this.factory = factory;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Take an entity from the pool, or create one if it is empty, and reset it at the position.
+     */
+    @SuppressWarnings("unchecked")
+    public T obtain(int x, int y) {
+        T entity;
+        if (freeCount > 0) {
+            entity = (T) free[--freeCount];
+            free[freeCount] = null;
+            hits++;
+        } else {
+            entity = factory.get();
+            if (entity.pool != null && entity.pool != this) {
+                throw new IllegalArgumentException("The factory returned an entity of another pool.");
+            }
+            misses++;
+        }
+
+        entity.pool = this;
+        entity.pooled = false;
+        entity.reset(x, y);
+        return entity;
+    }
+
+    /**
+     * Put the entity back in the pool, it must not be used afterwards. Nothing happens if it already is.
+     */
+    public void free(T entity) {
+        if (entity.pool != this) {
+            throw new IllegalArgumentException("The entity doesn't belong to this pool.");
+        }
+        if (entity.pooled) {
+            return;
+        }
+
+        entity.pooled = true;
+        returns++;
+        if (freeCount == maxSize) {
+            discards++;
+            return;
+        }
+        if (freeCount == free.length) {
+            free = Arrays.copyOf(free, Math.min(maxSize, freeCount << 1));
+        }
+        free[freeCount++] = entity;
+    }
+
+    /**
+     * Put an entity of this pool back, for callers that don't know its type.
+     */
+    @SuppressWarnings("unchecked")
+    public void freeEntity(Entity entity) {
+        free((T) entity);
+    }
+
+    /**
+     * Get the name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the amount of entities waiting in the pool.
+     */
+    public int size() {
+        return freeCount;
+    }
+
+    /**
+     * Get the most entities kept.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Get the amount of entities obtained from the pool.
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Get the amount of entities created because the pool was empty.
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Get the share of entities obtained from the pool, between zero and one.
+     */
+    public double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * Get the amount of entities put back.
+     */
+    public long getReturns() {
+        return returns;
+    }
+
+    /**
+     * Get the amount of entities put back while the pool was full.
+     */
+    public long getDiscards() {
+        return discards;
+    }
+
+    @Override
+    public String toString() {
+        return name + " pool: " + freeCount + " free, " + hits + " hits, " + misses + " misses";
+    }
+}
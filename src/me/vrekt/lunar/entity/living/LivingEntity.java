@@ -9,14 +9,18 @@ public abstract class LivingEntity extends Entity {
 	protected float health;
 	protected double speed;
 
+	// what the entity was created with, restored when a pooled entity is spawned again.
+	private final float initialHealth;
+	private final double initialSpeed;
+
 	/**
 	 * Initialize the entity.
 	 */
 	public LivingEntity(int x, int y, int width, int height, int entityID, float health, double speed) {
 		super(x, y, width, height, entityID);
 
-		this.health = health;
-		this.speed = speed;
+		this.health = initialHealth = health;
+		this.speed = initialSpeed = speed;
 	}
 
 	/**
@@ -25,8 +29,17 @@ public abstract class LivingEntity extends Entity {
 	public LivingEntity(BufferedImage sprite, int x, int y, int width, int height, int entityID, float health, double speed) {
 		super(sprite, x, y, width, height, entityID);
 
-		this.health = health;
-		this.speed = speed;
+		this.health = initialHealth = health;
+		this.speed = initialSpeed = speed;
+	}
+
+	/**
+	 * Restore the health and speed the entity was created with. Subclasses that override this should call it.
+	 */
+	@Override
+	protected void onReset() {
+		health = initialHealth;
+		speed = initialSpeed;
 	}
 
 	/**
@@ -0,0 +1,227 @@
+package me.vrekt.lunar.particle;
+
+import me.vrekt.lunar.entity.Entity;
+import me.vrekt.lunar.tile.Tile;
+
+/**
+ * Emits particles of one sprite from a point, the center of an entity or the center of a tile, every update of the
+ * {@link ParticleSystem} it was added to. Particles leave in a direction within a spread, at a speed and for
+ * a life picked at random within their ranges.
+ * <p>
+ * An emitter attached to an entity follows it, the world removes it when the entity is removed.
+ * Angles are in radians, zero points right and a quarter turn points down.
+ */
+public class ParticleEmitter {
+
+    private final Entity entity;
+    private final Tile tile;
+    private float x, y;
+    private float offsetX, offsetY;
+
+    private final int sprite;
+    private float rate, pending;
+    private int burst;
+    private int minLife = 30, maxLife = 60;
+    private float minSpeed = 0.5f, maxSpeed = 1.5f;
+    private float direction, spread = (float) (Math.PI * 2);
+
+    // ticks left, or -1 to emit until removed.
+    private int duration = -1;
+
+    private long seed = System.nanoTime() | 1;
+
+    private ParticleEmitter(Entity entity, Tile tile, float x, float y, int sprite) {
+        this.entity = entity;
+        this.tile = tile;
+        this.x = x;
+        this.y = y;
+        this.sprite = sprite;
+    }
+
+    /**
+     * Create an emitter at a point.
+     *
+     * @param sprite the index of the sprite of its particles.
+     */
+    public static ParticleEmitter at(float x, float y, int sprite) {
+        return new ParticleEmitter(null, null, x, y, sprite);
+    }
+
+    /**
+     * Create an emitter that follows the center of an entity.
+     *
+     * @param sprite the index of the sprite of its particles.
+     */
+    public static ParticleEmitter attach(Entity entity, int sprite) {
+        return new ParticleEmitter(entity, null, 0, 0, sprite);
+    }
+
+    /**
+     * Create an emitter at the center of a tile. World tiles are shared between the cells they are placed at, so the
+     * position is taken from the cell and not from the tile.
+     *
+     * @param x      the X coordinate the tile is placed at in the world.
+     * @param y      the Y coordinate the tile is placed at in the world.
+     * @param sprite the index of the sprite of its particles.
+     */
+    public static ParticleEmitter attach(Tile tile, int x, int y, int sprite) {
+        return new ParticleEmitter(null, tile, x, y, sprite);
+    }
+
+    /**
+     * Emit the particles due this tick.
+     */
+    void emit(ParticleSystem system) {
+        int amount = burst;
+        burst = 0;
+        if (duration != 0) {
+            pending += rate;
+            amount += (int) pending;
+            pending -= (int) pending;
+            if (duration > 0) {
+                duration--;
+            }
+        }
+        if (amount == 0) {
+            return;
+        }
+
+        float originX, originY;
+        if (entity != null) {
+            originX = entity.getX() + entity.getWidth() / 2f;
+            originY = entity.getY() + entity.getHeight() / 2f;
+        } else if (tile != null) {
+            originX = x + tile.getWidth() / 2f;
+            originY = y + tile.getHeight() / 2f;
+        } else {
+            originX = x;
+            originY = y;
+        }
+        originX += offsetX;
+        originY += offsetY;
+
+        for (int i = 0; i < amount; i++) {
+            double angle = direction + (nextFloat() - 0.5f) * spread;
+            float speed = minSpeed + nextFloat() * (maxSpeed - minSpeed);
+            int life = minLife + (int) (nextFloat() * (maxLife - minLife + 1));
+            if (!system.emit(originX, originY, (float) Math.cos(angle) * speed, (float) Math.sin(angle) * speed, life, sprite)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * A xorshift, the emitters don't share a random and emitting stays cheap.
+     */
+    private float nextFloat() {
+        seed ^= seed << 13;
+        seed ^= seed >>> 7;
+        seed ^= seed << 17;
+        return (seed >>> 40) * 0x1.0p-24f;
+    }
+
+    /**
+     * Set the amount of particles emitted every tick, fractions add up over ticks.
+     */
+    public ParticleEmitter setRate(float rate) {
+        if (rate < 0) {
+            throw new IllegalArgumentException("The rate can't be negative.");
+        }
+        this.rate = rate;
+        return this;
+    }
+
+    /**
+     * Set the least and most ticks a particle lives.
+     */
+    public ParticleEmitter setLife(int minLife, int maxLife) {
+        if (minLife < 1 || maxLife < minLife) {
+            throw new IllegalArgumentException("The life must be at least a tick, and the most no less than the least.");
+        }
+        this.minLife = minLife;
+        this.maxLife = maxLife;
+        return this;
+    }
+
+    /**
+     * Set the least and most speed of a particle in pixels per tick.
+     */
+    public ParticleEmitter setSpeed(float minSpeed, float maxSpeed) {
+        this.minSpeed = minSpeed;
+        this.maxSpeed = maxSpeed;
+        return this;
+    }
+
+    /**
+     * Set the direction particles leave in, and the angle around it they spread over.
+     */
+    public ParticleEmitter setDirection(float direction, float spread) {
+        this.direction = direction;
+        this.spread = spread;
+        return this;
+    }
+
+    /**
+     * Set how far from its point, entity or tile center the emitter is.
+     */
+    public ParticleEmitter setOffset(float offsetX, float offsetY) {
+        this.offsetX = offsetX;
+        this.offsetY = offsetY;
+        return this;
+    }
+
+    /**
+     * Set the amount of ticks the emitter emits for before it finishes, or -1 to emit until it is removed.
+     */
+    public ParticleEmitter setDuration(int duration) {
+        if (duration < -1) {
+            throw new IllegalArgumentException("The duration must be -1 or more.");
+        }
+        this.duration = duration;
+        return this;
+    }
+
+    /**
+     * Emit an amount of particles at once on the next update, even if the duration ran out.
+     */
+    public ParticleEmitter burst(int amount) {
+        burst += amount;
+        return this;
+    }
+
+    /**
+     * Move an emitter placed at a point.
+     */
+    public void setPosition(float x, float y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    /**
+     * @return the entity the emitter follows, or null.
+     */
+    public Entity getEntity() {
+        return entity;
+    }
+
+    /**
+     * @return the tile the emitter is at, or null.
+     */
+    public Tile getTile() {
+        return tile;
+    }
+
+    /**
+     * @return the index of the sprite of its particles.
+     */
+    public int getSprite() {
+        return sprite;
+    }
+
+    /**
+     * @return if its duration ran out and no burst is left, the system removes finished emitters.
+     */
+    public boolean isFinished() {
+        return duration == 0 && burst == 0;
+    }
+}
@@ -0,0 +1,390 @@
+package me.vrekt.lunar.particle;
+
+import me.vrekt.lunar.entity.Entity;
+import me.vrekt.lunar.render.RenderSnapshot;
+import me.vrekt.lunar.utilities.FixedPoint;
+
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps particles in parallel arrays of a fixed capacity, a particle is a position, a velocity, the ticks it has left
+ * and the index of its sprite. Nothing is allocated after the system is created, a particle that dies is replaced by
+ * the last particle so the live particles are always the first {@link #size()} of the arrays.
+ * <p>
+ * Particles are drawn grouped by sprite, so a frame draws every particle of a sprite before the next sprite.
+ * Draw into the pixels of an image with {@link #draw(BufferedImage, int, int)} for the most particles a frame.
+ * Positions are the centers of the particles, in pixels. Not thread safe, use the system from the game thread.
+ */
+public class ParticleSystem {
+
+    private final int capacity;
+    private final float[] x, y, velocityX, velocityY;
+    private final int[] life, sprite;
+    private int count;
+
+    private float gravityX, gravityY;
+    private float drag;
+
+    private BufferedImage[] sprites = new BufferedImage[8];
+    private int[][] spritePixels = new int[8][];
+    private int spriteCount;
+
+    private final List<ParticleEmitter> emitters = new ArrayList<>();
+
+    // particle indices grouped by sprite, and where each group starts.
+    private final int[] order;
+    private int[] groupStart = new int[9];
+
+    private long emitted, dropped;
+
+    /**
+     * Initialize the system.
+     *
+     * @param capacity the most particles alive at once, more are dropped.
+     */
+    public ParticleSystem(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity must be positive.");
+        }
+
+        this.capacity = capacity;
+        x = new float[capacity];
+        y = new float[capacity];
+        velocityX = new float[capacity];
+        velocityY = new float[capacity];
+        life = new int[capacity];
+        sprite = new int[capacity];
+        order = new int[capacity];
+    }
+
+    /**
+     * Add a sprite particles can be drawn with.
+     *
+     * @return the index of the sprite.
+     */
+    public int addSprite(BufferedImage image) {
+        if (spriteCount == sprites.length) {
+            sprites = Arrays.copyOf(sprites, spriteCount << 1);
+            spritePixels = Arrays.copyOf(spritePixels, spriteCount << 1);
+            groupStart = Arrays.copyOf(groupStart, (spriteCount << 1) + 1);
+        }
+
+        sprites[spriteCount] = image;
+        spritePixels[spriteCount] = image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+        return spriteCount++;
+    }
+
+    /**
+     * Add a square sprite of one color.
+     *
+     * @param rgb  the color.
+     * @param size the width and height in pixels.
+     * @return the index of the sprite.
+     */
+    public int addColor(int rgb, int size) {
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        Arrays.fill(((DataBufferInt) image.getRaster().getDataBuffer()).getData(), 0xFF000000 | rgb);
+        return addSprite(image);
+    }
+
+    /**
+     * Add a particle.
+     *
+     * @param life   the amount of ticks it lives.
+     * @param sprite the index of its sprite.
+     * @return false if the system was full and the particle was dropped.
+     */
+    public boolean emit(float x, float y, float velocityX, float velocityY, int life, int sprite) {
+        if (sprite < 0 || sprite >= spriteCount) {
+            throw new IllegalArgumentException("No sprite with index " + sprite + ".");
+        }
+        if (count == capacity) {
+            dropped++;
+            return false;
+        }
+
+        int index = count++;
+        this.x[index] = x;
+        this.y[index] = y;
+        this.velocityX[index] = velocityX;
+        this.velocityY[index] = velocityY;
+        this.life[index] = life;
+        this.sprite[index] = sprite;
+        emitted++;
+        return true;
+    }
+
+    /**
+     * Add an emitter, it emits every update until it finishes.
+     */
+    public void addEmitter(ParticleEmitter emitter) {
+        emitters.add(emitter);
+    }
+
+    /**
+     * Remove an emitter, the particles it emitted live on.
+     */
+    public void removeEmitter(ParticleEmitter emitter) {
+        emitters.remove(emitter);
+    }
+
+    /**
+     * Remove the emitters attached to the entity.
+     */
+    public void removeEmitters(Entity entity) {
+        emitters.removeIf(emitter -> emitter.getEntity() == entity);
+    }
+
+    /**
+     * Get the emitters.
+     */
+    public List<ParticleEmitter> getEmitters() {
+        return emitters;
+    }
+
+    /**
+     * Run the emitters, move every particle by its velocity and remove the particles that died.
+     */
+    public void update() {
+        for (int i = 0; i < emitters.size(); i++) {
+            ParticleEmitter emitter = emitters.get(i);
+            emitter.emit(this);
+            if (emitter.isFinished()) {
+                emitters.remove(i--);
+            }
+        }
+
+        // a plain pass over the arrays, the JIT can vectorize it.
+        float keep = 1 - drag;
+        float[] x = this.x, y = this.y, velocityX = this.velocityX, velocityY = this.velocityY;
+        int[] life = this.life;
+        for (int i = 0; i < count; i++) {
+            velocityX[i] = velocityX[i] * keep + gravityX;
+            velocityY[i] = velocityY[i] * keep + gravityY;
+            x[i] += velocityX[i];
+            y[i] += velocityY[i];
+            life[i]--;
+        }
+
+        int i = 0;
+        while (i < count) {
+            if (life[i] > 0) {
+                i++;
+                continue;
+            }
+            int last = --count;
+            x[i] = x[last];
+            y[i] = y[last];
+            velocityX[i] = velocityX[last];
+            velocityY[i] = velocityY[last];
+            life[i] = life[last];
+            sprite[i] = sprite[last];
+        }
+    }
+
+    /**
+     * Remove every particle, the emitters are kept.
+     */
+    public void clear() {
+        count = 0;
+    }
+
+    /**
+     * Put the particle indices in order of sprite with a counting sort, particles of a sprite keep their order.
+     */
+    private void group() {
+        int[] start = groupStart;
+        Arrays.fill(start, 0, spriteCount + 1, 0);
+        for (int i = 0; i < count; i++) {
+            start[sprite[i] + 1]++;
+        }
+        for (int s = 1; s <= spriteCount; s++) {
+            start[s] += start[s - 1];
+        }
+
+        // filled from the end of each group, which leaves each group start one entry up.
+        for (int i = count - 1; i >= 0; i--) {
+            order[--start[sprite[i] + 1]] = i;
+        }
+        System.arraycopy(start, 1, start, 0, spriteCount);
+        start[spriteCount] = count;
+    }
+
+    /**
+     * Draw every particle, relative to the view position.
+     */
+    public void draw(Graphics graphics, int viewX, int viewY) {
+        group();
+        for (int s = 0; s < spriteCount; s++) {
+            BufferedImage image = sprites[s];
+            float offsetX = viewX + image.getWidth() / 2f;
+            float offsetY = viewY + image.getHeight() / 2f;
+            for (int i = groupStart[s]; i < groupStart[s + 1]; i++) {
+                int index = order[i];
+                graphics.drawImage(image, (int) Math.floor(x[index] - offsetX), (int) Math.floor(y[index] - offsetY), null);
+            }
+        }
+    }
+
+    /**
+     * Draw every particle straight into the pixels of the image, relative to the view position.
+     * Much faster than a drawImage call per particle. Pixels of a sprite are either drawn or skipped by their alpha,
+     * and the image stops being accelerated once its pixels were written, so draw into an image that is redrawn
+     * every frame like a back buffer.
+     *
+     * @param target an image of type {@link BufferedImage#TYPE_INT_RGB} or {@link BufferedImage#TYPE_INT_ARGB}.
+     */
+    public void draw(BufferedImage target, int viewX, int viewY) {
+        int type = target.getType();
+        if (type != BufferedImage.TYPE_INT_RGB && type != BufferedImage.TYPE_INT_ARGB) {
+            throw new IllegalArgumentException("The target must hold its pixels as ints.");
+        }
+
+        int[] pixels = ((DataBufferInt) target.getRaster().getDataBuffer()).getData();
+        int targetWidth = target.getWidth();
+        int targetHeight = target.getHeight();
+
+        group();
+        for (int s = 0; s < spriteCount; s++) {
+            int[] spritePixels = this.spritePixels[s];
+            int width = sprites[s].getWidth();
+            int height = sprites[s].getHeight();
+            float offsetX = viewX + width / 2f;
+            float offsetY = viewY + height / 2f;
+
+            if (width == 1 && height == 1) {
+                if (spritePixels[0] >>> 24 < 128) {
+                    continue;
+                }
+                int color = spritePixels[0] | 0xFF000000;
+                for (int i = groupStart[s]; i < groupStart[s + 1]; i++) {
+                    int index = order[i];
+                    int pixelX = (int) Math.floor(x[index] - offsetX);
+                    int pixelY = (int) Math.floor(y[index] - offsetY);
+                    if (pixelX >= 0 && pixelY >= 0 && pixelX < targetWidth && pixelY < targetHeight) {
+                        pixels[pixelY * targetWidth + pixelX] = color;
+                    }
+                }
+                continue;
+            }
+
+            for (int i = groupStart[s]; i < groupStart[s + 1]; i++) {
+                int index = order[i];
+                int left = (int) Math.floor(x[index] - offsetX);
+                int top = (int) Math.floor(y[index] - offsetY);
+                int fromX = Math.max(0, -left), toX = Math.min(width, targetWidth - left);
+                int fromY = Math.max(0, -top), toY = Math.min(height, targetHeight - top);
+                for (int row = fromY; row < toY; row++) {
+                    int source = row * width;
+                    int destination = (top + row) * targetWidth + left;
+                    for (int column = fromX; column < toX; column++) {
+                        int color = spritePixels[source + column];
+                        if (color >>> 24 >= 128) {
+                            pixels[destination + column] = color | 0xFF000000;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Add every particle to the snapshot at its position before and after the last update, for the render thread
+     * when the game runs on two threads. Each particle is an image of the snapshot.
+     */
+    public void writeSnapshot(RenderSnapshot snapshot) {
+        for (int i = 0; i < count; i++) {
+            BufferedImage image = sprites[sprite[i]];
+            float left = x[i] - image.getWidth() / 2f;
+            float top = y[i] - image.getHeight() / 2f;
+            snapshot.addFixed(image, FixedPoint.fromFloat(left - velocityX[i]), FixedPoint.fromFloat(top - velocityY[i]),
+                    FixedPoint.fromFloat(left), FixedPoint.fromFloat(top));
+        }
+    }
+
+    /**
+     * Set the velocity added to every particle every tick.
+     */
+    public void setGravity(float gravityX, float gravityY) {
+        this.gravityX = gravityX;
+        this.gravityY = gravityY;
+    }
+
+    /**
+     * Set the share of their velocity particles lose every tick, from zero to one.
+     */
+    public void setDrag(float drag) {
+        if (drag < 0 || drag > 1) {
+            throw new IllegalArgumentException("The drag must be from zero to one.");
+        }
+        this.drag = drag;
+    }
+
+    /**
+     * Get the amount of live particles.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Get the most particles alive at once.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Get the amount of sprites.
+     */
+    public int getSpriteCount() {
+        return spriteCount;
+    }
+
+    /**
+     * Get the X of the particle at an index, from zero to {@link #size()}. Indices change when particles die.
+     */
+    public float getX(int index) {
+        return x[index];
+    }
+
+    /**
+     * Get the Y of the particle at an index.
+     */
+    public float getY(int index) {
+        return y[index];
+    }
+
+    /**
+     * Get the ticks the particle at an index has left.
+     */
+    public int getLife(int index) {
+        return life[index];
+    }
+
+    /**
+     * Get the sprite index of the particle at an index.
+     */
+    public int getSprite(int index) {
+        return sprite[index];
+    }
+
+    /**
+     * Get the amount of particles emitted.
+     */
+    public long getEmitted() {
+        return emitted;
+    }
+
+    /**
+     * Get the amount of particles dropped because the system was full.
+     */
+    public long getDropped() {
+        return dropped;
+    }
+}
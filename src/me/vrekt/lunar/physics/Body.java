@@ -0,0 +1,302 @@
+package me.vrekt.lunar.physics;
+
+import me.vrekt.lunar.entity.Entity;
+import me.vrekt.lunar.utilities.FixedPoint;
+
+/**
+ * A body moved by a {@link PhysicsWorld}, an axis-aligned box or a circle that doesn't rotate.
+ * Positions are the center of the body in pixels, velocities are in pixels per tick.
+ * A body with no mass is static, it never moves and other bodies bounce off it.
+ * <p>
+ * A body can move an {@link Entity}, the entity is kept at the position of the body and moving
+ * the entity directly moves the body there on the next step.
+ */
+public class Body {
+
+    /**
+     * The shape of a body.
+     */
+    public enum Shape {
+        BOX, CIRCLE
+    }
+
+    final Shape shape;
+    final double halfWidth, halfHeight;
+
+    double x, y;
+    double velocityX, velocityY;
+    double forceX, forceY;
+    double inverseMass;
+    double restitution = 0.2;
+    double friction = 0.4;
+    double damping;
+
+    boolean sleeping;
+    boolean allowSleep = true;
+    double sleepTime;
+
+    Entity entity;
+    // the fixed-point position last written to the entity, to notice when something else moved it.
+    int entityFixedX, entityFixedY;
+
+    // the index in the physics world, -1 if it isn't in one.
+    int index = -1;
+    // the position before the last step.
+    double startX, startY;
+
+    private Body(Shape shape, double halfWidth, double halfHeight, double mass) {
+        if (halfWidth <= 0 || halfHeight <= 0) {
+            throw new IllegalArgumentException("A body must have a size.");
+        }
+        if (mass < 0) {
+            throw new IllegalArgumentException("The mass can't be negative.");
+        }
+        this.shape = shape;
+        this.halfWidth = halfWidth;
+        this.halfHeight = halfHeight;
+        this.inverseMass = mass == 0 ? 0 : 1 / mass;
+    }
+
+    /**
+     * Create a box.
+     *
+     * @param mass the mass, zero for a static box.
+     */
+    public static Body box(double x, double y, double width, double height, double mass) {
+        Body body = new Body(Shape.BOX, width / 2, height / 2, mass);
+        body.setPosition(x, y);
+        return body;
+    }
+
+    /**
+     * Create a circle.
+     *
+     * @param mass the mass, zero for a static circle.
+     */
+    public static Body circle(double x, double y, double radius, double mass) {
+        Body body = new Body(Shape.CIRCLE, radius, radius, mass);
+        body.setPosition(x, y);
+        return body;
+    }
+
+    /**
+     * Create a box covering the entity that moves it.
+     *
+     * @param mass the mass, zero for a static box.
+     */
+    public static Body box(Entity entity, double mass) {
+        Body body = new Body(Shape.BOX, entity.getWidth() / 2.0, entity.getHeight() / 2.0, mass);
+        body.attach(entity);
+        return body;
+    }
+
+    /**
+     * Create a circle inside the entity that moves it, as wide as the smaller side of the entity.
+     *
+     * @param mass the mass, zero for a static circle.
+     */
+    public static Body circle(Entity entity, double mass) {
+        double radius = Math.min(entity.getWidth(), entity.getHeight()) / 2.0;
+        Body body = new Body(Shape.CIRCLE, radius, radius, mass);
+        body.attach(entity);
+        return body;
+    }
+
+    private void attach(Entity entity) {
+        this.entity = entity;
+        readEntity();
+    }
+
+    /**
+     * Move the body to the entity, the entity is at the top left of the body.
+     */
+    void readEntity() {
+        entityFixedX = entity.getFixedX();
+        entityFixedY = entity.getFixedY();
+        x = entityFixedX / (double) FixedPoint.ONE + halfWidth;
+        y = entityFixedY / (double) FixedPoint.ONE + halfHeight;
+    }
+
+    /**
+     * Get the shape.
+     */
+    public Shape getShape() {
+        return shape;
+    }
+
+    /**
+     * Get the X of the center.
+     */
+    public double getX() {
+        return x;
+    }
+
+    /**
+     * Get the Y of the center.
+     */
+    public double getY() {
+        return y;
+    }
+
+    /**
+     * Move the center of the body and wake it.
+     */
+    public void setPosition(double x, double y) {
+        this.x = x;
+        this.y = y;
+        wake();
+    }
+
+    /**
+     * Get the half of the width, the radius of a circle.
+     */
+    public double getHalfWidth() {
+        return halfWidth;
+    }
+
+    /**
+     * Get the half of the height, the radius of a circle.
+     */
+    public double getHalfHeight() {
+        return halfHeight;
+    }
+
+    /**
+     * Get the velocity on the X axis.
+     */
+    public double getVelocityX() {
+        return velocityX;
+    }
+
+    /**
+     * Get the velocity on the Y axis.
+     */
+    public double getVelocityY() {
+        return velocityY;
+    }
+
+    /**
+     * Set the velocity and wake the body.
+     */
+    public void setVelocity(double velocityX, double velocityY) {
+        if (inverseMass == 0) {
+            return;
+        }
+        this.velocityX = velocityX;
+        this.velocityY = velocityY;
+        wake();
+    }
+
+    /**
+     * Change the velocity by an impulse divided by the mass and wake the body.
+     */
+    public void applyImpulse(double impulseX, double impulseY) {
+        setVelocity(velocityX + impulseX * inverseMass, velocityY + impulseY * inverseMass);
+    }
+
+    /**
+     * Push the body during the next step and wake it.
+     */
+    public void applyForce(double forceX, double forceY) {
+        this.forceX += forceX;
+        this.forceY += forceY;
+        wake();
+    }
+
+    /**
+     * Get the mass, zero if the body is static.
+     */
+    public double getMass() {
+        return inverseMass == 0 ? 0 : 1 / inverseMass;
+    }
+
+    /**
+     * Return if the body is static.
+     */
+    public boolean isStatic() {
+        return inverseMass == 0;
+    }
+
+    /**
+     * Get how much of the speed the body keeps when it bounces, from zero to one.
+     */
+    public double getRestitution() {
+        return restitution;
+    }
+
+    /**
+     * Set how much of the speed the body keeps when it bounces, from zero to one.
+     */
+    public void setRestitution(double restitution) {
+        this.restitution = restitution;
+    }
+
+    /**
+     * Get how much the body resists sliding.
+     */
+    public double getFriction() {
+        return friction;
+    }
+
+    /**
+     * Set how much the body resists sliding, zero slides freely.
+     */
+    public void setFriction(double friction) {
+        this.friction = friction;
+    }
+
+    /**
+     * Set the share of the velocity lost every tick, like air resistance.
+     */
+    public void setDamping(double damping) {
+        this.damping = damping;
+    }
+
+    /**
+     * Return if the body is sleeping, sleeping bodies don't move and are only checked against awake bodies.
+     */
+    public boolean isSleeping() {
+        return sleeping;
+    }
+
+    /**
+     * Set if the body may sleep.
+     */
+    public void setAllowSleep(boolean allowSleep) {
+        this.allowSleep = allowSleep;
+        if (!allowSleep) {
+            wake();
+        }
+    }
+
+    /**
+     * Wake the body.
+     */
+    public void wake() {
+        sleeping = false;
+        sleepTime = 0;
+    }
+
+    /**
+     * Get the entity moved by this body, or null.
+     */
+    public Entity getEntity() {
+        return entity;
+    }
+
+    double minX() {
+        return x - halfWidth;
+    }
+
+    double minY() {
+        return y - halfHeight;
+    }
+
+    double maxX() {
+        return x + halfWidth;
+    }
+
+    double maxY() {
+        return y + halfHeight;
+    }
+}
@@ -0,0 +1,26 @@
+package me.vrekt.lunar.physics;
+
+/**
+ * Two touching bodies, kept between steps so the solver starts from the impulses of the last step.
+ */
+final class Contact {
+
+    Body first, second;
+    long key;
+    int stamp;
+
+    // the normal points from the first body to the second.
+    double normalX, normalY;
+    double penetration;
+
+    double normalImpulse, tangentImpulse;
+    double normalMass, bounce, friction;
+
+    void set(Body first, Body second, long key) {
+        this.first = first;
+        this.second = second;
+        this.key = key;
+        this.normalImpulse = 0;
+        this.tangentImpulse = 0;
+    }
+}
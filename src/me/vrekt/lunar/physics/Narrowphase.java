@@ -0,0 +1,114 @@
+package me.vrekt.lunar.physics;
+
+/**
+ * Finds the normal and penetration of two overlapping boxes or circles.
+ */
+final class Narrowphase {
+
+    private Narrowphase() {
+    }
+
+    /**
+     * Fill in the normal and penetration of the contact.
+     *
+     * @return if the bodies overlap.
+     */
+    static boolean collide(Contact contact) {
+        Body first = contact.first;
+        Body second = contact.second;
+        if (first.shape == Body.Shape.BOX && second.shape == Body.Shape.BOX) {
+            return boxes(contact, first, second);
+        } else if (first.shape == Body.Shape.CIRCLE && second.shape == Body.Shape.CIRCLE) {
+            return circles(contact, first, second);
+        } else if (first.shape == Body.Shape.BOX) {
+            return boxCircle(contact, first, second, 1);
+        }
+        return boxCircle(contact, second, first, -1);
+    }
+
+    private static boolean boxes(Contact contact, Body first, Body second) {
+        double dx = second.x - first.x;
+        double dy = second.y - first.y;
+        double overlapX = first.halfWidth + second.halfWidth - Math.abs(dx);
+        double overlapY = first.halfHeight + second.halfHeight - Math.abs(dy);
+        if (overlapX <= 0 || overlapY <= 0) {
+            return false;
+        }
+
+        // pushed apart along the axis they overlap least on.
+        if (overlapX < overlapY) {
+            contact.normalX = dx < 0 ? -1 : 1;
+            contact.normalY = 0;
+            contact.penetration = overlapX;
+        } else {
+            contact.normalX = 0;
+            contact.normalY = dy < 0 ? -1 : 1;
+            contact.penetration = overlapY;
+        }
+        return true;
+    }
+
+    private static boolean circles(Contact contact, Body first, Body second) {
+        double dx = second.x - first.x;
+        double dy = second.y - first.y;
+        double radii = first.halfWidth + second.halfWidth;
+        double distanceSquared = dx * dx + dy * dy;
+        if (distanceSquared >= radii * radii) {
+            return false;
+        }
+
+        double distance = Math.sqrt(distanceSquared);
+        if (distance == 0) {
+            contact.normalX = 0;
+            contact.normalY = 1;
+        } else {
+            contact.normalX = dx / distance;
+            contact.normalY = dy / distance;
+        }
+        contact.penetration = radii - distance;
+        return true;
+    }
+
+    /**
+     * @param sign 1 if the box is the first body of the contact, -1 if the circle is.
+     */
+    private static boolean boxCircle(Contact contact, Body box, Body circle, int sign) {
+        double dx = circle.x - box.x;
+        double dy = circle.y - box.y;
+        double closestX = Math.max(-box.halfWidth, Math.min(box.halfWidth, dx));
+        double closestY = Math.max(-box.halfHeight, Math.min(box.halfHeight, dy));
+        double radius = circle.halfWidth;
+
+        double normalX, normalY, penetration;
+        if (closestX == dx && closestY == dy) {
+            // the center is inside the box, pushed out through the closest side.
+            double toSideX = box.halfWidth - Math.abs(dx);
+            double toSideY = box.halfHeight - Math.abs(dy);
+            if (toSideX < toSideY) {
+                normalX = dx < 0 ? -1 : 1;
+                normalY = 0;
+                penetration = toSideX + radius;
+            } else {
+                normalX = 0;
+                normalY = dy < 0 ? -1 : 1;
+                penetration = toSideY + radius;
+            }
+        } else {
+            double offsetX = dx - closestX;
+            double offsetY = dy - closestY;
+            double distanceSquared = offsetX * offsetX + offsetY * offsetY;
+            if (distanceSquared >= radius * radius) {
+                return false;
+            }
+            double distance = Math.sqrt(distanceSquared);
+            normalX = offsetX / distance;
+            normalY = offsetY / distance;
+            penetration = radius - distance;
+        }
+
+        contact.normalX = normalX * sign;
+        contact.normalY = normalY * sign;
+        contact.penetration = penetration;
+        return true;
+    }
+}
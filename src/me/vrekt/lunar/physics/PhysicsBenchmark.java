@@ -0,0 +1,70 @@
+package me.vrekt.lunar.physics;
+
+import java.util.Random;
+
+/**
+ * Measures how many steps a second a {@link PhysicsWorld} takes against the amount of bodies. Random boxes and circles
+ * are dropped into a walled pit, steps are timed while they fall and again once the pile settled and slept.
+ * <p>
+ * Run with the body counts to measure as arguments, for example {@code java me.vrekt.lunar.physics.PhysicsBenchmark 500 2000}.
+ */
+public final class PhysicsBenchmark {
+
+    private static final int[] DEFAULT_COUNTS = {250, 500, 1000, 2000, 4000, 8000};
+    private static final int TIMED_STEPS = 200;
+    private static final int SETTLE_STEPS = 2600;
+
+    private PhysicsBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int[] counts = DEFAULT_COUNTS;
+        if (args.length > 0) {
+            counts = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                counts[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        System.out.println(" bodies   falling steps/s   settled steps/s   sleeping   pairs");
+        for (int count : counts) {
+            PhysicsWorld world = createPit(count);
+            double falling = stepsPerSecond(world);
+            for (int i = 0; i < SETTLE_STEPS; i++) {
+                world.step(1);
+            }
+            double settled = stepsPerSecond(world);
+            System.out.printf("%7d   %15.0f   %15.0f   %8d   %5d%n", count, falling, settled,
+                    world.getSleepingCount(), world.getPairCount());
+        }
+    }
+
+    /**
+     * Create a world with the amount of bodies scattered above a pit, the same bodies for the same amount.
+     */
+    private static PhysicsWorld createPit(int count) {
+        PhysicsWorld world = new PhysicsWorld(0.2);
+        Random random = new Random(count);
+        int width = (int) Math.sqrt(count) * 40;
+
+        world.add(Body.box(width / 2.0, 4010, width + 200, 20, 0));
+        world.add(Body.box(-10, 2000, 20, 4000, 0));
+        world.add(Body.box(width + 10, 2000, 20, 4000, 0));
+        for (int i = 0; i < count; i++) {
+            double x = 20 + random.nextDouble() * (width - 40);
+            double y = 3980 - random.nextDouble() * 3000;
+            world.add(i % 2 == 0
+                    ? Body.box(x, y, 8 + random.nextInt(16), 8 + random.nextInt(16), 1)
+                    : Body.circle(x, y, 4 + random.nextInt(8), 1));
+        }
+        return world;
+    }
+
+    private static double stepsPerSecond(PhysicsWorld world) {
+        long start = System.nanoTime();
+        for (int i = 0; i < TIMED_STEPS; i++) {
+            world.step(1);
+        }
+        return TIMED_STEPS / ((System.nanoTime() - start) / 1e9);
+    }
+}
@@ -0,0 +1,590 @@
+package me.vrekt.lunar.physics;
+
+import me.vrekt.lunar.entity.Entity;
+import me.vrekt.lunar.utilities.FixedPoint;
+import me.vrekt.lunar.utilities.LongObjectMap;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Moves {@link Body}s every step: gravity and forces change the velocities, the bodies whose bounds overlap are
+ * found by sorting them along the X axis, the overlapping ones are pushed apart by impulses solved a few times over
+ * and the bodies move. Contacts are kept between steps and start from the impulses of the last step, which settles
+ * stacks in few iterations.
+ * <p>
+ * Bodies that touch form islands. When every body of an island barely moved for a while the island sleeps until
+ * an awake body touches it, or one of its bodies is pushed. Sleeping bodies still take part in the sort, a linear pass
+ * once they stopped moving, but they aren't moved, their bounds aren't recomputed and they are only checked against
+ * awake bodies, so a settled pile costs no pairs.
+ * Bodies don't rotate. Units are pixels and ticks, a step of one moves bodies by their velocity.
+ */
+public class PhysicsWorld {
+
+    private double gravityX, gravityY;
+    private int iterations = 8;
+    private double slop = 0.5;
+    private double correction = 0.4;
+    private double sleepSpeed = 0.05;
+    private double sleepDelay = 30;
+
+    private Body[] bodies = new Body[64];
+    private int bodyCount;
+    private final Map<Entity, Body> entityBodies = new IdentityHashMap<>();
+
+    // bodies sorted by the left edge of their bounds, and the bounds of the step by body index.
+    private int[] order = new int[64];
+    private double[] minX = new double[64], minY = new double[64], maxX = new double[64], maxY = new double[64];
+
+    // during the sweep, the bodies passed whose bounds may still overlap the next, moving and not.
+    private int[] openMoving = new int[64], openResting = new int[64];
+
+    private final LongObjectMap<Contact> contactCache = new LongObjectMap<>();
+    private Contact[] contacts = new Contact[64];
+    private int contactCount;
+    private Contact[] freeContacts = new Contact[64];
+    private int freeContactCount;
+    private int stamp;
+
+    // union-find over body indices, and the least sleep time of each island.
+    private int[] islands = new int[64];
+    private double[] islandSleepTime = new double[64];
+
+    private int pairCount, awakeCount;
+
+    /**
+     * Initialize the world without gravity.
+     */
+    public PhysicsWorld() {
+    }
+
+    /**
+     * Initialize the world.
+     *
+     * @param gravityY the gravity in pixels per tick per tick, down is positive.
+     */
+    public PhysicsWorld(double gravityY) {
+        this.gravityY = gravityY;
+    }
+
+    /**
+     * Add the body, nothing happens if it was added.
+     */
+    public void add(Body body) {
+        if (body.index != -1) {
+            return;
+        }
+
+        if (bodyCount == bodies.length) {
+            int capacity = bodyCount << 1;
+            bodies = Arrays.copyOf(bodies, capacity);
+            order = Arrays.copyOf(order, capacity);
+            minX = Arrays.copyOf(minX, capacity);
+            minY = Arrays.copyOf(minY, capacity);
+            maxX = Arrays.copyOf(maxX, capacity);
+            maxY = Arrays.copyOf(maxY, capacity);
+            islands = Arrays.copyOf(islands, capacity);
+            islandSleepTime = Arrays.copyOf(islandSleepTime, capacity);
+            openMoving = Arrays.copyOf(openMoving, capacity);
+            openResting = Arrays.copyOf(openResting, capacity);
+        }
+
+        body.index = bodyCount;
+        bodies[bodyCount] = body;
+        order[bodyCount] = bodyCount;
+        storeBounds(bodyCount);
+        bodyCount++;
+        if (body.entity != null) {
+            entityBodies.put(body.entity, body);
+        }
+    }
+
+    /**
+     * Remove the body, its contacts are dropped.
+     */
+    public void remove(Body body) {
+        int index = body.index;
+        if (index == -1 || bodies[index] != body) {
+            return;
+        }
+
+        // drop the contacts of the body, the step keeps the rest.
+        int kept = 0;
+        for (int i = 0; i < contactCount; i++) {
+            Contact contact = contacts[i];
+            if (contact.first == body || contact.second == body) {
+                contact.second.wake();
+                contact.first.wake();
+                releaseContact(contact);
+            } else {
+                contacts[kept++] = contact;
+            }
+        }
+        contactCount = kept;
+
+        // the last body takes its index, the sort order is rebuilt without the removed index.
+        int last = --bodyCount;
+        bodies[index] = bodies[last];
+        bodies[index].index = index;
+        bodies[last] = null;
+        minX[index] = minX[last];
+        minY[index] = minY[last];
+        maxX[index] = maxX[last];
+        maxY[index] = maxY[last];
+        int position = 0;
+        for (int i = 0; i <= bodyCount; i++) {
+            if (order[i] != index) {
+                order[position++] = order[i] == last ? index : order[i];
+            }
+        }
+
+        body.index = -1;
+        if (body.entity != null) {
+            entityBodies.remove(body.entity);
+        }
+    }
+
+    /**
+     * Remove the body of the entity, if it has one.
+     */
+    public void remove(Entity entity) {
+        Body body = entityBodies.get(entity);
+        if (body != null) {
+            remove(body);
+        }
+    }
+
+    /**
+     * Get the body of the entity, or null.
+     */
+    public Body getBody(Entity entity) {
+        return entityBodies.get(entity);
+    }
+
+    /**
+     * Move every body by a step.
+     *
+     * @param time the length of the step in ticks, usually one.
+     */
+    public void step(double time) {
+        stamp++;
+        awakeCount = 0;
+        for (int i = 0; i < bodyCount; i++) {
+            Body body = bodies[i];
+            if (body.entity != null && (body.entity.getFixedX() != body.entityFixedX || body.entity.getFixedY() != body.entityFixedY)) {
+                body.readEntity();
+                body.wake();
+            }
+
+            if (body.inverseMass != 0 && !body.sleeping) {
+                body.velocityX += (gravityX + body.forceX * body.inverseMass) * time;
+                body.velocityY += (gravityY + body.forceY * body.inverseMass) * time;
+                if (body.damping != 0) {
+                    double keep = Math.max(0, 1 - body.damping * time);
+                    body.velocityX *= keep;
+                    body.velocityY *= keep;
+                }
+                awakeCount++;
+            }
+            body.forceX = body.forceY = 0;
+        }
+
+        findContacts();
+        solve(time);
+
+        for (int i = 0; i < bodyCount; i++) {
+            Body body = bodies[i];
+            body.startX = body.x;
+            body.startY = body.y;
+            if (body.inverseMass != 0 && !body.sleeping) {
+                body.x += body.velocityX * time;
+                body.y += body.velocityY * time;
+            }
+        }
+        correctPositions();
+        sleepIslands(time);
+        writeEntities();
+    }
+
+    /**
+     * Sort the bounds along the X axis and collide the bodies whose bounds overlap.
+     */
+    private void findContacts() {
+        // sleeping bodies don't move, their bounds were stored when they fell asleep.
+        for (int i = 0; i < bodyCount; i++) {
+            if (!bodies[i].sleeping) {
+                storeBounds(i);
+            }
+        }
+
+        // bodies barely move between steps, an insertion sort is close to linear.
+        for (int i = 1; i < bodyCount; i++) {
+            int index = order[i];
+            double key = minX[index];
+            int j = i - 1;
+            while (j >= 0 && minX[order[j]] > key) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = index;
+        }
+
+        // every body is checked against the moving bodies passed, and a moving body also against the resting ones,
+        // so two bodies that can't move are never paired.
+        int previousCount = contactCount;
+        pairCount = 0;
+        int movingCount = 0, restingCount = 0;
+        for (int i = 0; i < bodyCount; i++) {
+            int index = order[i];
+            Body body = bodies[index];
+            boolean moving = body.inverseMass != 0 && !body.sleeping;
+            movingCount = sweepOpen(openMoving, movingCount, index);
+            if (moving) {
+                restingCount = sweepOpen(openResting, restingCount, index);
+                openMoving[movingCount++] = index;
+            } else {
+                openResting[restingCount++] = index;
+            }
+        }
+
+        // contacts of the last step that weren't found again ended.
+        int kept = 0;
+        for (int i = 0; i < contactCount; i++) {
+            Contact contact = contacts[i];
+            if (contact.stamp == stamp) {
+                contacts[kept++] = contact;
+            } else if (i < previousCount) {
+                releaseContact(contact);
+            }
+        }
+        contactCount = kept;
+    }
+
+    /**
+     * Collide the body with the open bodies whose bounds overlap it, and drop the open bodies that end before it
+     * since every body after it starts further right.
+     *
+     * @return the amount of open bodies kept.
+     */
+    private int sweepOpen(int[] open, int openCount, int index) {
+        double left = minX[index];
+        int kept = 0;
+        for (int i = 0; i < openCount; i++) {
+            int other = open[i];
+            if (maxX[other] < left) {
+                continue;
+            }
+            open[kept++] = other;
+            if (minY[index] > maxY[other] || maxY[index] < minY[other]) {
+                continue;
+            }
+            pairCount++;
+            collide(bodies[other], bodies[index]);
+        }
+        return kept;
+    }
+
+    private void storeBounds(int index) {
+        Body body = bodies[index];
+        minX[index] = body.minX();
+        minY[index] = body.minY();
+        maxX[index] = body.maxX();
+        maxY[index] = body.maxY();
+    }
+
+    private void collide(Body first, Body second) {
+        boolean firstMoves = first.inverseMass != 0 && !first.sleeping;
+        boolean secondMoves = second.inverseMass != 0 && !second.sleeping;
+        if (!firstMoves && !secondMoves) {
+            return;
+        }
+
+        // the lower index first so a pair always has the same key.
+        if (first.index > second.index) {
+            Body swap = first;
+            first = second;
+            second = swap;
+        }
+
+        long key = ((long) first.index << 32) | second.index;
+        Contact contact = contactCache.get(key);
+        boolean cached = contact != null && contact.first == first && contact.second == second;
+        if (!cached) {
+            if (contact != null) {
+                // the indices were reused by other bodies.
+                contact.stamp = -1;
+            }
+            contact = freeContactCount > 0 ? freeContacts[--freeContactCount] : new Contact();
+            contact.set(first, second, key);
+        }
+        if (!Narrowphase.collide(contact)) {
+            if (!cached) {
+                recycle(contact);
+            }
+            return;
+        }
+
+        if (first.sleeping) {
+            first.wake();
+        }
+        if (second.sleeping) {
+            second.wake();
+        }
+        contact.stamp = stamp;
+        if (!cached) {
+            contactCache.put(key, contact);
+            if (contactCount == contacts.length) {
+                contacts = Arrays.copyOf(contacts, contactCount << 1);
+            }
+            contacts[contactCount++] = contact;
+        }
+    }
+
+    private void releaseContact(Contact contact) {
+        if (contactCache.get(contact.key) == contact) {
+            contactCache.remove(contact.key);
+        }
+        recycle(contact);
+    }
+
+    private void recycle(Contact contact) {
+        contact.first = contact.second = null;
+        if (freeContactCount == freeContacts.length) {
+            freeContacts = Arrays.copyOf(freeContacts, freeContactCount << 1);
+        }
+        freeContacts[freeContactCount++] = contact;
+    }
+
+    /**
+     * Apply the impulses of the last step, then solve the contacts a few times over.
+     */
+    private void solve(double time) {
+        for (int i = 0; i < contactCount; i++) {
+            Contact contact = contacts[i];
+            Body first = contact.first;
+            Body second = contact.second;
+            double inverseMass = first.inverseMass + second.inverseMass;
+            contact.normalMass = 1 / inverseMass;
+            contact.friction = Math.sqrt(first.friction * second.friction);
+
+            double approach = (second.velocityX - first.velocityX) * contact.normalX
+                    + (second.velocityY - first.velocityY) * contact.normalY;
+            // only bounce off hits, resting bodies would jitter otherwise.
+            double restitution = Math.max(first.restitution, second.restitution);
+            contact.bounce = approach < -Math.abs(gravityY + gravityX) * time * 2 ? -restitution * approach : 0;
+        }
+
+        // warm started after every bounce is known, a stack would look like a hit otherwise.
+        for (int i = 0; i < contactCount; i++) {
+            Contact contact = contacts[i];
+            applyImpulse(contact, contact.normalImpulse, contact.tangentImpulse);
+        }
+
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            for (int i = 0; i < contactCount; i++) {
+                Contact contact = contacts[i];
+                Body first = contact.first;
+                Body second = contact.second;
+                double relativeX = second.velocityX - first.velocityX;
+                double relativeY = second.velocityY - first.velocityY;
+
+                double normalSpeed = relativeX * contact.normalX + relativeY * contact.normalY;
+                double normalImpulse = Math.max(contact.normalImpulse + contact.normalMass * (contact.bounce - normalSpeed), 0);
+                double normalChange = normalImpulse - contact.normalImpulse;
+                contact.normalImpulse = normalImpulse;
+
+                // the tangent is the normal turned a quarter.
+                double tangentSpeed = -relativeX * contact.normalY + relativeY * contact.normalX;
+                double limit = contact.friction * contact.normalImpulse;
+                double tangentImpulse = Math.max(-limit, Math.min(limit, contact.tangentImpulse - contact.normalMass * tangentSpeed));
+                double tangentChange = tangentImpulse - contact.tangentImpulse;
+                contact.tangentImpulse = tangentImpulse;
+
+                applyImpulse(contact, normalChange, tangentChange);
+            }
+        }
+    }
+
+    private static void applyImpulse(Contact contact, double normal, double tangent) {
+        double impulseX = contact.normalX * normal - contact.normalY * tangent;
+        double impulseY = contact.normalY * normal + contact.normalX * tangent;
+        Body first = contact.first;
+        Body second = contact.second;
+        first.velocityX -= impulseX * first.inverseMass;
+        first.velocityY -= impulseY * first.inverseMass;
+        second.velocityX += impulseX * second.inverseMass;
+        second.velocityY += impulseY * second.inverseMass;
+    }
+
+    /**
+     * Push overlapping bodies apart by part of the overlap beyond the slop, so stacks don't sink into each other.
+     */
+    private void correctPositions() {
+        for (int i = 0; i < contactCount; i++) {
+            Contact contact = contacts[i];
+            Body first = contact.first;
+            Body second = contact.second;
+            double moved = (second.x - second.startX - first.x + first.startX) * contact.normalX
+                    + (second.y - second.startY - first.y + first.startY) * contact.normalY;
+            double push = (contact.penetration - moved - slop) * correction * contact.normalMass;
+            if (push <= 0) {
+                continue;
+            }
+
+            first.x -= contact.normalX * push * first.inverseMass;
+            first.y -= contact.normalY * push * first.inverseMass;
+            second.x += contact.normalX * push * second.inverseMass;
+            second.y += contact.normalY * push * second.inverseMass;
+        }
+    }
+
+    /**
+     * Join touching moving bodies into islands and put the islands that rested long enough to sleep.
+     */
+    private void sleepIslands(double time) {
+        double sleepSpeedSquared = sleepSpeed * sleepSpeed;
+        for (int i = 0; i < bodyCount; i++) {
+            Body body = bodies[i];
+            islands[i] = i;
+            if (body.inverseMass == 0 || body.sleeping) {
+                continue;
+            }
+
+            double speedSquared = body.velocityX * body.velocityX + body.velocityY * body.velocityY;
+            body.sleepTime = body.allowSleep && speedSquared < sleepSpeedSquared ? body.sleepTime + time : 0;
+            islandSleepTime[i] = body.sleepTime;
+        }
+
+        for (int i = 0; i < contactCount; i++) {
+            Contact contact = contacts[i];
+            // static bodies don't join islands, or everything on the ground would be one island.
+            if (contact.first.inverseMass != 0 && contact.second.inverseMass != 0) {
+                int first = find(contact.first.index);
+                int second = find(contact.second.index);
+                if (first != second) {
+                    islands[first] = second;
+                    islandSleepTime[second] = Math.min(islandSleepTime[second], islandSleepTime[first]);
+                }
+            }
+        }
+
+        for (int i = 0; i < bodyCount; i++) {
+            Body body = bodies[i];
+            if (body.inverseMass != 0 && !body.sleeping && islandSleepTime[find(i)] >= sleepDelay) {
+                body.sleeping = true;
+                body.velocityX = body.velocityY = 0;
+                storeBounds(i);
+            }
+        }
+    }
+
+    private int find(int index) {
+        while (islands[index] != index) {
+            islands[index] = islands[islands[index]];
+            index = islands[index];
+        }
+        return index;
+    }
+
+    /**
+     * Move the entities of the bodies that moved.
+     */
+    private void writeEntities() {
+        for (int i = 0; i < bodyCount; i++) {
+            Body body = bodies[i];
+            Entity entity = body.entity;
+            if (entity == null || body.inverseMass == 0 || (body.x == body.startX && body.y == body.startY)) {
+                continue;
+            }
+
+            entity.setPositionFixed(FixedPoint.fromFloat((float) (body.x - body.halfWidth)),
+                    FixedPoint.fromFloat((float) (body.y - body.halfHeight)));
+            body.entityFixedX = entity.getFixedX();
+            body.entityFixedY = entity.getFixedY();
+            entity.updateBoundingBox();
+        }
+    }
+
+    /**
+     * Set the gravity in pixels per tick per tick.
+     */
+    public void setGravity(double gravityX, double gravityY) {
+        this.gravityX = gravityX;
+        this.gravityY = gravityY;
+    }
+
+    /**
+     * Set how many times the contacts are solved every step, more settles stacks better.
+     */
+    public void setIterations(int iterations) {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("The contacts must be solved at least once.");
+        }
+        this.iterations = iterations;
+    }
+
+    /**
+     * Set the overlap in pixels left alone, and the share of the rest pushed apart every step.
+     */
+    public void setCorrection(double slop, double correction) {
+        this.slop = slop;
+        this.correction = correction;
+    }
+
+    /**
+     * Set the speed bodies must stay under, and for how many ticks, before their island sleeps.
+     */
+    public void setSleeping(double sleepSpeed, double sleepDelay) {
+        this.sleepSpeed = sleepSpeed;
+        this.sleepDelay = sleepDelay;
+    }
+
+    /**
+     * Get the amount of bodies.
+     */
+    public int size() {
+        return bodyCount;
+    }
+
+    /**
+     * Get the body at an index, from zero to {@link #size()}. Indices change when bodies are removed.
+     */
+    public Body getBody(int index) {
+        return bodies[index];
+    }
+
+    /**
+     * Get the amount of touching pairs after the last step.
+     */
+    public int getContactCount() {
+        return contactCount;
+    }
+
+    /**
+     * Get the amount of pairs whose bounds overlapped in the last step.
+     */
+    public int getPairCount() {
+        return pairCount;
+    }
+
+    /**
+     * Get the amount of moving bodies that were awake in the last step.
+     */
+    public int getAwakeCount() {
+        return awakeCount;
+    }
+
+    /**
+     * Get the amount of sleeping bodies.
+     */
+    public int getSleepingCount() {
+        int sleeping = 0;
+        for (int i = 0; i < bodyCount; i++) {
+            if (bodies[i].sleeping) {
+                sleeping++;
+            }
+        }
+        return sleeping;
+    }
+}
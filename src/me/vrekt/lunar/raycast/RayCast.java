@@ -2,12 +2,9 @@ package me.vrekt.lunar.raycast;
 
 import me.vrekt.lunar.location.Location;
 import me.vrekt.lunar.tile.Tile;
-import me.vrekt.lunar.utilities.Utilities;
 import me.vrekt.lunar.world.World;
 
 import java.awt.*;
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * A class to perform ray casting within the given world.
@@ -70,9 +67,19 @@ public class RayCast {
         this.stepSize = 1;
     }
 
-    private List<Location> BresenhamLine(int xi, int yi, int xf, int yf) {
-        int dist = (int) Math.ceil(Utilities.distance(xi, yi, xf, yf));
-        List<Location> list = new ArrayList<>(dist);
+    /**
+     * Perform a ray cast from (originX, originY) in the direction of (dirX, dirY) for the given distance.
+     */
+    public RayCastResult doRayCast(int originX, int originY, int dirX, int dirY, float distance) {
+        return doRayCast(originX, originY, originX + (int) (dirX * distance), originY + (int) (dirY * distance));
+    }
+
+    /**
+     * Perform a ray cast from (originX, originY) to (targetX, targetY).
+     */
+    public RayCastResult doRayCast(int originX, int originY, int targetX, int targetY) {
+        // Walk the Bresenham line point by point, every point is checked against the world's solidity mask.
+        int xi = originX, yi = originY, xf = targetX, yf = targetY;
 
         boolean steep = Math.abs(yf - yi) > Math.abs(xf - xi);
         int temp;
@@ -100,11 +107,13 @@ public class RayCast {
         int y = yi;
 
         for (int x = xi; x < xf; x++) {
-            if (steep) {
-                list.add(new Location(y, x));
-            } else {
-                list.add(new Location(x, y));
+            int pointX = steep ? y : x;
+            int pointY = steep ? x : y;
+            if (!world.isPointPassable(pointX, pointY)) {
+                Location worldLoc = world.screenToWorldLocation(pointX, pointY);
+                return new RayCastResult(world.getCollisionLayer().getTileAt(worldLoc.getX(), worldLoc.getY()), worldLoc, true);
             }
+
             error += dy;
             if (2 * error >= dx) {
                 y += yStep;
@@ -112,29 +121,6 @@ public class RayCast {
             }
         }
 
-        return list;
-    }
-
-    /**
-     * Perform a ray cast from (originX, originY) in the direction of (dirX, dirY) for the given distance.
-     */
-    public RayCastResult doRayCast(int originX, int originY, int dirX, int dirY, float distance) {
-        return doRayCast(originX, originY, originX + (int) (dirX * distance), originY + (int) (dirY * distance));
-    }
-
-    /**
-     * Perform a ray cast from (originX, originY) to (targetX, targetY).
-     */
-    public RayCastResult doRayCast(int originX, int originY, int targetX, int targetY) {
-        List<Location> ray = BresenhamLine(originX, originY, targetX, targetY);
-
-        for (Location location : ray) {
-            if (!world.isPointPassable(location.getX(), location.getY())) {
-                Location worldLoc = world.screenToWorldLocation(location.getX(), location.getY());
-                return new RayCastResult(world.getTileAt(worldLoc.getX(), worldLoc.getY()), worldLoc, true);
-            }
-        }
-
         return new RayCastResult(null, world.screenToWorldLocation(targetX, targetY), false);
     }
 
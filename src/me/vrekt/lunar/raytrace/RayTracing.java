@@ -2,8 +2,10 @@ package me.vrekt.lunar.raytrace;
 
 import me.vrekt.lunar.tile.Tile;
 import me.vrekt.lunar.utilities.Utilities;
+import me.vrekt.lunar.world.SolidityMask;
 import me.vrekt.lunar.world.World;
 import me.vrekt.lunar.world.dir.Direction;
+import me.vrekt.lunar.world.storage.TileStorage;
 
 public class RayTracing implements RayTracer {
 
@@ -11,33 +13,7 @@ public class RayTracing implements RayTracer {
 
 	@Override
 	public Tile getNextSolidTile(World world, int x, int y, Direction dir, int width, int height) {
-		Tile reference = null;
-
-		boolean hasTile = false;
-		rayTraceRunning = true;
-
-		int roundedX;
-		int roundedY;
-
-		while (!hasTile && rayTraceRunning) {
-			x = dir == Direction.RIGHT ? x + width : dir == Direction.LEFT ? x - width : x;
-			y = dir == Direction.DOWN ? y + height : dir == Direction.UP ? y - height : y;
-
-			roundedX = Utilities.roundToDimensions(x, width);
-			roundedY = Utilities.roundToDimensions(y, height);
-
-			reference = world.getTileAt(roundedX, roundedY);
-			if (reference == null) {
-				continue;
-			}
-
-			reference.setX(roundedX);
-			reference.setY(roundedY);
-			hasTile = reference.isSolid();
-
-		}
-		rayTraceRunning = false;
-		return hasTile ? reference : null;
+		return traceSolid(world, x, y, -1, dir, width, height);
 	}
 
 	@Override
@@ -62,9 +38,10 @@ public class RayTracing implements RayTracer {
 				continue;
 			}
 
-			reference.setX(roundedX);
-			reference.setY(roundedY);
 			hasTile = reference.getID() == ID;
+			if (hasTile) {
+				reference = reference.at(roundedX, roundedY);
+			}
 
 		}
 
@@ -74,7 +51,12 @@ public class RayTracing implements RayTracer {
 
 	@Override
 	public Tile getNextSolidTile(World world, int x, int y, int distance, Direction dir, int width, int height) {
+		return traceSolid(world, x, y, distance, dir, width, height);
+	}
 
+	@Override
+	public Tile getNextTileWithID(World world, int x, int y, int distance, Direction dir, int ID, int width,
+			int height) {
 		Tile reference = null;
 
 		boolean hasTile = false;
@@ -86,6 +68,7 @@ public class RayTracing implements RayTracer {
 		while (!hasTile && rayTraceRunning && distance > 0) {
 			x = dir == Direction.RIGHT ? x + width : dir == Direction.LEFT ? x - width : x;
 			y = dir == Direction.DOWN ? y + height : dir == Direction.UP ? y - height : y;
+
 			distance--;
 
 			roundedX = Utilities.roundToDimensions(x, width);
@@ -95,10 +78,10 @@ public class RayTracing implements RayTracer {
 			if (reference == null) {
 				continue;
 			}
-
-			reference.setX(roundedX);
-			reference.setY(roundedY);
-			hasTile = reference.isSolid();
+			hasTile = reference.getID() == ID;
+			if (hasTile) {
+				reference = reference.at(roundedX, roundedY);
+			}
 
 		}
 
@@ -106,38 +89,80 @@ public class RayTracing implements RayTracer {
 		return hasTile ? reference : null;
 	}
 
-	@Override
-	public Tile getNextTileWithID(World world, int x, int y, int distance, Direction dir, int ID, int width,
-			int height) {
+	/**
+	 * Step from the X and Y until a solid tile is found. Solidity is read from the world's solidity mask,
+	 * and stretches of the mask without a solid cell are skipped a word at a time.
+	 *
+	 * @param distance the most steps to take, or -1 to keep going until a tile is found or the trace is stopped.
+	 */
+	private Tile traceSolid(World world, int x, int y, int distance, Direction dir, int width, int height) {
 		Tile reference = null;
-
-		boolean hasTile = false;
 		rayTraceRunning = true;
 
-		int roundedX;
-		int roundedY;
-
-		while (!hasTile && rayTraceRunning && distance > 0) {
-			x = dir == Direction.RIGHT ? x + width : dir == Direction.LEFT ? x - width : x;
-			y = dir == Direction.DOWN ? y + height : dir == Direction.UP ? y - height : y;
-
-			distance--;
+		boolean horizontal = dir == Direction.LEFT || dir == Direction.RIGHT;
+		int sign = dir == Direction.RIGHT || dir == Direction.DOWN ? 1 : dir == Direction.ORIGIN ? 0 : -1;
+		int stride = horizontal ? width : height;
+
+		SolidityMask mask = world.getSolidityMask();
+		boolean complete = world.isMaskComplete();
+		TileStorage collision = world.getCollisionLayer().getStorage();
+		int cellSize = horizontal ? collision.getCellWidth() : collision.getCellHeight();
+		int lineSize = horizontal ? collision.getCellHeight() : collision.getCellWidth();
+
+		int step = 0;
+		while (rayTraceRunning && (distance < 0 || step < distance)) {
+			step++;
+			int stepX = horizontal ? x + sign * step * width : x;
+			int stepY = horizontal ? y : y + sign * step * height;
+
+			int roundedX = Utilities.roundToDimensions(stepX, width);
+			int roundedY = Utilities.roundToDimensions(stepY, height);
+
+			if (world.isSolidAt(roundedX, roundedY)) {
+				Tile tile = collision.get(roundedX, roundedY);
+				if (tile != null) {
+					reference = tile.at(roundedX, roundedY);
+					break;
+				}
+			}
 
-			roundedX = Utilities.roundToDimensions(x, width);
-			roundedY = Utilities.roundToDimensions(y, height);
+			int along = horizontal ? stepX : stepY;
+			int key = horizontal ? roundedX : roundedY;
+			int perpendicular = horizontal ? roundedY : roundedX;
+			if (mask == null || sign == 0 || along < 0 || perpendicular < 0 || perpendicular % lineSize != 0) {
+				continue;
+			}
 
-			reference = world.getTileAt(roundedX, roundedY);
-			if (reference == null) {
+			int cell = key / cellSize;
+			int line = perpendicular / lineSize;
+			if (!(horizontal ? mask.contains(cell, line) : mask.contains(line, cell))) {
 				continue;
 			}
-			reference.setX(roundedX);
-			reference.setY(roundedY);
-			hasTile = reference.getID() == ID;
 
+			// find the next solid cell on this line, every step before it is known to be empty.
+			// with every tile inside the mask, a line without a solid cell left has nothing to find.
+			int base = Math.floorDiv(horizontal ? x : y, stride);
+			int skipTo;
+			if (sign > 0) {
+				int next = horizontal ? mask.nextSolidInRow(line, cell + 1) : mask.nextSolidInColumn(line, cell + 1);
+				if (next < 0 && complete) {
+					break;
+				}
+				int target = (next >= 0 ? next : horizontal ? mask.getColumns() : mask.getRows()) * cellSize;
+				skipTo = -Math.floorDiv(-target, stride) - base;
+			} else {
+				int from = key % cellSize == 0 ? cell - 1 : cell;
+				int previous = horizontal ? mask.previousSolidInRow(line, from) : mask.previousSolidInColumn(line, from);
+				if (previous < 0 && complete) {
+					break;
+				}
+				skipTo = previous >= 0 ? base - Math.floorDiv(previous * cellSize, stride) : base + 1;
+			}
+			step = Math.max(step, skipTo - 1);
 		}
 
 		rayTraceRunning = false;
-		return hasTile ? reference : null;
+		return reference;
 	}
 
 	/**
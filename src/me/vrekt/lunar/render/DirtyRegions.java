@@ -0,0 +1,224 @@
+package me.vrekt.lunar.render;
+
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.Area;
+
+/**
+ * Collects the areas of the screen that changed since the last frame.
+ * Overlapping areas are merged, and once there are too many separate areas the two that
+ * grow the least when joined are merged, so a frame is never split into many small repaints.
+ */
+public class DirtyRegions {
+
+    /**
+     * The most separate areas kept before they are merged together.
+     */
+    public static final int MAX_REGIONS = 8;
+
+    // the regions in use come first, followed by spare rectangles to reuse.
+    private final Rectangle[] regions = new Rectangle[MAX_REGIONS + 2];
+    private int count;
+
+    private int width, height;
+    private boolean enabled;
+
+    private long lastPaintedPixels, lastSavedPixels, totalSavedPixels;
+
+    /**
+     * Initialize the regions.
+     */
+    public DirtyRegions() {
+        for (int i = 0; i < regions.length; i++) {
+            regions[i] = new Rectangle();
+        }
+    }
+
+    /**
+     * Set the size of the screen, areas are clipped to it.
+     */
+    public void setBounds(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Set if changes are recorded, marking areas does nothing while disabled.
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        count = 0;
+    }
+
+    /**
+     * @return if changes are recorded.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Mark an area of the screen as changed.
+     */
+    public void markDirty(int x, int y, int width, int height) {
+        if (!enabled) {
+            return;
+        }
+
+        // clip to the screen.
+        int minX = Math.max(x, 0);
+        int minY = Math.max(y, 0);
+        int maxX = Math.min(x + width, this.width);
+        int maxY = Math.min(y + height, this.height);
+        if (minX >= maxX || minY >= maxY) {
+            return;
+        }
+
+        Rectangle added = regions[count];
+        added.setBounds(minX, minY, maxX - minX, maxY - minY);
+
+        // absorb every region the new one touches, the result may touch others so repeat.
+        boolean merged = true;
+        while (merged) {
+            merged = false;
+            for (int i = 0; i < count; i++) {
+                Rectangle region = regions[i];
+                if (touches(region, added)) {
+                    added.add(region);
+                    removeAt(i);
+                    merged = true;
+                    break;
+                }
+            }
+        }
+
+        count++;
+        if (count > MAX_REGIONS) {
+            mergeClosest();
+        }
+    }
+
+    /**
+     * Mark the whole screen as changed.
+     */
+    public void markAllDirty() {
+        if (!enabled) {
+            return;
+        }
+
+        count = 1;
+        regions[0].setBounds(0, 0, width, height);
+    }
+
+    /**
+     * @return if nothing changed.
+     */
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * Get the amount of separate areas.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Get the area at the index. The rectangle is reused, don't keep it.
+     */
+    public Rectangle get(int index) {
+        return regions[index];
+    }
+
+    /**
+     * Get a shape covering every area, to use as a clip.
+     */
+    public Shape toClip() {
+        if (count == 1) {
+            return new Rectangle(regions[0]);
+        }
+
+        Area area = new Area();
+        for (int i = 0; i < count; i++) {
+            area.add(new Area(regions[i]));
+        }
+        return area;
+    }
+
+    /**
+     * Record the frame statistics and forget every area, called by the game after a frame is drawn.
+     */
+    public void finishFrame() {
+        long painted = 0;
+        for (int i = 0; i < count; i++) {
+            painted += (long) regions[i].width * regions[i].height;
+        }
+
+        lastPaintedPixels = painted;
+        lastSavedPixels = (long) width * height - painted;
+        totalSavedPixels += lastSavedPixels;
+        count = 0;
+    }
+
+    /**
+     * Get the amount of pixels repainted in the last frame.
+     */
+    public long getLastPaintedPixels() {
+        return lastPaintedPixels;
+    }
+
+    /**
+     * Get the amount of pixels the last frame didn't have to repaint.
+     */
+    public long getLastSavedPixels() {
+        return lastSavedPixels;
+    }
+
+    /**
+     * Get the amount of pixels not repainted since dirty regions were enabled.
+     */
+    public long getTotalSavedPixels() {
+        return totalSavedPixels;
+    }
+
+    /**
+     * Merge the two regions whose union adds the least area.
+     */
+    private void mergeClosest() {
+        int bestA = 0, bestB = 1;
+        long bestGrowth = Long.MAX_VALUE;
+        for (int a = 0; a < count; a++) {
+            for (int b = a + 1; b < count; b++) {
+                Rectangle ra = regions[a], rb = regions[b];
+                int minX = Math.min(ra.x, rb.x), minY = Math.min(ra.y, rb.y);
+                int maxX = Math.max(ra.x + ra.width, rb.x + rb.width), maxY = Math.max(ra.y + ra.height, rb.y + rb.height);
+                long growth = (long) (maxX - minX) * (maxY - minY) - (long) ra.width * ra.height - (long) rb.width * rb.height;
+                if (growth < bestGrowth) {
+                    bestGrowth = growth;
+                    bestA = a;
+                    bestB = b;
+                }
+            }
+        }
+
+        regions[bestA].add(regions[bestB]);
+        removeAt(bestB);
+    }
+
+    /**
+     * Remove the region at the index, keeping the rectangle object for reuse.
+     * The rectangle right after the regions in use stays right after them.
+     */
+    private void removeAt(int index) {
+        Rectangle removed = regions[index];
+        count--;
+        regions[index] = regions[count];
+        regions[count] = regions[count + 1];
+        regions[count + 1] = removed;
+    }
+
+    private static boolean touches(Rectangle a, Rectangle b) {
+        return a.x <= b.x + b.width && b.x <= a.x + a.width && a.y <= b.y + b.height && b.y <= a.y + a.height;
+    }
+}
@@ -0,0 +1,143 @@
+package me.vrekt.lunar.render;
+
+import me.vrekt.lunar.animation.Animation;
+import me.vrekt.lunar.entity.Entity;
+import me.vrekt.lunar.utilities.FixedPoint;
+
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * What a state looks like after a tick: images with the position they had when the tick began and the position
+ * they have after it, in fixed-point. Written by the simulation thread and drawn by the render thread, which
+ * draws each image between its two positions so movement stays smooth whatever the frame rate.
+ * <p>
+ * Snapshots are reused, the arrays only grow. Images are shared, not copied, so a state must not draw into
+ * an image it put in a snapshot.
+ */
+public class RenderSnapshot {
+
+    private BufferedImage[] images = new BufferedImage[64];
+    private int[] previousX = new int[64], previousY = new int[64], x = new int[64], y = new int[64];
+    private int count;
+
+    private long tick, time;
+
+    /**
+     * Remove every image, called before the snapshot is written again.
+     */
+    public void clear() {
+        Arrays.fill(images, 0, count, null);
+        count = 0;
+    }
+
+    /**
+     * Add an image that didn't move.
+     */
+    public void add(BufferedImage image, int x, int y) {
+        int fixedX = FixedPoint.fromInt(x);
+        int fixedY = FixedPoint.fromInt(y);
+        addFixed(image, fixedX, fixedY, fixedX, fixedY);
+    }
+
+    /**
+     * Add an image that moved during the tick, positions are in fixed-point.
+     */
+    public void addFixed(BufferedImage image, int previousX, int previousY, int x, int y) {
+        if (image == null) {
+            return;
+        }
+        if (count == images.length) {
+            int capacity = count << 1;
+            images = Arrays.copyOf(images, capacity);
+            this.previousX = Arrays.copyOf(this.previousX, capacity);
+            this.previousY = Arrays.copyOf(this.previousY, capacity);
+            this.x = Arrays.copyOf(this.x, capacity);
+            this.y = Arrays.copyOf(this.y, capacity);
+        }
+
+        images[count] = image;
+        this.previousX[count] = previousX;
+        this.previousY[count] = previousY;
+        this.x[count] = x;
+        this.y[count] = y;
+        count++;
+    }
+
+    /**
+     * Add the texture of the entity at its position when the tick began and now.
+     */
+    public void add(Entity entity) {
+        addFixed(entity.getTexture(), entity.getPreviousFixedX(), entity.getPreviousFixedY(), entity.getFixedX(), entity.getFixedY());
+    }
+
+    /**
+     * Add the current frame of the animation at the entity's position when the tick began and now.
+     */
+    public void add(Animation animation, Entity entity) {
+        addFixed(animation.getCurrentImage(), entity.getPreviousFixedX(), entity.getPreviousFixedY(), entity.getFixedX(), entity.getFixedY());
+    }
+
+    /**
+     * Draw every image between its two positions.
+     *
+     * @param alpha how far the render is between the tick of the snapshot and the next, from zero to one.
+     */
+    public void draw(Graphics graphics, float alpha) {
+        for (int i = 0; i < count; i++) {
+            graphics.drawImage(images[i], FixedPoint.toInt(FixedPoint.lerp(previousX[i], x[i], alpha)),
+                    FixedPoint.toInt(FixedPoint.lerp(previousY[i], y[i], alpha)), null);
+        }
+    }
+
+    /**
+     * Set the tick the snapshot was written after, and when that tick was due.
+     */
+    public void setTick(long tick, long time) {
+        this.tick = tick;
+        this.time = time;
+    }
+
+    /**
+     * Get the tick the snapshot was written after.
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * Get when the tick of the snapshot was due, from {@link System#nanoTime()}.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Get the amount of images.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Get the image at an index, from zero to {@link #size()}.
+     */
+    public BufferedImage getImage(int index) {
+        return images[index];
+    }
+
+    /**
+     * Get the X in fixed-point of the image at an index after the tick.
+     */
+    public int getFixedX(int index) {
+        return x[index];
+    }
+
+    /**
+     * Get the Y in fixed-point of the image at an index after the tick.
+     */
+    public int getFixedY(int index) {
+        return y[index];
+    }
+}
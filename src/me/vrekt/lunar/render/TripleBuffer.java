@@ -0,0 +1,67 @@
+package me.vrekt.lunar.render;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Hands values from one writing thread to one reading thread without locks or allocation.
+ * The writer fills its buffer and publishes it, the reader takes the latest published buffer. One buffer
+ * belongs to the writer, one to the reader and the third is swapped between them with a single atomic
+ * exchange, so neither thread ever waits for the other and the reader never sees a buffer being written.
+ * <p>
+ * A buffer the reader took stays the reader's until it takes a newer one, and a buffer published but never taken
+ * is reused by the writer.
+ *
+ * @param <T> the buffer type.
+ */
+public class TripleBuffer<T> {
+
+    // the index of the swapped buffer, with this bit set when it was published and not taken yet.
+    private static final int FRESH = 4;
+
+    private final T[] buffers;
+    private final AtomicInteger middle = new AtomicInteger(2);
+    private int back = 0, front = 1;
+
+    /**
+     * Initialize the buffers.
+     *
+     * @param factory creates the three buffers.
+     */
+    @SuppressWarnings("unchecked")
+    public TripleBuffer(Supplier<T> factory) {
+        buffers = (T[]) new Object[]{factory.get(), factory.get(), factory.get()};
+    }
+
+    /**
+     * Get the buffer the writer fills, only the writing thread may use it.
+     */
+    public T getWriteBuffer() {
+        return buffers[back];
+    }
+
+    /**
+     * Publish the buffer the writer filled, the writer gets another to fill next.
+     */
+    public void publish() {
+        back = middle.getAndSet(back | FRESH) & ~FRESH;
+    }
+
+    /**
+     * Get the latest published buffer, or the one taken last if nothing was published since.
+     * Only the reading thread may use it.
+     */
+    public T acquire() {
+        if ((middle.get() & FRESH) != 0) {
+            front = middle.getAndSet(front) & ~FRESH;
+        }
+        return buffers[front];
+    }
+
+    /**
+     * @return if a buffer was published since the reader took one.
+     */
+    public boolean hasFresh() {
+        return (middle.get() & FRESH) != 0;
+    }
+}
@@ -1,11 +1,22 @@
 package me.vrekt.lunar.state;
 
+import me.vrekt.lunar.render.DirtyRegions;
+import me.vrekt.lunar.render.RenderSnapshot;
+import me.vrekt.lunar.render.TripleBuffer;
+
 import java.awt.Graphics;
 
 public abstract class GameState {
 
     protected int priority = 0;
 
+    private DirtyRegions dirtyRegions;
+
+    private float interpolationAlpha = 1;
+
+    // snapshots handed from the simulation thread to the render thread in threaded mode.
+    private final TripleBuffer<RenderSnapshot> snapshots = new TripleBuffer<>(RenderSnapshot::new);
+
     /**
      * Initializes the GameState.
      */
@@ -26,4 +37,93 @@ public abstract class GameState {
         return priority;
     }
 
+    /**
+     * Set the regions this state reports changes to, called by the game when the state is added.
+     */
+    public void setDirtyRegions(DirtyRegions dirtyRegions) {
+        this.dirtyRegions = dirtyRegions;
+    }
+
+    /**
+     * Report that an area of the screen changed and must be drawn again.
+     * Only needed when the game is in dirty region mode, otherwise everything is drawn every frame.
+     */
+    protected void markDirty(int x, int y, int width, int height) {
+        if (dirtyRegions != null) {
+            dirtyRegions.markDirty(x, y, width, height);
+        }
+    }
+
+    /**
+     * Set how far the game is between the last tick and the next, called by the game before every draw.
+     */
+    public void setInterpolationAlpha(float interpolationAlpha) {
+        this.interpolationAlpha = interpolationAlpha;
+    }
+
+    /**
+     * Get how far the game is between the last tick and the next, from zero to one.
+     * Pass it to {@link me.vrekt.lunar.world.World#drawAllEntities(Graphics, float)} for smooth movement.
+     */
+    public float getInterpolationAlpha() {
+        return interpolationAlpha;
+    }
+
+    /**
+     * Write what the state looks like after a tick, called on the simulation thread after every tick when the game
+     * runs on two threads. The render thread only sees what is written here, so everything drawn must be in it.
+     * Does nothing by default.
+     *
+     * @param snapshot a cleared snapshot, see {@link me.vrekt.lunar.world.World#writeSnapshot(RenderSnapshot)}.
+     */
+    protected void writeSnapshot(RenderSnapshot snapshot) {
+    }
+
+    /**
+     * Draw the latest snapshot, called on the render thread instead of {@link #onDraw(Graphics)} when the game
+     * runs on two threads. Must not touch anything but the snapshot, the simulation thread may be changing it.
+     * Draws the images of the snapshot by default.
+     *
+     * @param alpha how far the render is between the tick of the snapshot and the next, from zero to one.
+     */
+    protected void drawSnapshot(Graphics graphics, RenderSnapshot snapshot, float alpha) {
+        snapshot.draw(graphics, alpha);
+    }
+
+    /**
+     * Write and publish a snapshot, called by the game on the simulation thread.
+     *
+     * @param tick the amount of ticks so far.
+     * @param time when the tick was due, from {@link System#nanoTime()}.
+     */
+    public final void publishSnapshot(long tick, long time) {
+        RenderSnapshot snapshot = snapshots.getWriteBuffer();
+        snapshot.clear();
+        snapshot.setTick(tick, time);
+        writeSnapshot(snapshot);
+        snapshots.publish();
+    }
+
+    /**
+     * Draw the latest published snapshot, called by the game on the render thread.
+     *
+     * @param now          the time of the frame, from {@link System#nanoTime()}.
+     * @param tickInterval the time between ticks.
+     */
+    public final void drawLatestSnapshot(Graphics graphics, long now, long tickInterval) {
+        RenderSnapshot snapshot = snapshots.acquire();
+        float alpha = Math.max(0, Math.min(1, (now - snapshot.getTime()) / (float) tickInterval));
+        interpolationAlpha = alpha;
+        drawSnapshot(graphics, snapshot, alpha);
+    }
+
+    /**
+     * Report that the whole screen changed.
+     */
+    protected void markAllDirty() {
+        if (dirtyRegions != null) {
+            dirtyRegions.markAllDirty();
+        }
+    }
+
 }
@@ -4,6 +4,8 @@ import me.vrekt.lunar.collision.BoundingBox;
 
 import java.awt.Graphics;
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
 
 public class Tile {
     private BufferedImage texture;
@@ -15,6 +17,8 @@ public class Tile {
 
     private int x, y;
 
+    private List<TileListener> listeners;
+
     /**
      * Initialize the tile.
      */
@@ -125,7 +129,35 @@ public class Tile {
      * Set if the tile is solid or not.
      */
     public void setSolid(boolean isSolid) {
+        if (this.isSolid == isSolid) {
+            return;
+        }
+
         this.isSolid = isSolid;
+        if (listeners != null) {
+            listeners.forEach(listener -> listener.onSolidChanged(this));
+        }
+    }
+
+    /**
+     * Add a listener, adding the same listener twice has no effect.
+     */
+    public void addListener(TileListener listener) {
+        if (listeners == null) {
+            listeners = new ArrayList<>(2);
+        }
+        if (!listeners.contains(listener)) {
+            listeners.add(listener);
+        }
+    }
+
+    /**
+     * Remove the listener.
+     */
+    public void removeListener(TileListener listener) {
+        if (listeners != null) {
+            listeners.remove(listener);
+        }
     }
 
     /**
@@ -170,6 +202,14 @@ public class Tile {
         isVisible = visible;
     }
 
+    /**
+     * Create a copy of this tile positioned at the X and Y.
+     * Tiles placed in a world are shared between positions, use this instead of setX/setY on them.
+     */
+    public Tile at(int x, int y) {
+        return new Tile(texture, ID, width, height, x, y, isSolid, isVisible);
+    }
+
     /**
      * Draw the tile.
      */
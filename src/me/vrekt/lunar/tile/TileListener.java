@@ -0,0 +1,13 @@
+package me.vrekt.lunar.tile;
+
+/**
+ * Notified when a tile changes in a way that the worlds holding it need to know about.
+ */
+public interface TileListener {
+
+    /**
+     * The tile became solid or stopped being solid.
+     */
+    void onSolidChanged(Tile tile);
+
+}
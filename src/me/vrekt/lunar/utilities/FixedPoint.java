@@ -0,0 +1,84 @@
+package me.vrekt.lunar.utilities;
+
+/**
+ * Fixed-point numbers in an int, 24 integer bits and 8 fraction bits, a pixel is split into 256 steps.
+ * Positions up to about 8 million pixels either way fit, and adding them is as cheap and exact as adding ints.
+ */
+public final class FixedPoint {
+
+    /**
+     * The amount of fraction bits.
+     */
+    public static final int FRACTION_BITS = 8;
+
+    /**
+     * One in fixed-point.
+     */
+    public static final int ONE = 1 << FRACTION_BITS;
+
+    /**
+     * Half in fixed-point.
+     */
+    public static final int HALF = ONE >> 1;
+
+    private FixedPoint() {
+    }
+
+    /**
+     * Convert an int to fixed-point.
+     */
+    public static int fromInt(int value) {
+        return value << FRACTION_BITS;
+    }
+
+    /**
+     * Convert a float to fixed-point, rounded to the closest step.
+     */
+    public static int fromFloat(float value) {
+        return Math.round(value * ONE);
+    }
+
+    /**
+     * Convert to an int, rounded down so negative values stay consistent with positive ones.
+     */
+    public static int toInt(int fixed) {
+        return fixed >> FRACTION_BITS;
+    }
+
+    /**
+     * Convert to the closest int.
+     */
+    public static int round(int fixed) {
+        return (fixed + HALF) >> FRACTION_BITS;
+    }
+
+    /**
+     * Convert to a float.
+     */
+    public static float toFloat(int fixed) {
+        return fixed / (float) ONE;
+    }
+
+    /**
+     * Multiply two fixed-point numbers.
+     */
+    public static int multiply(int first, int second) {
+        return (int) (((long) first * second) >> FRACTION_BITS);
+    }
+
+    /**
+     * Divide two fixed-point numbers.
+     */
+    public static int divide(int dividend, int divisor) {
+        return (int) (((long) dividend << FRACTION_BITS) / divisor);
+    }
+
+    /**
+     * Interpolate between two fixed-point numbers.
+     *
+     * @param alpha zero for from, one for to.
+     */
+    public static int lerp(int from, int to, float alpha) {
+        return from + Math.round((to - from) * alpha);
+    }
+}
@@ -0,0 +1,204 @@
+package me.vrekt.lunar.utilities;
+
+import java.util.Arrays;
+
+/**
+ * An open-addressing hash map keyed by primitive longs.
+ * Lookups, insertions and removals never allocate, which makes this suitable for
+ * hot paths like tile and chunk lookups. Null values are not permitted.
+ *
+ * @param <V> the value type.
+ */
+public class LongObjectMap<V> {
+
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] keys;
+    private Object[] values;
+    private int mask, size, resizeAt;
+
+    /**
+     * Initialize the map with a default capacity.
+     */
+    public LongObjectMap() {
+        this(16);
+    }
+
+    /**
+     * Initialize the map.
+     *
+     * @param expected the amount of entries expected, used to size the table.
+     */
+    public LongObjectMap(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expected / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    /**
+     * Get the value mapped to the key, or null if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int index = mix(key) & mask;
+        Object value;
+        while ((value = values[index]) != null) {
+            if (keys[index] == key) {
+                return (V) value;
+            }
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Return if the key is mapped.
+     */
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Map the key to the value.
+     *
+     * @return the previous value or null.
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("LongObjectMap does not permit null values.");
+        }
+
+        int index = mix(key) & mask;
+        Object current;
+        while ((current = values[index]) != null) {
+            if (keys[index] == key) {
+                values[index] = value;
+                return (V) current;
+            }
+            index = (index + 1) & mask;
+        }
+
+        keys[index] = key;
+        values[index] = value;
+        if (++size >= resizeAt) {
+            rehash(values.length << 1);
+        }
+        return null;
+    }
+
+    /**
+     * Remove the key.
+     *
+     * @return the removed value or null.
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int index = mix(key) & mask;
+        Object current;
+        while ((current = values[index]) != null) {
+            if (keys[index] == key) {
+                shiftBack(index);
+                size--;
+                return (V) current;
+            }
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Remove all entries.
+     */
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * Get the amount of entries.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the length of the backing table, use with {@link #keyAt(int)} and
+     * {@link #valueAt(int)} to iterate without allocating.
+     */
+    public int capacity() {
+        return values.length;
+    }
+
+    /**
+     * Get the key stored in the slot. Only meaningful if {@link #valueAt(int)} is not null.
+     */
+    public long keyAt(int slot) {
+        return keys[slot];
+    }
+
+    /**
+     * Get the value stored in the slot, or null if the slot is empty.
+     */
+    @SuppressWarnings("unchecked")
+    public V valueAt(int slot) {
+        return (V) values[slot];
+    }
+
+    /**
+     * Close the gap left by a removal so probe chains stay intact.
+     */
+    private void shiftBack(int gap) {
+        int index = gap;
+        while (true) {
+            index = (index + 1) & mask;
+            Object value = values[index];
+            if (value == null) {
+                break;
+            }
+
+            int home = mix(keys[index]) & mask;
+            // Move the entry into the gap if its home slot is not between the gap and itself.
+            if (((index - home) & mask) >= ((index - gap) & mask)) {
+                keys[gap] = keys[index];
+                values[gap] = value;
+                gap = index;
+            }
+        }
+        values[gap] = null;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+
+        for (int i = 0; i < oldValues.length; i++) {
+            Object value = oldValues[i];
+            if (value == null) {
+                continue;
+            }
+
+            int index = mix(oldKeys[i]) & mask;
+            while (values[index] != null) {
+                index = (index + 1) & mask;
+            }
+            keys[index] = oldKeys[i];
+            values[index] = value;
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    /**
+     * Spread the key bits so packed coordinates don't cluster.
+     */
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,156 @@
+package me.vrekt.lunar.utilities;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Waits until a deadline without burning a core: the thread is parked for most of the wait and only yields
+ * in a loop for the last moment, since a park can wake late by a scheduler slice. The length of that last
+ * moment follows how late nine in ten parks wake, so a system with a precise scheduler spins less and
+ * the rare park that wakes far too late doesn't make every wait spin longer.
+ * <p>
+ * Every wait records how late it woke compared to the deadline, the jitter of the loop.
+ * Times are in nanoseconds from {@link System#nanoTime()}.
+ */
+public class LoopPacer {
+
+    /**
+     * The least and most time spent yielding before a deadline.
+     */
+    public static final long MIN_SPIN = 50_000, MAX_SPIN = 4_000_000;
+
+    /**
+     * How late a wait can wake before it counts as a missed deadline.
+     */
+    public static final long MISSED_DEADLINE = 1_000_000;
+
+    // moved towards how late parks wake, nine times further up than down so it settles where one in ten is later.
+    private static final long SPIN_STEP = 2_000;
+    private long spin = 1_000_000;
+
+    private long waits, missed, maxLateness;
+    private double latenessSum, latenessSquaredSum;
+    private long parked, spun;
+
+    /**
+     * Wait until the deadline, returns right away if it passed.
+     *
+     * @return the time the wait ended.
+     */
+    public long waitUntil(long deadline) {
+        long now = System.nanoTime();
+        if (now >= deadline) {
+            return now;
+        }
+
+        long remaining = deadline - now;
+        if (remaining > spin) {
+            long request = remaining - spin;
+            LockSupport.parkNanos(request);
+            long woke = System.nanoTime();
+            parked += woke - now;
+            learn(woke - now - request);
+            now = woke;
+        }
+
+        long spinStart = now;
+        while (now < deadline) {
+            Thread.yield();
+            now = System.nanoTime();
+        }
+        spun += now - spinStart;
+
+        record(now - deadline);
+        return now;
+    }
+
+    /**
+     * Follow how late parks wake.
+     */
+    private void learn(long lateness) {
+        // parks that woke early, by a spurious wake or an interrupt, say nothing about the scheduler.
+        if (lateness < 0) {
+            return;
+        }
+        spin += lateness > spin ? SPIN_STEP * 9 : -SPIN_STEP;
+        spin = Math.max(MIN_SPIN, Math.min(MAX_SPIN, spin));
+    }
+
+    private void record(long lateness) {
+        waits++;
+        latenessSum += lateness;
+        latenessSquaredSum += (double) lateness * lateness;
+        maxLateness = Math.max(maxLateness, lateness);
+        if (lateness > MISSED_DEADLINE) {
+            missed++;
+        }
+    }
+
+    /**
+     * Forget the recorded waits, the learned spin is kept.
+     */
+    public void resetStats() {
+        waits = missed = maxLateness = 0;
+        latenessSum = latenessSquaredSum = 0;
+        parked = spun = 0;
+    }
+
+    /**
+     * Get the amount of waits recorded.
+     */
+    public long getWaits() {
+        return waits;
+    }
+
+    /**
+     * Get the average time waits woke after their deadline.
+     */
+    public double getMeanLateness() {
+        return waits == 0 ? 0 : latenessSum / waits;
+    }
+
+    /**
+     * Get the standard deviation of the time waits woke after their deadline.
+     */
+    public double getJitter() {
+        if (waits == 0) {
+            return 0;
+        }
+        double mean = latenessSum / waits;
+        return Math.sqrt(Math.max(0, latenessSquaredSum / waits - mean * mean));
+    }
+
+    /**
+     * Get the longest time a wait woke after its deadline.
+     */
+    public long getMaxLateness() {
+        return maxLateness;
+    }
+
+    /**
+     * Get the amount of waits that woke more than {@link #MISSED_DEADLINE} late.
+     */
+    public long getMissedDeadlines() {
+        return missed;
+    }
+
+    /**
+     * Get the time spent parked, the thread used no CPU.
+     */
+    public long getParkedTime() {
+        return parked;
+    }
+
+    /**
+     * Get the time spent yielding before deadlines.
+     */
+    public long getSpinTime() {
+        return spun;
+    }
+
+    /**
+     * Get the time yielded before each deadline at the moment.
+     */
+    public long getSpin() {
+        return spin;
+    }
+}
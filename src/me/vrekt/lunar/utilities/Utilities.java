@@ -59,4 +59,25 @@ public class Utilities {
         t = t % 1.0;
         return a + (b - a) * t;
     }
+
+    /**
+     * Pack an x and y coordinate into a single long, useful as a key that doesn't need a Location.
+     */
+    public static long packCoordinates(int x, int y) {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Get the x coordinate from a packed long. See Utilities#packCoordinates.
+     */
+    public static int unpackX(long packed) {
+        return (int) (packed >> 32);
+    }
+
+    /**
+     * Get the y coordinate from a packed long. See Utilities#packCoordinates.
+     */
+    public static int unpackY(long packed) {
+        return (int) packed;
+    }
 }
@@ -0,0 +1,159 @@
+package me.vrekt.lunar.world;
+
+import java.util.Arrays;
+
+/**
+ * One bit per cell marking which cells of a world hold a solid tile.
+ * The bits are kept twice, once row by row and once column by column, so scans along either
+ * axis can skip 64 empty cells at a time.
+ */
+public class SolidityMask {
+
+    private final int columns, rows;
+    private final int rowWords, columnWords;
+
+    // rowBits[row * rowWords + column / 64], columnBits[column * columnWords + row / 64].
+    private final long[] rowBits, columnBits;
+
+    /**
+     * Initialize the mask.
+     *
+     * @param columns the amount of cells on the X axis.
+     * @param rows    the amount of cells on the Y axis.
+     */
+    public SolidityMask(int columns, int rows) {
+        this.columns = Math.max(0, columns);
+        this.rows = Math.max(0, rows);
+
+        this.rowWords = (this.columns + 63) >>> 6;
+        this.columnWords = (this.rows + 63) >>> 6;
+        this.rowBits = new long[this.rows * rowWords];
+        this.columnBits = new long[this.columns * columnWords];
+    }
+
+    /**
+     * Return if the cell is covered by this mask.
+     */
+    public boolean contains(int column, int row) {
+        return column >= 0 && row >= 0 && column < columns && row < rows;
+    }
+
+    /**
+     * Return if the cell is solid. The cell must be covered by this mask.
+     */
+    public boolean isSolid(int column, int row) {
+        return (rowBits[row * rowWords + (column >>> 6)] & (1L << column)) != 0;
+    }
+
+    /**
+     * Set if the cell is solid. Cells outside of this mask are ignored.
+     */
+    public void set(int column, int row, boolean solid) {
+        if (!contains(column, row)) {
+            return;
+        }
+
+        int rowIndex = row * rowWords + (column >>> 6);
+        int columnIndex = column * columnWords + (row >>> 6);
+        if (solid) {
+            rowBits[rowIndex] |= 1L << column;
+            columnBits[columnIndex] |= 1L << row;
+        } else {
+            rowBits[rowIndex] &= ~(1L << column);
+            columnBits[columnIndex] &= ~(1L << row);
+        }
+    }
+
+    /**
+     * Get the first solid column in the row at or after the column, or -1 if there is none.
+     */
+    public int nextSolidInRow(int row, int column) {
+        return row < 0 || row >= rows ? -1 : nextSetBit(rowBits, row * rowWords, rowWords, columns, column);
+    }
+
+    /**
+     * Get the last solid column in the row at or before the column, or -1 if there is none.
+     */
+    public int previousSolidInRow(int row, int column) {
+        return row < 0 || row >= rows ? -1 : previousSetBit(rowBits, row * rowWords, columns, column);
+    }
+
+    /**
+     * Get the first solid row in the column at or after the row, or -1 if there is none.
+     */
+    public int nextSolidInColumn(int column, int row) {
+        return column < 0 || column >= columns ? -1 : nextSetBit(columnBits, column * columnWords, columnWords, rows, row);
+    }
+
+    /**
+     * Get the last solid row in the column at or before the row, or -1 if there is none.
+     */
+    public int previousSolidInColumn(int column, int row) {
+        return column < 0 || column >= columns ? -1 : previousSetBit(columnBits, column * columnWords, rows, row);
+    }
+
+    /**
+     * Mark every cell as passable.
+     */
+    public void clear() {
+        Arrays.fill(rowBits, 0);
+        Arrays.fill(columnBits, 0);
+    }
+
+    /**
+     * Get the amount of cells on the X axis.
+     */
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Get the amount of cells on the Y axis.
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    private static int nextSetBit(long[] bits, int offset, int words, int length, int from) {
+        if (from < 0) {
+            from = 0;
+        }
+        if (from >= length) {
+            return -1;
+        }
+
+        int word = from >>> 6;
+        long current = bits[offset + word] & (-1L << from);
+        while (true) {
+            if (current != 0) {
+                int bit = (word << 6) + Long.numberOfTrailingZeros(current);
+                return bit < length ? bit : -1;
+            }
+            if (++word == words) {
+                return -1;
+            }
+            current = bits[offset + word];
+        }
+    }
+
+    private static int previousSetBit(long[] bits, int offset, int length, int from) {
+        if (from >= length) {
+            from = length - 1;
+        }
+        if (from < 0) {
+            return -1;
+        }
+
+        int word = from >>> 6;
+        long current = bits[offset + word] & (-1L >>> (63 - (from & 63)));
+        while (true) {
+            if (current != 0) {
+                return (word << 6) + 63 - Long.numberOfLeadingZeros(current);
+            }
+            if (word-- == 0) {
+                return -1;
+            }
+            current = bits[offset + word];
+        }
+    }
+}
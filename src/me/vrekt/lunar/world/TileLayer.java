@@ -0,0 +1,184 @@
+package me.vrekt.lunar.world;
+
+import me.vrekt.lunar.camera.Camera;
+import me.vrekt.lunar.tile.Tile;
+import me.vrekt.lunar.world.render.ChunkImageCache;
+import me.vrekt.lunar.world.storage.TileStorage;
+
+import java.awt.Graphics;
+
+/**
+ * A named layer of tiles within a world, for example the background, decoration or collision layer.
+ * Each layer has its own storage, visibility and baked image cache.
+ * Tiles are added and removed through the {@link World} so it can keep its collision data up to date.
+ */
+public class TileLayer {
+
+    private final String name;
+    private final TileStorage storage;
+
+    private boolean visible = true;
+    private boolean opaque = false;
+
+    // the largest tile dimensions added, used to find tiles that hang into a region.
+    private int maxTileWidth = 1, maxTileHeight = 1;
+
+    // baked images of the tiles, null unless enabled.
+    private ChunkImageCache cache;
+
+    /**
+     * Initialize the layer.
+     *
+     * @param name    the name of the layer.
+     * @param storage the storage backing the tiles of this layer.
+     */
+    TileLayer(String name, TileStorage storage) {
+        this.name = name;
+        this.storage = storage;
+    }
+
+    /**
+     * Put the tile at the X and Y.
+     *
+     * @return the tile that was replaced or null.
+     */
+    Tile put(int x, int y, Tile tile) {
+        Tile previous = storage.put(x, y, tile);
+
+        maxTileWidth = Math.max(maxTileWidth, tile.getWidth());
+        maxTileHeight = Math.max(maxTileHeight, tile.getHeight());
+        if (cache != null) {
+            cache.invalidate(x, y, tile.getWidth(), tile.getHeight());
+            // a larger tile replaced leaves its pixels in chunks the new one doesn't cover.
+            if (previous != null) {
+                cache.invalidate(x, y, previous.getWidth(), previous.getHeight());
+            }
+        }
+        return previous;
+    }
+
+    /**
+     * Remove the tile at the X and Y.
+     *
+     * @return the tile that was removed or null.
+     */
+    Tile remove(int x, int y) {
+        Tile removed = storage.remove(x, y);
+        if (removed != null && cache != null) {
+            cache.invalidate(x, y, removed.getWidth(), removed.getHeight());
+        }
+        return removed;
+    }
+
+    /**
+     * Drop the baked images covering the area, after tiles changed without going through {@link #put(int, int, Tile)}.
+     */
+    void invalidate(int x, int y, int width, int height) {
+        if (cache != null) {
+            cache.invalidate(x, y, width, height);
+        }
+    }
+
+    /**
+     * Draw every tile of this layer.
+     */
+    void drawAll(Graphics graphics) {
+        storage.forEach((x, y, tile) -> graphics.drawImage(tile.getTexture(), x, y, null));
+    }
+
+    /**
+     * Draw the tiles the camera can see, relative to the camera position.
+     */
+    void draw(Graphics graphics, Camera camera) {
+        int camX = camera.getCamX();
+        int camY = camera.getCamY();
+        if (cache != null) {
+            cache.draw(graphics, camX, camY, camera.getWidth(), camera.getHeight());
+            return;
+        }
+
+        storage.forEachInRegion(camX - maxTileWidth + 1, camY - maxTileHeight + 1,
+                camX + camera.getWidth() - 1, camY + camera.getHeight() - 1,
+                (x, y, tile) -> graphics.drawImage(tile.getTexture(), x - camX, y - camY, null));
+    }
+
+    /**
+     * Get the tile at the X and Y, or null if there is none.
+     */
+    public Tile getTileAt(int x, int y) {
+        return storage.get(x, y);
+    }
+
+    /**
+     * Get the name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the storage backing the tiles of this layer.
+     */
+    public TileStorage getStorage() {
+        return storage;
+    }
+
+    /**
+     * @return if the layer is drawn.
+     */
+    public boolean isVisible() {
+        return visible;
+    }
+
+    /**
+     * Set if the layer is drawn.
+     */
+    public void setVisible(boolean visible) {
+        this.visible = visible;
+    }
+
+    /**
+     * @return if the layer covers everything beneath it.
+     */
+    public boolean isOpaque() {
+        return opaque;
+    }
+
+    /**
+     * Set if the layer covers everything beneath it, layers under a visible opaque layer are not drawn.
+     * Only mark a layer opaque if its tiles fill every part of the world that can be seen.
+     */
+    public void setOpaque(boolean opaque) {
+        this.opaque = opaque;
+    }
+
+    /**
+     * Bake the tiles of this layer into cached images, one per chunk of pixels, so a visible chunk
+     * is drawn with a single image. Use this for layers that don't change often, adding or
+     * removing a tile only re-bakes the chunks it covers.
+     *
+     * @param chunkSize    the width and height of a chunk in pixels, 256 is a good start.
+     * @param memoryBudget the most bytes of baked images to keep, the least recently drawn are dropped first.
+     */
+    public void enableCache(int chunkSize, long memoryBudget) {
+        disableCache();
+        cache = new ChunkImageCache(storage, chunkSize, memoryBudget, maxTileWidth, maxTileHeight);
+    }
+
+    /**
+     * Stop baking tiles and release the cached images.
+     */
+    public void disableCache() {
+        if (cache != null) {
+            cache.clear();
+            cache = null;
+        }
+    }
+
+    /**
+     * @return the cache, or null if it isn't enabled.
+     */
+    public ChunkImageCache getCache() {
+        return cache;
+    }
+}
@@ -1,36 +1,141 @@
 package me.vrekt.lunar.world;
 
+import me.vrekt.lunar.camera.Camera;
+import me.vrekt.lunar.collision.BoundingBox;
+import me.vrekt.lunar.collision.BoundingBoxStore;
+import me.vrekt.lunar.collision.SweepAndPrune;
+import me.vrekt.lunar.ecs.EntityAdapter;
+import me.vrekt.lunar.ecs.Registry;
 import me.vrekt.lunar.entity.Entity;
+import me.vrekt.lunar.entity.EntityPool;
 import me.vrekt.lunar.location.Location;
+import me.vrekt.lunar.particle.ParticleSystem;
+import me.vrekt.lunar.physics.PhysicsWorld;
 import me.vrekt.lunar.raycast.RayCast;
+import me.vrekt.lunar.render.DirtyRegions;
+import me.vrekt.lunar.render.RenderSnapshot;
+import me.vrekt.lunar.state.GameState;
 import me.vrekt.lunar.tile.Tile;
+import me.vrekt.lunar.tile.TileListener;
+import me.vrekt.lunar.utilities.LongObjectMap;
 import me.vrekt.lunar.world.dir.Direction;
+import me.vrekt.lunar.world.index.EntityIndex;
+import me.vrekt.lunar.world.index.SpatialHashIndex;
+import me.vrekt.lunar.world.render.ChunkImageCache;
+import me.vrekt.lunar.world.storage.ChunkListener;
+import me.vrekt.lunar.world.storage.ChunkedTileStorage;
+import me.vrekt.lunar.world.storage.MappedTileStorage;
+import me.vrekt.lunar.world.storage.SparseTileStorage;
+import me.vrekt.lunar.world.storage.StreamingTileStorage;
+import me.vrekt.lunar.world.storage.TileStorage;
+import me.vrekt.lunar.world.tick.ActivationZones;
+import me.vrekt.lunar.world.tick.ParallelTickPhase;
 
 import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.List;
+import java.util.function.Supplier;
 
 public abstract class World {
-    protected final Map<Location, Tile> worldInfo = new HashMap<>();
+
+    /**
+     * The most cells a solidity mask is built for, larger worlds check solidity through their tiles.
+     */
+    public static final long MAX_MASK_CELLS = 1L << 26;
+
+    /**
+     * The name of the layer every world starts with, it is also the collision layer until another is chosen.
+     */
+    public static final String DEFAULT_LAYER = "default";
+
+    protected final TileStorage worldInfo;
     protected final List<Entity> worldEntities = new ArrayList<>();
     protected final List<Entity> worldEntitiesAdd = new ArrayList<>();
     protected final List<Entity> worldEntitiesRemove = new ArrayList<>();
+
+    // entities by ID, each entity also knows its index in worldEntities.
+    private final LongObjectMap<Entity> entitiesByID = new LongObjectMap<>();
     protected String name;
 
     protected int width, height, tileWidth, tileHeight, worldAnchorX, worldAnchorY;
     private WorldGrid grid;
 
+    // the tile layers from the bottom to the top, the default layer is backed by worldInfo.
+    private final List<TileLayer> layers = new ArrayList<>();
+    private final TileLayer defaultLayer;
+    private TileLayer collisionLayer;
+
+    // which cells of the collision layer hold a solid tile, null if the world is too large.
+    private SolidityMask solidityMask;
+    private final TileListener solidityListener = this::refreshSolidity;
+    private int tilesOutsideMask;
+    // the mask cells each tile is in, a tile listens to its solidity while it is in at least one.
+    private final Map<Tile, LongObjectMap<Boolean>> solidityCells = new IdentityHashMap<>();
+    // the tiles of the collision layer weren't read into the mask yet.
+    private boolean solidityPending;
+
+    // where changes are reported in dirty region mode, null if not used.
+    private DirtyRegions dirtyRegions;
+
+    // the bounding boxes of the entities, a box has the same slot as its entity in worldEntities.
+    private final BoundingBoxStore entityBounds = new BoundingBoxStore();
+    private int[] boundsQuery = new int[64];
+
+    // finds entities by position, refreshed every tick.
+    private EntityIndex entityIndex = new SpatialHashIndex();
+    private final List<Entity> entityQuery = new ArrayList<>();
+
+    // finds overlapping entities every tick, null unless enabled.
+    private SweepAndPrune broadphase;
+
+    // the entity-component-system entities, if any, and the link to the entities of this world.
+    private Registry registry;
+    private EntityAdapter entityAdapter;
+
+    private ParallelTickPhase parallelTickPhase;
+    private ActivationZones activationZones;
+
+    private final Map<Class<?>, EntityPool<?>> pools = new HashMap<>();
+
+    private PhysicsWorld physics;
+    private ParticleSystem particles;
+
     /**
-     * Initialize the world.
+     * Initialize the world. The tiles are kept in a {@link SparseTileStorage}, so they may be keyed by pixel at any
+     * position and only take memory for the tiles placed. Dense pixel keyed worlds should use the constructor that
+     * takes the tile size, or pass a {@code ChunkedTileStorage(shift, tileWidth, tileHeight)}.
      *
      * @param name   Name of the world
      * @param width  Width of the world
      * @param height Height of the world
      */
     public World(String name, int width, int height) {
+        this(name, width, height, new SparseTileStorage());
+    }
+
+    /**
+     * Initialize the world.
+     *
+     * @param name    Name of the world
+     * @param width   Width of the world
+     * @param height  Height of the world
+     * @param storage the storage backing the tiles, for example {@link SparseTileStorage} for huge empty worlds,
+     *                {@link StreamingTileStorage} for worlds larger than memory or {@link MappedTileStorage}
+     *                for worlds loaded from a world file.
+     */
+    public World(String name, int width, int height, TileStorage storage) {
         this.name = name;
         this.width = width;
         this.height = height;
+        this.worldInfo = storage;
+
+        defaultLayer = new TileLayer(DEFAULT_LAYER, storage);
+        layers.add(defaultLayer);
+        listenForStreaming(defaultLayer);
+        setCollisionLayer(DEFAULT_LAYER);
 
         worldAnchorX = 0;
         worldAnchorY = 0;
@@ -38,7 +143,8 @@ public abstract class World {
     }
 
     /**
-     * Initialize the world. Use this constructor for grids.
+     * Initialize the world. Use this constructor for grids. The tiles are keyed by pixel and chunked by the tile size,
+     * so they must be placed at multiples of the tile width and height.
      *
      * @param name       Name of the world
      * @param width      Width of the world
@@ -47,7 +153,22 @@ public abstract class World {
      * @param tileHeight the height of the tiles.
      */
     public World(String name, int width, int height, int tileWidth, int tileHeight) {
-        this(name, width, height);
+        this(name, width, height, tileWidth, tileHeight,
+                new ChunkedTileStorage(ChunkedTileStorage.DEFAULT_CHUNK_SHIFT, tileWidth, tileHeight));
+    }
+
+    /**
+     * Initialize the world. Use this constructor for grids.
+     *
+     * @param name       Name of the world
+     * @param width      Width of the world
+     * @param height     Height of the world
+     * @param tileWidth  the width of the tiles.
+     * @param tileHeight the height of the tiles.
+     * @param storage    the storage backing the tiles.
+     */
+    public World(String name, int width, int height, int tileWidth, int tileHeight, TileStorage storage) {
+        this(name, width, height, storage);
 
         this.tileHeight = tileHeight;
         this.tileWidth = tileWidth;
@@ -57,7 +178,8 @@ public abstract class World {
     }
 
     /**
-     * Initialize the world. Use this constructor for grids.
+     * Initialize the world. Use this constructor for grids. The tiles are keyed by pixel and chunked by the tile size
+     * of the grid, so they must be placed at multiples of it.
      *
      * @param name   Name of the world.
      * @param width  Width of the world.
@@ -65,7 +187,8 @@ public abstract class World {
      * @param grid   the WorldGrid
      */
     public World(String name, int width, int height, WorldGrid grid) {
-        this(name, width, height);
+        this(name, width, height,
+                new ChunkedTileStorage(ChunkedTileStorage.DEFAULT_CHUNK_SHIFT, grid.getTileWidth(), grid.getTileHeight()));
 
         this.grid = grid;
 
@@ -79,19 +202,78 @@ public abstract class World {
     }
 
     /**
-     * Add an entity to the world.
+     * Add an entity to the world, nothing happens if it is already in the world. An entity can be in one world at a time.
+     * Entity IDs should be unique, {@link #getEntity(int)} finds the last entity added with an ID.
+     * While the entity is in the world its bounding box is kept in {@link #getEntityBounds()}, so it can't be in
+     * a store of its own.
      */
     public final void addEntity(Entity entity) {
+        if (containsEntity(entity)) {
+            return;
+        }
+
+        entityBounds.add(entity.getBoundingBox());
+        entity.setWorldSlot(worldEntities.size());
         worldEntities.add(entity);
+        entitiesByID.put(entity.getEntityID(), entity);
+        entityIndex.add(entity);
+        entity.setEntityIndex(entityIndex);
+        if (broadphase != null) {
+            broadphase.add(entity);
+        }
+        if (entityAdapter != null) {
+            entityAdapter.link(entity);
+        }
+        markDirty(entity.getX(), entity.getY(), entity.getWidth(), entity.getHeight());
     }
 
     /**
-     * Remove the entity from the world.
+     * Remove the entity from the world. The last entity of the world takes its place,
+     * so removing is constant time and the order of the entities only depends on what was added and removed.
      *
      * @param entity the entity that should be removed from the world.
      */
     public final void removeEntity(Entity entity) {
-        worldEntities.remove(entity);
+        if (!containsEntity(entity)) {
+            return;
+        }
+
+        int slot = entity.getWorldSlot();
+        Entity last = worldEntities.remove(worldEntities.size() - 1);
+        if (last != entity) {
+            worldEntities.set(slot, last);
+            last.setWorldSlot(slot);
+        }
+        entity.setWorldSlot(-1);
+        // by slot, the entity may have been given another box since it was added.
+        entityBounds.remove(slot);
+
+        if (entitiesByID.get(entity.getEntityID()) == entity) {
+            entitiesByID.remove(entity.getEntityID());
+        }
+        entityIndex.remove(entity);
+        entity.setEntityIndex(null);
+        if (broadphase != null) {
+            broadphase.remove(entity);
+        }
+        if (entityAdapter != null) {
+            entityAdapter.unlink(entity);
+        }
+        if (physics != null) {
+            physics.remove(entity);
+        }
+        if (particles != null) {
+            particles.removeEmitters(entity);
+        }
+        markDirty(entity.getX(), entity.getY(), entity.getWidth(), entity.getHeight());
+    }
+
+    /**
+     * Return if the entity is in this world.
+     */
+    public final boolean containsEntity(Entity entity) {
+        int slot = entity.getWorldSlot();
+        return slot >= 0 && slot < worldEntities.size() && worldEntities.get(slot) == entity;
     }
 
     /**
@@ -112,32 +294,370 @@ public abstract class World {
 
     /**
      * Remove all entities in the removal list from the world.
+     * Entities from a pool go back to it, unless they were added again.
      */
     public void removeQueuedEntities() {
-        worldEntitiesRemove.forEach(this::removeEntity);
+        for (int i = 0; i < worldEntitiesRemove.size(); i++) {
+            Entity entity = worldEntitiesRemove.get(i);
+            removeEntity(entity);
+            if (entity.getPool() != null && !containsEntity(entity)) {
+                entity.getPool().freeEntity(entity);
+            }
+        }
         worldEntitiesRemove.clear();
     }
 
+    /**
+     * Register a pool for an entity type, {@link #spawn(Class, int, int)} takes entities of the type from it.
+     *
+     * @param factory creates entities when the pool is empty.
+     */
+    public final <T extends Entity> EntityPool<T> registerPool(Class<T> type, Supplier<T> factory) {
+        return registerPool(type, factory, EntityPool.DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Register a pool for an entity type, {@link #spawn(Class, int, int)} takes entities of the type from it.
+     *
+     * @param factory creates entities when the pool is empty.
+     * @param maxSize the most removed entities kept.
+     */
+    public final <T extends Entity> EntityPool<T> registerPool(Class<T> type, Supplier<T> factory, int maxSize) {
+        EntityPool<T> pool = new EntityPool<>(type.getSimpleName(), factory, maxSize);
+        pools.put(type, pool);
+        return pool;
+    }
+
+    /**
+     * Get the pool of an entity type, or null if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    public final <T extends Entity> EntityPool<T> getPool(Class<T> type) {
+        return (EntityPool<T>) pools.get(type);
+    }
+
+    /**
+     * Get every registered pool, for metrics.
+     */
+    public final Collection<EntityPool<?>> getPools() {
+        return Collections.unmodifiableCollection(pools.values());
+    }
+
+    /**
+     * Take an entity from the pool of the type and queue it for addition.
+     * Remove it with {@link #queueEntityForRemoval(Entity)} to return it to the pool.
+     *
+     * @return the entity, reset at the position.
+     */
+    public final <T extends Entity> T spawn(Class<T> type, int x, int y) {
+        EntityPool<T> pool = getPool(type);
+        if (pool == null) {
+            throw new IllegalArgumentException("No pool is registered for " + type.getSimpleName() + ".");
+        }
+
+        T entity = pool.obtain(x, y);
+        queueEntityForAdd(entity);
+        return entity;
+    }
+
     /**
      * Add all entities in the add list to the world.
+     * Pooled entities removed before they were added stay in their pool.
      */
     public void addQueuedEntities() {
-        worldEntitiesAdd.forEach(this::addEntity);
+        for (int i = 0; i < worldEntitiesAdd.size(); i++) {
+            Entity entity = worldEntitiesAdd.get(i);
+            if (!entity.isPooled()) {
+                addEntity(entity);
+            }
+        }
         worldEntitiesAdd.clear();
     }
 
+    /**
+     * Update every entity of the world. With {@link ActivationZones} only the entities near a focus update,
+     * with a {@link ParallelTickPhase} entities update on its pool, otherwise
+     * {@link Entity#updateEntity()} is called for each entity in order. Not called by {@link #onTick()}.
+     */
+    public final void tickEntities() {
+        if (activationZones != null) {
+            activationZones.tick(this);
+            return;
+        }
+        if (parallelTickPhase == null) {
+            for (int i = 0; i < worldEntities.size(); i++) {
+                worldEntities.get(i).updateEntity();
+            }
+            return;
+        }
+
+        // the index isn't thread safe, entities moved while the regions update are refreshed afterwards.
+        for (int i = 0; i < worldEntities.size(); i++) {
+            worldEntities.get(i).setEntityIndex(null);
+        }
+        try {
+            parallelTickPhase.tick(worldEntities);
+        } finally {
+            for (int i = 0; i < worldEntities.size(); i++) {
+                worldEntities.get(i).setEntityIndex(entityIndex);
+            }
+        }
+        refreshEntityIndex();
+    }
+
+    /**
+     * Set the phase {@link #tickEntities()} updates entities with, or null to update them one by one.
+     */
+    public final void setParallelTickPhase(ParallelTickPhase parallelTickPhase) {
+        this.parallelTickPhase = parallelTickPhase;
+    }
+
+    /**
+     * @return the parallel tick phase, or null if there is none.
+     */
+    public final ParallelTickPhase getParallelTickPhase() {
+        return parallelTickPhase;
+    }
+
+    /**
+     * Set the zones that decide which entities {@link #tickEntities()} updates, or null to update every entity.
+     * The zones take precedence over a parallel tick phase.
+     */
+    public final void setActivationZones(ActivationZones activationZones) {
+        this.activationZones = activationZones;
+    }
+
+    /**
+     * @return the activation zones, or null if there are none.
+     */
+    public final ActivationZones getActivationZones() {
+        return activationZones;
+    }
+
+    /**
+     * Move every entity in the entity index to its current position. Called every tick by {@link #onTick()}.
+     * Entities moved with their setters are moved in the index right away, this catches entities whose x and y
+     * were written directly.
+     */
+    public final void refreshEntityIndex() {
+        for (int i = 0; i < worldEntities.size(); i++) {
+            entityIndex.update(worldEntities.get(i));
+        }
+    }
+
+    /**
+     * Move the entity in the entity index to its current position right away, instead of on the next tick.
+     */
+    public final void updateEntityIndex(Entity entity) {
+        entityIndex.update(entity);
+    }
+
+    /**
+     * Set the index entities are found with, the entities of the world are added to it.
+     * For example a {@link me.vrekt.lunar.world.index.LooseQuadTreeIndex} when entities vary a lot in size.
+     */
+    public final void setEntityIndex(EntityIndex entityIndex) {
+        entityIndex.clear();
+        for (Entity entity : worldEntities) {
+            entityIndex.add(entity);
+            entity.setEntityIndex(entityIndex);
+        }
+        this.entityIndex = entityIndex;
+    }
+
+    /**
+     * Get the index entities are found with.
+     */
+    public final EntityIndex getEntityIndex() {
+        return entityIndex;
+    }
+
+    /**
+     * Set the broadphase that finds the overlapping entities every tick, or null to stop.
+     * The entities of the world are added to it, its listener is told about contacts during {@link #onTick()}.
+     */
+    public final void setBroadphase(SweepAndPrune broadphase) {
+        if (broadphase != null) {
+            worldEntities.forEach(broadphase::add);
+        }
+        this.broadphase = broadphase;
+    }
+
+    /**
+     * @return the broadphase, or null if there is none.
+     */
+    public final SweepAndPrune getBroadphase() {
+        return broadphase;
+    }
+
+    /**
+     * Set the physics stepped every tick, or null to stop. Entities are moved by bodies added to it,
+     * see {@link me.vrekt.lunar.physics.Body#box(Entity, double)}. Bodies of removed entities are removed.
+     */
+    public final void setPhysics(PhysicsWorld physics) {
+        this.physics = physics;
+    }
+
+    /**
+     * @return the physics, or null if there is none.
+     */
+    public final PhysicsWorld getPhysics() {
+        return physics;
+    }
+
+    /**
+     * Set the particles updated every tick and drawn after the entities, or null to stop.
+     * Emitters attached to removed entities are removed.
+     */
+    public final void setParticles(ParticleSystem particles) {
+        this.particles = particles;
+    }
+
+    /**
+     * @return the particles, or null if there are none.
+     */
+    public final ParticleSystem getParticles() {
+        return particles;
+    }
+
+    /**
+     * Run the systems of a registry every tick and draw its render systems with the entities, or null to stop.
+     * Every entity of this world is linked to the registry through its {@link EntityAdapter},
+     * so systems see the entities of this world next to their own. Setting a registry again reuses its adapter.
+     */
+    public final void setRegistry(Registry registry) {
+        if (this.registry != null) {
+            worldEntities.forEach(entityAdapter::unlink);
+            entityAdapter = null;
+        }
+
+        this.registry = registry;
+        if (registry != null) {
+            entityAdapter = registry.getEntityAdapter();
+            worldEntities.forEach(entityAdapter::link);
+        }
+    }
+
+    /**
+     * @return the registry, or null if there is none.
+     */
+    public final Registry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * @return the adapter linking the entities of this world to the registry, or null if there is no registry.
+     */
+    public final EntityAdapter getEntityAdapter() {
+        return entityAdapter;
+    }
+
+    /**
+     * Get the store the bounding boxes of the entities are kept in, the box in a slot belongs to the entity
+     * in the same slot of {@link #getWorldEntities()}.
+     */
+    public final BoundingBoxStore getEntityBounds() {
+        syncEntityBounds();
+        return entityBounds;
+    }
+
+    /**
+     * Keep the current box of every entity in its slot, a subclass may replace the box of an entity after it was added.
+     */
+    private void syncEntityBounds() {
+        for (int slot = 0; slot < worldEntities.size(); slot++) {
+            BoundingBox box = worldEntities.get(slot).getBoundingBox();
+            if (entityBounds.getBox(slot) != box) {
+                entityBounds.replace(slot, box);
+            }
+        }
+    }
+
+    /**
+     * Find the entities whose bounding box overlaps the bounding box of the entity, other than itself.
+     * A single pass over the boxes of the world, it reads their current bounds and needs no index.
+     *
+     * @param result the list the entities are added to.
+     */
+    public final void getEntitiesTouching(Entity entity, List<Entity> result) {
+        if (!containsEntity(entity)) {
+            return;
+        }
+        syncEntityBounds();
+        if (boundsQuery.length < entityBounds.size()) {
+            boundsQuery = new int[Math.max(entityBounds.size(), boundsQuery.length << 1)];
+        }
+
+        int found = entityBounds.queryOverlapping(entity.getWorldSlot(), boundsQuery);
+        for (int i = 0; i < found; i++) {
+            result.add(worldEntities.get(boundsQuery[i]));
+        }
+    }
+
+    /**
+     * Count the entities whose bounding box overlaps the rectangle, a single pass over the boxes of the world.
+     */
+    public final int countEntitiesIn(int x, int y, int width, int height) {
+        syncEntityBounds();
+        return entityBounds.count(x, y, width, height);
+    }
+
+    /**
+     * Find the entities covering the point.
+     *
+     * @param result the list the entities are added to.
+     */
+    public final void getEntitiesAt(int x, int y, List<Entity> result) {
+        entityIndex.queryPoint(x, y, result);
+    }
+
+    /**
+     * Find the entities overlapping the rectangle.
+     *
+     * @param result the list the entities are added to.
+     */
+    public final void getEntitiesIn(int x, int y, int width, int height, List<Entity> result) {
+        entityIndex.queryRectangle(x, y, width, height, result);
+    }
+
+    /**
+     * Find the entities within the radius of the point.
+     *
+     * @param result the list the entities are added to.
+     */
+    public final void getEntitiesInRadius(int x, int y, int radius, List<Entity> result) {
+        entityIndex.queryRadius(x, y, radius, result);
+    }
+
+    /**
+     * Find the entities closest to the point.
+     *
+     * @param amount the most entities to find.
+     * @param result the list the entities are added to, closest first.
+     */
+    public final void getNearestEntities(int x, int y, int amount, List<Entity> result) {
+        entityIndex.queryNearest(x, y, amount, result);
+    }
+
     /**
      * Add a tile
      */
     public final void addTile(int x, int y, Tile tile) {
-        worldInfo.put(new Location(x, y), tile);
+        putTile(defaultLayer, x, y, tile);
     }
 
     /**
      * Add a tile.
      */
     public final void addTile(Tile tile) {
-        worldInfo.put(new Location(tile.getX(), tile.getY()), tile);
+        putTile(defaultLayer, tile.getX(), tile.getY(), tile);
+    }
+
+    /**
+     * Add a tile to the layer.
+     */
+    public final void addTile(String layer, int x, int y, Tile tile) {
+        putTile(requireLayer(layer), x, y, tile);
     }
 
     /**
@@ -149,34 +669,419 @@ public abstract class World {
      * @param tileAmount indicates how many tiles to draw in the direction.
      */
     public final void addBatchTiles(Tile tile, int x, int y, Direction direction, int tileAmount) {
+        addBatchTiles(DEFAULT_LAYER, tile, x, y, direction, tileAmount);
+    }
+
+    /**
+     * Add multiple tiles to the layer in one direction.
+     *
+     * @param layer      the name of the layer.
+     * @param x          coordinate of the tile
+     * @param y          coordinate of the tile
+     * @param direction  the direction to draw the tiles to
+     * @param tileAmount indicates how many tiles to draw in the direction.
+     */
+    public final void addBatchTiles(String layer, Tile tile, int x, int y, Direction direction, int tileAmount) {
+        TileLayer tileLayer = requireLayer(layer);
         int width = tile.getWidth();
         int height = tile.getHeight();
 
         while (tileAmount > 0) {
             tileAmount--;
 
-            worldInfo.put(new Location(x, y), tile);
+            putTile(tileLayer, x, y, tile);
             x = direction == Direction.RIGHT ? x + width : direction == Direction.LEFT ? x - width : x;
             y = direction == Direction.DOWN ? y + height : direction == Direction.UP ? y - height : y;
 
         }
     }
 
+    private void putTile(TileLayer layer, int x, int y, Tile tile) {
+        Tile previous = layer.put(x, y, tile);
+        if (layer.isVisible()) {
+            markDirty(x, y, tile.getWidth(), tile.getHeight());
+            if (previous != null) {
+                markDirty(x, y, previous.getWidth(), previous.getHeight());
+            }
+        }
+        if (layer != collisionLayer || solidityPending) {
+            return;
+        }
+
+        if (previous != null) {
+            leaveMask(x, y, previous);
+        }
+        enterMask(x, y, tile);
+    }
+
     /**
      * Remove the tile.
      */
     public final void removeTileAt(int x, int y) {
-        Location loc = new Location(x, y);
-        if (worldInfo.containsKey(loc)) {
-            worldInfo.remove(loc);
+        removeTile(defaultLayer, x, y);
+    }
+
+    /**
+     * Remove the tile from the layer.
+     */
+    public final void removeTileAt(String layer, int x, int y) {
+        removeTile(requireLayer(layer), x, y);
+    }
+
+    private void removeTile(TileLayer layer, int x, int y) {
+        Tile removed = layer.remove(x, y);
+        if (removed != null && layer.isVisible()) {
+            markDirty(x, y, removed.getWidth(), removed.getHeight());
+        }
+        if (removed != null && layer == collisionLayer && !solidityPending) {
+            leaveMask(x, y, removed);
+        }
+    }
+
+    /**
+     * Set where this world reports changed areas in dirty region mode, see {@link me.vrekt.lunar.Game#getDirtyRegions()}.
+     * Tiles and entities that are added or removed are reported at their world position, so this fits worlds
+     * drawn with {@link #drawAllTiles(Graphics)}. Moving entities and camera scrolls must be reported by the game state.
+     */
+    public void setDirtyRegions(DirtyRegions dirtyRegions) {
+        this.dirtyRegions = dirtyRegions;
+    }
+
+    /**
+     * Report that an area of the screen changed.
+     */
+    protected void markDirty(int x, int y, int width, int height) {
+        if (dirtyRegions != null) {
+            dirtyRegions.markDirty(x, y, width, height);
+        }
+    }
+
+    /**
+     * Add a layer on top of the existing layers.
+     *
+     * @param name    the name of the layer.
+     * @param storage the storage backing the tiles of the layer.
+     * @return the layer.
+     */
+    public final TileLayer addLayer(String name, TileStorage storage) {
+        if (getLayer(name) != null) {
+            throw new IllegalArgumentException("A layer named " + name + " already exists.");
+        }
+
+        TileLayer layer = new TileLayer(name, storage);
+        layers.add(layer);
+        listenForStreaming(layer);
+        return layer;
+    }
+
+    /**
+     * Remove the layer, the default layer and the collision layer can't be removed.
+     */
+    public final void removeLayer(String name) {
+        TileLayer layer = getLayer(name);
+        if (layer == null) {
+            return;
+        }
+        if (layer == defaultLayer || layer == collisionLayer) {
+            throw new IllegalArgumentException("The layer " + name + " can't be removed.");
+        }
+
+        layer.disableCache();
+        layers.remove(layer);
+        if (layer.getStorage() instanceof StreamingTileStorage) {
+            ((StreamingTileStorage) layer.getStorage()).setChunkListener(null);
+        }
+    }
+
+    /**
+     * Get the layer by name, or null if there is none.
+     */
+    public final TileLayer getLayer(String name) {
+        for (TileLayer layer : layers) {
+            if (layer.getName().equals(name)) {
+                return layer;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the layers, from the bottom to the top.
+     */
+    public final List<TileLayer> getLayers() {
+        return Collections.unmodifiableList(layers);
+    }
+
+    private TileLayer requireLayer(String name) {
+        TileLayer layer = getLayer(name);
+        if (layer == null) {
+            throw new IllegalArgumentException("There is no layer named " + name + ".");
+        }
+        return layer;
+    }
+
+    /**
+     * Write the tiles of the default layer to a world file, open it again with {@link MappedTileStorage#open(Path,
+     * me.vrekt.lunar.asset.AssetManager)} and pass it to a world constructor instead of adding the tiles one by one.
+     */
+    public final void saveTiles(Path path) throws IOException {
+        saveLayer(DEFAULT_LAYER, path);
+    }
+
+    /**
+     * Write the tiles of the layer to a world file.
+     */
+    public final void saveLayer(String layer, Path path) throws IOException {
+        MappedTileStorage.write(requireLayer(layer).getStorage(), width, height, path);
+    }
+
+    /**
+     * Keep the caches and collision data of a streaming layer up to date as its chunks load and unload.
+     */
+    private void listenForStreaming(TileLayer layer) {
+        if (layer.getStorage() instanceof StreamingTileStorage) {
+            ((StreamingTileStorage) layer.getStorage()).setChunkListener(new StreamedChunks(layer));
+        }
+    }
+
+    /**
+     * Update the streaming layers, loading chunks near their focus and unloading the rest.
+     * Called every tick by {@link #onTick()}.
+     */
+    public final void updateStreaming() {
+        for (TileLayer layer : layers) {
+            if (layer.getStorage() instanceof StreamingTileStorage) {
+                ((StreamingTileStorage) layer.getStorage()).update();
+            }
+        }
+    }
+
+    /**
+     * Set the layer collision queries read, like {@link #isSolidAt(int, int)}, passability and ray casts.
+     * The solidity mask is rebuilt from the tiles of the layer the first time it is needed, so a world opened
+     * from a large world file doesn't read every tile up front, until then {@link #isSolidAt(int, int)} looks tiles up.
+     */
+    public final void setCollisionLayer(String name) {
+        TileLayer layer = requireLayer(name);
+
+        solidityCells.keySet().forEach(tile -> tile.removeListener(solidityListener));
+        solidityCells.clear();
+        collisionLayer = layer;
+        tilesOutsideMask = 0;
+        solidityMask = null;
+        solidityPending = true;
+
+        // an empty layer is free to read, the mask then follows the tiles as they are added.
+        if (layer.getStorage().size() == 0) {
+            ensureSolidityMask();
+        }
+    }
+
+    /**
+     * Read the tiles of the collision layer into the solidity mask, if they weren't yet.
+     */
+    private void ensureSolidityMask() {
+        if (!solidityPending) {
+            return;
+        }
+
+        solidityPending = false;
+        TileStorage storage = collisionLayer.getStorage();
+        int columns = Math.max(0, -Math.floorDiv(-width, storage.getCellWidth()));
+        int rows = Math.max(0, -Math.floorDiv(-height, storage.getCellHeight()));
+        solidityMask = (long) columns * rows <= MAX_MASK_CELLS ? new SolidityMask(columns, rows) : null;
+
+        storage.forEach(this::enterMask);
+    }
+
+    /**
+     * Get the layer collision queries read.
+     */
+    public final TileLayer getCollisionLayer() {
+        return collisionLayer;
+    }
+
+    /**
+     * Get the mask cell of the tile key, or -1 if the mask doesn't cover it.
+     */
+    private long maskCell(int x, int y) {
+        TileStorage storage = collisionLayer.getStorage();
+        int column = Math.floorDiv(x, storage.getCellWidth());
+        int row = Math.floorDiv(y, storage.getCellHeight());
+        if (solidityMask == null || !solidityMask.contains(column, row)) {
+            return -1;
+        }
+        return (long) row * solidityMask.getColumns() + column;
+    }
+
+    /**
+     * A tile was put in the collision layer, set its cell and listen to its solidity.
+     */
+    private void enterMask(int x, int y, Tile tile) {
+        long cell = maskCell(x, y);
+        if (cell < 0) {
+            tilesOutsideMask++;
+            return;
+        }
+
+        setMaskCell(cell, tile.isSolid());
+        LongObjectMap<Boolean> cells = solidityCells.get(tile);
+        if (cells == null) {
+            cells = new LongObjectMap<>(4);
+            solidityCells.put(tile, cells);
+            tile.addListener(solidityListener);
+        }
+        cells.put(cell, Boolean.TRUE);
+    }
+
+    /**
+     * A tile left the collision layer, clear its cell and stop listening once it is in no cell,
+     * so a tile shared between worlds doesn't keep this world reachable.
+     */
+    private void leaveMask(int x, int y, Tile tile) {
+        long cell = maskCell(x, y);
+        if (cell < 0) {
+            tilesOutsideMask--;
+            return;
+        }
+
+        setMaskCell(cell, false);
+        LongObjectMap<Boolean> cells = solidityCells.get(tile);
+        if (cells != null && cells.remove(cell) != null && cells.size() == 0) {
+            solidityCells.remove(tile);
+            tile.removeListener(solidityListener);
+        }
+    }
+
+    private void setMaskCell(long cell, boolean solid) {
+        int columns = solidityMask.getColumns();
+        solidityMask.set((int) (cell % columns), (int) (cell / columns), solid);
+    }
+
+    /**
+     * A tile in the collision layer changed its solidity, update the cells that hold it.
+     */
+    private void refreshSolidity(Tile changed) {
+        LongObjectMap<Boolean> cells = solidityCells.get(changed);
+        if (cells == null) {
+            return;
+        }
+
+        boolean solid = changed.isSolid();
+        for (int slot = 0; slot < cells.capacity(); slot++) {
+            if (cells.valueAt(slot) != null) {
+                setMaskCell(cells.keyAt(slot), solid);
+            }
+        }
+    }
+
+    /**
+     * Applies the tiles of a streamed chunk to the layer caches and, for the collision layer, the solidity mask.
+     */
+    private final class StreamedChunks implements ChunkListener {
+        private final TileLayer layer;
+
+        private StreamedChunks(TileLayer layer) {
+            this.layer = layer;
+        }
+
+        @Override
+        public void chunkLoaded(int minX, int minY, int maxX, int maxY) {
+            changed(minX, minY, maxX, maxY);
+            if (layer == collisionLayer && !solidityPending) {
+                layer.getStorage().forEachInRegion(minX, minY, maxX, maxY, World.this::enterMask);
+            }
+        }
+
+        @Override
+        public void chunkUnloading(int minX, int minY, int maxX, int maxY) {
+            changed(minX, minY, maxX, maxY);
+            if (layer == collisionLayer && !solidityPending) {
+                layer.getStorage().forEachInRegion(minX, minY, maxX, maxY, World.this::leaveMask);
+            }
+        }
+
+        private void changed(int minX, int minY, int maxX, int maxY) {
+            TileStorage storage = layer.getStorage();
+            int width = maxX - minX + storage.getCellWidth();
+            int height = maxY - minY + storage.getCellHeight();
+            layer.invalidate(minX, minY, width, height);
+            if (layer.isVisible()) {
+                markDirty(minX, minY, width, height);
+            }
+        }
+    }
+
+    /**
+     * Return if there is a solid tile in the collision layer at the X and Y. Reads the solidity mask
+     * when the position is within the world bounds, so no tile is looked up.
+     */
+    public final boolean isSolidAt(int x, int y) {
+        TileStorage storage = collisionLayer.getStorage();
+        if (solidityMask != null && x >= 0 && y >= 0) {
+            int cellWidth = storage.getCellWidth();
+            int cellHeight = storage.getCellHeight();
+            int column = x / cellWidth;
+            int row = y / cellHeight;
+            if (solidityMask.contains(column, row)) {
+                return x == column * cellWidth && y == row * cellHeight && solidityMask.isSolid(column, row);
+            }
         }
+
+        Tile tile = storage.get(x, y);
+        return tile != null && tile.isSolid();
+    }
+
+    /**
+     * Return if every tile of the collision layer is covered by the solidity mask, in which case
+     * anything outside of the mask is known to be empty.
+     */
+    public final boolean isMaskComplete() {
+        ensureSolidityMask();
+        return solidityMask != null && tilesOutsideMask == 0;
+    }
+
+    /**
+     * Get the mask of solid cells of the collision layer within the world bounds, cells are tile keys
+     * divided by the cell size of the collision layer storage. The first call after the collision layer was set
+     * reads every tile of the layer.
+     *
+     * @return the mask, or null if the world is too large to have one.
+     */
+    public final SolidityMask getSolidityMask() {
+        ensureSolidityMask();
+        return solidityMask;
+    }
+
+    /**
+     * Bake the tiles of the default layer into cached images. See {@link TileLayer#enableCache(int, long)}.
+     *
+     * @param chunkSize    the width and height of a chunk in pixels, 256 is a good start.
+     * @param memoryBudget the most bytes of baked images to keep, the least recently drawn are dropped first.
+     */
+    public void enableTileCache(int chunkSize, long memoryBudget) {
+        defaultLayer.enableCache(chunkSize, memoryBudget);
+    }
+
+    /**
+     * Stop baking the tiles of the default layer and release the cached images.
+     */
+    public void disableTileCache() {
+        defaultLayer.disableCache();
+    }
+
+    /**
+     * @return the tile cache of the default layer, or null if it isn't enabled.
+     */
+    public ChunkImageCache getTileCache() {
+        return defaultLayer.getCache();
     }
 
     /**
      * Get an entity by ID.
      */
     public final Entity getEntity(int entityID) {
-        return worldEntities.stream().filter(entity -> entity.getEntityID() == entityID).findAny().orElse(null);
+        return entitiesByID.get(entityID);
     }
 
     /**
@@ -190,35 +1095,157 @@ public abstract class World {
      * Draw all world entities
      */
     public final void drawAllEntities(Graphics graphics) {
-        worldEntities.forEach(entity -> graphics.drawImage(entity.getTexture(), entity.getX(), entity.getY(), null));
+        drawAllEntities(graphics, 1);
     }
 
     /**
-     * Draw all tiles.
+     * Draw all world entities between their position when the tick began and their position now.
+     * Particles are drawn with an image call each, draw into an image with {@link #drawAllEntities(BufferedImage, float)}
+     * when there are many.
+     *
+     * @param alpha how far the game is between the last tick and the next, see {@link GameState#getInterpolationAlpha()}.
+     */
+    public final void drawAllEntities(Graphics graphics, float alpha) {
+        drawEntities(graphics, alpha);
+        if (particles != null) {
+            particles.draw(graphics, 0, 0);
+        }
+    }
+
+    /**
+     * Draw all world entities into an image, like a back buffer that is redrawn every frame. The particles are
+     * written straight into its pixels if it holds them as ints, see {@link ParticleSystem#draw(BufferedImage, int, int)}.
+     *
+     * @param alpha how far the game is between the last tick and the next, see {@link GameState#getInterpolationAlpha()}.
+     */
+    public final void drawAllEntities(BufferedImage target, float alpha) {
+        Graphics graphics = target.createGraphics();
+        try {
+            drawEntities(graphics, alpha);
+            if (particles != null) {
+                drawParticles(target, graphics);
+            }
+        } finally {
+            graphics.dispose();
+        }
+    }
+
+    /**
+     * Draw the particles into the pixels of the image, or with the graphics if the image doesn't hold its pixels as ints.
+     */
+    private void drawParticles(BufferedImage target, Graphics graphics) {
+        int type = target.getType();
+        if (type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB) {
+            particles.draw(target, 0, 0);
+        } else {
+            particles.draw(graphics, 0, 0);
+        }
+    }
+
+    private void drawEntities(Graphics graphics, float alpha) {
+        for (int i = 0; i < worldEntities.size(); i++) {
+            Entity entity = worldEntities.get(i);
+            graphics.drawImage(entity.getTexture(), entity.getInterpolatedX(alpha), entity.getInterpolatedY(alpha), null);
+        }
+        if (registry != null) {
+            registry.draw(graphics);
+        }
+    }
+
+    /**
+     * Add the texture of every world entity to the snapshot, at its position when the tick began and now, then what the
+     * render systems of the registry add and the particles, in the order {@link #drawAllEntities(Graphics, float)} draws them.
+     * Call from {@link GameState#writeSnapshot(RenderSnapshot)} when the game runs on two threads.
+     */
+    public final void writeSnapshot(RenderSnapshot snapshot) {
+        for (int i = 0; i < worldEntities.size(); i++) {
+            snapshot.add(worldEntities.get(i));
+        }
+        if (registry != null) {
+            registry.writeSnapshot(snapshot);
+        }
+        if (particles != null) {
+            particles.writeSnapshot(snapshot);
+        }
+    }
+
+    /**
+     * Remember the position of every entity as the position the tick began at, called first by {@link #onTick()}.
+     * Move entities after this for them to be drawn between the two positions.
+     */
+    public final void storePreviousPositions() {
+        for (int i = 0; i < worldEntities.size(); i++) {
+            worldEntities.get(i).storePreviousPosition();
+        }
+    }
+
+    /**
+     * Draw all tiles of the visible layers, layers beneath a visible opaque layer are skipped.
      */
     public final void drawAllTiles(Graphics graphics) {
-        for (Location key : worldInfo.keySet()) {
-            Tile tile = worldInfo.get(key);
-            graphics.drawImage(tile.getTexture(), key.getX(), key.getY(), null);
+        for (int i = firstDrawnLayer(); i < layers.size(); i++) {
+            TileLayer layer = layers.get(i);
+            if (layer.isVisible()) {
+                layer.drawAll(graphics);
+            }
+        }
+    }
+
+    /**
+     * Draw the tiles of the visible layers the camera can see, relative to the camera position.
+     * Only the part of the world under the camera is visited so the cost depends on
+     * the size of the camera, not the size of the world.
+     */
+    public final void drawTiles(Graphics graphics, Camera camera) {
+        for (int i = firstDrawnLayer(); i < layers.size(); i++) {
+            TileLayer layer = layers.get(i);
+            if (layer.isVisible()) {
+                layer.draw(graphics, camera);
+            }
+        }
+    }
+
+    /**
+     * Get the index of the lowest layer that isn't covered by a visible opaque layer.
+     */
+    private int firstDrawnLayer() {
+        for (int i = layers.size() - 1; i > 0; i--) {
+            TileLayer layer = layers.get(i);
+            if (layer.isVisible() && layer.isOpaque()) {
+                return i;
+            }
         }
+        return 0;
     }
 
     /**
      * Check if an entity is at this X and Y.
      */
     public final boolean isEntityAt(int x, int y) {
-        return worldEntities.stream().anyMatch(entity -> entity.getX() == x && entity.getY() == y);
+        return getEntityAt(x, y) != null;
     }
 
     /**
-     * Get the entity at the X and Y.
+     * Get the entity at the X and Y. Entities moved with their setters during this tick are found at their new
+     * position, entities whose x and y were written directly only after {@link #refreshEntityIndex()}.
      */
     public final Entity getEntityAt(int x, int y) {
-        return worldEntities.stream().filter(entity -> entity.getX() == x && entity.getY() == y).findAny().orElse(null);
+        Entity found = null;
+        entityIndex.queryPoint(x, y, entityQuery);
+        for (int i = 0; i < entityQuery.size(); i++) {
+            Entity entity = entityQuery.get(i);
+            if (entity.getX() == x && entity.getY() == y) {
+                found = entity;
+                break;
+            }
+        }
+        entityQuery.clear();
+        return found;
     }
 
     /**
-     * Gets a list of all entities in the world
+     * Gets a list of all entities in the world. Add and remove entities through the world
+     * so it can keep track of them, don't change the list itself.
      *
      * @return the entities in the world
      */
@@ -230,9 +1257,14 @@ public abstract class World {
      * Get the tile at the specified X and Y.
      */
     public final Tile getTileAt(int x, int y) {
-        Optional<Location> stream = worldInfo.keySet().stream()
-                .filter(location -> location.getX() == x && location.getY() == y).findAny();
-        return stream.isPresent() ? worldInfo.get(stream.get()) : null;
+        return worldInfo.get(x, y);
+    }
+
+    /**
+     * Get the storage backing the tiles of the default layer.
+     */
+    public final TileStorage getTileStorage() {
+        return worldInfo;
     }
 
     /**
@@ -337,14 +1369,8 @@ public abstract class World {
             return false;
         }
 
-        Tile tile = getTileAt(tileX, tileY);
-        if (tile == null) {
-            // No tile, return true?
-            return true;
-        }
-
-        // Right now solidity is the only measure we have of "passability"
-        return !tile.isSolid();
+        // Right now solidity is the only measure we have of "passability", no tile is passable.
+        return !isSolidAt(tileX, tileY);
     }
 
     /**
@@ -377,7 +1403,22 @@ public abstract class World {
      * Gets executed when the world ticks
      */
     public void onTick() {
+        storePreviousPositions();
+        updateStreaming();
         removeQueuedEntities();
         addQueuedEntities();
+        if (physics != null) {
+            physics.step(1);
+        }
+        if (particles != null) {
+            particles.update();
+        }
+        refreshEntityIndex();
+        if (broadphase != null) {
+            broadphase.update();
+        }
+        if (registry != null) {
+            registry.update();
+        }
     }
 }
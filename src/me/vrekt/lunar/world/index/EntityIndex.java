@@ -0,0 +1,75 @@
+package me.vrekt.lunar.world.index;
+
+import me.vrekt.lunar.entity.Entity;
+
+import java.util.List;
+
+/**
+ * Finds the entities of a world by position without looking at every entity.
+ * Each index documents which rectangle of an entity it uses, the bounds are exclusive.
+ * <p>
+ * Queries add their results to a list supplied by the caller and don't allocate, so the list can be
+ * cleared and reused every tick. Each entity is added once per query.
+ */
+public interface EntityIndex {
+
+    /**
+     * Add the entity.
+     */
+    void add(Entity entity);
+
+    /**
+     * Remove the entity.
+     */
+    void remove(Entity entity);
+
+    /**
+     * Move the entity to its current position and size, call after it moved.
+     */
+    void update(Entity entity);
+
+    /**
+     * Return if the entity was added.
+     */
+    boolean contains(Entity entity);
+
+    /**
+     * Remove every entity.
+     */
+    void clear();
+
+    /**
+     * Get the amount of entities.
+     */
+    int size();
+
+    /**
+     * Find the entities covering the point.
+     *
+     * @param result the list the entities are added to.
+     */
+    void queryPoint(int x, int y, List<Entity> result);
+
+    /**
+     * Find the entities overlapping the rectangle.
+     *
+     * @param result the list the entities are added to.
+     */
+    void queryRectangle(int x, int y, int width, int height, List<Entity> result);
+
+    /**
+     * Find the entities overlapping the circle.
+     *
+     * @param result the list the entities are added to.
+     */
+    void queryRadius(int x, int y, int radius, List<Entity> result);
+
+    /**
+     * Find the entities closest to the point, measured to the closest point of each entity.
+     *
+     * @param amount the most entities to find.
+     * @param result the list the entities are added to, closest first.
+     */
+    void queryNearest(int x, int y, int amount, List<Entity> result);
+
+}
@@ -0,0 +1,461 @@
+package me.vrekt.lunar.world.index;
+
+import me.vrekt.lunar.collision.BoundingBox;
+import me.vrekt.lunar.entity.Entity;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A loose quadtree over the bounding boxes of entities, suited for entities of very different sizes.
+ * Each node has loose bounds twice its size, so an entity is kept in exactly one node: the deepest one whose
+ * size fits the entity and that holds its center. Small entities end up deep in the tree and large ones
+ * high up, a query only visits the nodes whose loose bounds it overlaps.
+ * <p>
+ * Moving an entity is free as long as its center stays within its node, otherwise it is moved to another node
+ * without searching the tree. Entities outside of the bounds of the tree are kept in a list every query checks.
+ * An entity covers its {@link Entity#getBoundingBox()}.
+ */
+public class LooseQuadTreeIndex implements EntityIndex {
+
+    /**
+     * The default size of the smallest nodes in pixels.
+     */
+    public static final int DEFAULT_MIN_NODE_SIZE = 16;
+
+    private final Node root;
+    private final int maxDepth;
+
+    private final Map<Entity, Handle> handles = new IdentityHashMap<>();
+
+    // holds the entities outside of the root, it has no bounds.
+    private final Node outside = new Node(null, 0, 0, 0, 0, 0);
+
+    // the nodes left to visit in a k-nearest query, a min heap on distance.
+    private Node[] queue = new Node[32];
+    private long[] queueDistances = new long[32];
+    private final NearestCollector nearest = new NearestCollector();
+
+    /**
+     * Initialize the tree with nodes down to 16 pixels.
+     *
+     * @param x    the X of the area covered by the tree, usually the world.
+     * @param y    the Y of the area.
+     * @param size the width and height of the area, rounded up to a power of two.
+     */
+    public LooseQuadTreeIndex(int x, int y, int size) {
+        this(x, y, size, depthFor(size, DEFAULT_MIN_NODE_SIZE));
+    }
+
+    /**
+     * Initialize the tree.
+     *
+     * @param x        the X of the area covered by the tree, usually the world.
+     * @param y        the Y of the area.
+     * @param size     the width and height of the area, rounded up to a power of two.
+     * @param maxDepth how many times the area can be split.
+     */
+    public LooseQuadTreeIndex(int x, int y, int size, int maxDepth) {
+        if (size < 2 || size > 1 << 30) {
+            throw new IllegalArgumentException("The size must be between 2 and 2^30.");
+        }
+
+        int rootSize = Integer.highestOneBit(size - 1) << 1;
+        // nodes are at least 2 pixels so their loose bounds can hold any entity that fits them.
+        this.maxDepth = Math.max(0, Math.min(maxDepth, Integer.numberOfTrailingZeros(rootSize) - 1));
+        this.root = new Node(null, 0, x, y, rootSize, 0);
+    }
+
+    private static int depthFor(int size, int minNodeSize) {
+        int depth = 0;
+        while ((size >> (depth + 1)) >= minNodeSize) {
+            depth++;
+        }
+        return depth;
+    }
+
+    @Override
+    public void add(Entity entity) {
+        if (handles.containsKey(entity)) {
+            update(entity);
+            return;
+        }
+
+        Handle handle = new Handle(entity);
+        handles.put(entity, handle);
+        insert(handle);
+    }
+
+    @Override
+    public void remove(Entity entity) {
+        Handle handle = handles.remove(entity);
+        if (handle != null) {
+            extract(handle);
+        }
+    }
+
+    @Override
+    public void update(Entity entity) {
+        Handle handle = handles.get(entity);
+        if (handle == null || fits(handle.node, entity.getBoundingBox())) {
+            return;
+        }
+
+        extract(handle);
+        insert(handle);
+    }
+
+    @Override
+    public boolean contains(Entity entity) {
+        return handles.containsKey(entity);
+    }
+
+    @Override
+    public void clear() {
+        handles.clear();
+        root.children = null;
+        root.clearItems();
+        outside.clearItems();
+    }
+
+    @Override
+    public int size() {
+        return handles.size();
+    }
+
+    @Override
+    public void queryPoint(int x, int y, List<Entity> result) {
+        queryRectangle(x, y, 1, 1, result);
+    }
+
+    @Override
+    public void queryRectangle(int x, int y, int width, int height, List<Entity> result) {
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+
+        collectRectangle(outside, x, y, x + width, y + height, result);
+        visitRectangle(root, x, y, x + width, y + height, result);
+    }
+
+    private void visitRectangle(Node node, int minX, int minY, int maxX, int maxY, List<Entity> result) {
+        int margin = node.size >> 1;
+        if (node.total == 0 || node.x - margin >= maxX || node.y - margin >= maxY
+                || node.x + node.size + margin <= minX || node.y + node.size + margin <= minY) {
+            return;
+        }
+
+        collectRectangle(node, minX, minY, maxX, maxY, result);
+        if (node.children != null) {
+            for (Node child : node.children) {
+                if (child != null) {
+                    visitRectangle(child, minX, minY, maxX, maxY, result);
+                }
+            }
+        }
+    }
+
+    private void collectRectangle(Node node, int minX, int minY, int maxX, int maxY, List<Entity> result) {
+        for (int i = 0; i < node.count; i++) {
+            Entity entity = node.items[i].entity;
+            BoundingBox box = entity.getBoundingBox();
+            if (box.getX() < maxX && box.getY() < maxY && box.getX() + Math.max(1, box.getWidth()) > minX
+                    && box.getY() + Math.max(1, box.getHeight()) > minY) {
+                result.add(entity);
+            }
+        }
+    }
+
+    @Override
+    public void queryRadius(int x, int y, int radius, List<Entity> result) {
+        if (radius < 0) {
+            return;
+        }
+
+        long radiusSquared = (long) radius * radius;
+        collectRadius(outside, x, y, radiusSquared, result);
+        visitRadius(root, x, y, radiusSquared, result);
+    }
+
+    private void visitRadius(Node node, int x, int y, long radiusSquared, List<Entity> result) {
+        if (node.total == 0 || node.looseDistance(x, y) > radiusSquared) {
+            return;
+        }
+
+        collectRadius(node, x, y, radiusSquared, result);
+        if (node.children != null) {
+            for (Node child : node.children) {
+                if (child != null) {
+                    visitRadius(child, x, y, radiusSquared, result);
+                }
+            }
+        }
+    }
+
+    private void collectRadius(Node node, int x, int y, long radiusSquared, List<Entity> result) {
+        for (int i = 0; i < node.count; i++) {
+            Entity entity = node.items[i].entity;
+            if (distanceTo(entity, x, y) <= radiusSquared) {
+                result.add(entity);
+            }
+        }
+    }
+
+    @Override
+    public void queryNearest(int x, int y, int amount, List<Entity> result) {
+        nearest.reset(Math.min(amount, handles.size()));
+        if (amount <= 0 || handles.isEmpty()) {
+            return;
+        }
+
+        for (int i = 0; i < outside.count; i++) {
+            Entity entity = outside.items[i].entity;
+            nearest.offer(entity, distanceTo(entity, x, y));
+        }
+
+        // visit the nodes closest first, stopping once the closest node left is farther than every entity kept.
+        int queued = 0;
+        if (root.total != 0) {
+            queued = push(queued, root, root.looseDistance(x, y));
+        }
+        while (queued > 0) {
+            Node node = queue[0];
+            long distance = queueDistances[0];
+            queued = pop(queued);
+            if (distance > nearest.farthest()) {
+                break;
+            }
+
+            for (int i = 0; i < node.count; i++) {
+                Entity entity = node.items[i].entity;
+                nearest.offer(entity, distanceTo(entity, x, y));
+            }
+            if (node.children != null) {
+                for (Node child : node.children) {
+                    if (child != null && child.total != 0) {
+                        long childDistance = child.looseDistance(x, y);
+                        if (childDistance <= nearest.farthest()) {
+                            queued = push(queued, child, childDistance);
+                        }
+                    }
+                }
+            }
+        }
+
+        Arrays.fill(queue, 0, queued, null);
+        nearest.drainTo(result);
+    }
+
+    private int push(int size, Node node, long distance) {
+        if (size == queue.length) {
+            queue = Arrays.copyOf(queue, size << 1);
+            queueDistances = Arrays.copyOf(queueDistances, size << 1);
+        }
+
+        int index = size;
+        while (index > 0) {
+            int parent = (index - 1) >> 1;
+            if (queueDistances[parent] <= distance) {
+                break;
+            }
+            queue[index] = queue[parent];
+            queueDistances[index] = queueDistances[parent];
+            index = parent;
+        }
+        queue[index] = node;
+        queueDistances[index] = distance;
+        return size + 1;
+    }
+
+    private int pop(int size) {
+        size--;
+        Node last = queue[size];
+        long distance = queueDistances[size];
+        queue[size] = null;
+
+        int index = 0;
+        while (true) {
+            int child = (index << 1) + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && queueDistances[child + 1] < queueDistances[child]) {
+                child++;
+            }
+            if (queueDistances[child] >= distance) {
+                break;
+            }
+            queue[index] = queue[child];
+            queueDistances[index] = queueDistances[child];
+            index = child;
+        }
+        if (size > 0) {
+            queue[index] = last;
+            queueDistances[index] = distance;
+        }
+        return size;
+    }
+
+    private static long distanceTo(Entity entity, int x, int y) {
+        BoundingBox box = entity.getBoundingBox();
+        return NearestCollector.distanceSquared(x, y, box.getX(), box.getY(),
+                box.getX() + Math.max(1, box.getWidth()) - 1, box.getY() + Math.max(1, box.getHeight()) - 1);
+    }
+
+    /**
+     * Get how many times the area of the tree can be split.
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Get the amount of entities outside of the area of the tree.
+     */
+    public int getOutsideCount() {
+        return outside.count;
+    }
+
+    /**
+     * Return if the box belongs in the node, in which case the entity doesn't have to move.
+     */
+    private boolean fits(Node node, BoundingBox box) {
+        int extent = Math.max(Math.max(1, box.getWidth()), Math.max(1, box.getHeight()));
+        int centerX = box.getX() + (Math.max(1, box.getWidth()) >> 1);
+        int centerY = box.getY() + (Math.max(1, box.getHeight()) >> 1);
+        if (node == outside) {
+            return !root.holds(centerX, centerY) || extent > root.size;
+        }
+
+        return node.holds(centerX, centerY) && extent <= node.size
+                && (node.depth == maxDepth || extent > node.size >> 1);
+    }
+
+    private void insert(Handle handle) {
+        BoundingBox box = handle.entity.getBoundingBox();
+        int extent = Math.max(Math.max(1, box.getWidth()), Math.max(1, box.getHeight()));
+        int centerX = box.getX() + (Math.max(1, box.getWidth()) >> 1);
+        int centerY = box.getY() + (Math.max(1, box.getHeight()) >> 1);
+        if (!root.holds(centerX, centerY) || extent > root.size) {
+            outside.add(handle);
+            return;
+        }
+
+        // walk down while the entity fits in a child, the child holding the center is the only candidate.
+        Node node = root;
+        while (node.depth < maxDepth) {
+            int half = node.size >> 1;
+            if (extent > half) {
+                break;
+            }
+
+            int quadrant = (centerX >= node.x + half ? 1 : 0) | (centerY >= node.y + half ? 2 : 0);
+            node = node.child(quadrant);
+        }
+        node.add(handle);
+    }
+
+    private void extract(Handle handle) {
+        handle.node.remove(handle);
+    }
+
+    /**
+     * The node an entity is in.
+     */
+    private static final class Handle {
+        private final Entity entity;
+        private Node node;
+
+        // the index in the items of the node.
+        private int slot;
+
+        private Handle(Entity entity) {
+            this.entity = entity;
+        }
+    }
+
+    /**
+     * A square of the tree, its loose bounds extend half its size past each side.
+     */
+    private static final class Node {
+        private final Node parent;
+        private final int quadrant, x, y, size, depth;
+        private Node[] children;
+
+        private Handle[] items = new Handle[2];
+        private int count;
+
+        // the amount of entities in this node and below it.
+        private int total;
+
+        private Node(Node parent, int quadrant, int x, int y, int size, int depth) {
+            this.parent = parent;
+            this.quadrant = quadrant;
+            this.x = x;
+            this.y = y;
+            this.size = size;
+            this.depth = depth;
+        }
+
+        private boolean holds(int pointX, int pointY) {
+            return pointX >= x && pointY >= y && pointX - x < size && pointY - y < size;
+        }
+
+        private long looseDistance(int pointX, int pointY) {
+            int margin = size >> 1;
+            return NearestCollector.distanceSquared(pointX, pointY, x - margin, y - margin,
+                    x + size + margin - 1, y + size + margin - 1);
+        }
+
+        private Node child(int quadrant) {
+            if (children == null) {
+                children = new Node[4];
+            }
+
+            Node child = children[quadrant];
+            if (child == null) {
+                int half = size >> 1;
+                child = new Node(this, quadrant, x + ((quadrant & 1) == 0 ? 0 : half),
+                        y + ((quadrant & 2) == 0 ? 0 : half), half, depth + 1);
+                children[quadrant] = child;
+            }
+            return child;
+        }
+
+        private void add(Handle handle) {
+            if (count == items.length) {
+                items = Arrays.copyOf(items, count << 1);
+            }
+            handle.node = this;
+            handle.slot = count;
+            items[count++] = handle;
+
+            for (Node node = this; node != null; node = node.parent) {
+                node.total++;
+            }
+        }
+
+        private void remove(Handle handle) {
+            Handle last = items[--count];
+            items[handle.slot] = last;
+            last.slot = handle.slot;
+            items[count] = null;
+            handle.node = null;
+
+            // drop nodes left empty so queries don't walk them.
+            for (Node node = this; node != null; node = node.parent) {
+                if (--node.total == 0 && node.parent != null) {
+                    node.parent.children[node.quadrant] = null;
+                }
+            }
+        }
+
+        private void clearItems() {
+            Arrays.fill(items, 0, count, null);
+            count = 0;
+            total = 0;
+        }
+    }
+}
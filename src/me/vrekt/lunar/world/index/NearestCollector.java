@@ -0,0 +1,116 @@
+package me.vrekt.lunar.world.index;
+
+import me.vrekt.lunar.entity.Entity;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps the closest entities found so far during a k-nearest query, a max heap on distance
+ * so the farthest of them can be replaced in log time. Reused between queries.
+ */
+final class NearestCollector {
+
+    private Entity[] entities = new Entity[8];
+    private long[] distances = new long[8];
+    private int count, capacity;
+
+    /**
+     * Start a query keeping the closest amount of entities.
+     */
+    void reset(int amount) {
+        if (amount > entities.length) {
+            entities = new Entity[amount];
+            distances = new long[amount];
+        }
+        count = 0;
+        capacity = amount;
+    }
+
+    /**
+     * Return if the amount of entities asked for has been found.
+     */
+    boolean isFull() {
+        return count == capacity;
+    }
+
+    /**
+     * Get the squared distance of the farthest entity kept, anything farther can't be one of the closest.
+     */
+    long farthest() {
+        return count == capacity ? distances[0] : Long.MAX_VALUE;
+    }
+
+    /**
+     * Offer an entity at the squared distance.
+     */
+    void offer(Entity entity, long distance) {
+        if (count < capacity) {
+            // sift up.
+            int index = count++;
+            while (index > 0) {
+                int parent = (index - 1) >> 1;
+                if (distances[parent] >= distance) {
+                    break;
+                }
+                entities[index] = entities[parent];
+                distances[index] = distances[parent];
+                index = parent;
+            }
+            entities[index] = entity;
+            distances[index] = distance;
+        } else if (capacity > 0 && distance < distances[0]) {
+            siftDown(entity, distance, count);
+        }
+    }
+
+    private void siftDown(Entity entity, long distance, int size) {
+        int index = 0;
+        while (true) {
+            int child = (index << 1) + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && distances[child + 1] > distances[child]) {
+                child++;
+            }
+            if (distances[child] <= distance) {
+                break;
+            }
+            entities[index] = entities[child];
+            distances[index] = distances[child];
+            index = child;
+        }
+        entities[index] = entity;
+        distances[index] = distance;
+    }
+
+    /**
+     * Add the entities kept to the list, closest first, and release them.
+     */
+    void drainTo(List<Entity> result) {
+        // pop the farthest into the end of the heap until it is sorted.
+        for (int size = count; size > 1; size--) {
+            Entity farthest = entities[0];
+            long distance = distances[0];
+            siftDown(entities[size - 1], distances[size - 1], size - 1);
+            entities[size - 1] = farthest;
+            distances[size - 1] = distance;
+        }
+
+        for (int i = 0; i < count; i++) {
+            result.add(entities[i]);
+        }
+        Arrays.fill(entities, 0, count, null);
+        count = 0;
+    }
+
+    /**
+     * Get the squared distance from the point to the closest point of the rectangle, inclusive bounds.
+     */
+    static long distanceSquared(int x, int y, int minX, int minY, int maxX, int maxY) {
+        long dx = x < minX ? (long) minX - x : x > maxX ? (long) x - maxX : 0;
+        long dy = y < minY ? (long) minY - y : y > maxY ? (long) y - maxY : 0;
+        return dx * dx + dy * dy;
+    }
+}
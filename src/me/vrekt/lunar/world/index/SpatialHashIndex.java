@@ -0,0 +1,392 @@
+package me.vrekt.lunar.world.index;
+
+import me.vrekt.lunar.entity.Entity;
+import me.vrekt.lunar.utilities.LongObjectMap;
+import me.vrekt.lunar.utilities.Utilities;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Buckets entities into a uniform grid of square cells keyed by cell position, only the cells a query
+ * overlaps are looked at. Entities larger than a cell are in every cell they cover.
+ * An entity covers the rectangle from its X and Y to its X and Y plus its width and height.
+ * <p>
+ * Works best with a cell size around the size of a typical entity or query, cells are only allocated where
+ * entities are so the grid has no bounds. Moving an entity within the same cells costs nothing.
+ */
+public class SpatialHashIndex implements EntityIndex {
+
+    /**
+     * The default cell size in pixels.
+     */
+    public static final int DEFAULT_CELL_SIZE = 64;
+
+    private final int cellShift;
+
+    private final LongObjectMap<Cell> cells = new LongObjectMap<>();
+    private final Map<Entity, Handle> handles = new IdentityHashMap<>();
+
+    // every handle, for queries that have to look at all of them.
+    private Handle[] all = new Handle[16];
+
+    // emptied cells are kept for reuse so entities crossing cells don't allocate.
+    private Cell[] freeCells = new Cell[16];
+    private int freeCount;
+
+    // stamped on each handle a query visits so an entity in many cells is only added once.
+    private int queryStamp;
+
+    private final NearestCollector nearest = new NearestCollector();
+
+    /**
+     * Initialize the index with 64 pixel cells.
+     */
+    public SpatialHashIndex() {
+        this(DEFAULT_CELL_SIZE);
+    }
+
+    /**
+     * Initialize the index.
+     *
+     * @param cellSize the width and height of a cell, must be a power of two.
+     */
+    public SpatialHashIndex(int cellSize) {
+        if (cellSize < 1 || Integer.bitCount(cellSize) != 1) {
+            throw new IllegalArgumentException("The cell size must be a power of two.");
+        }
+        this.cellShift = Integer.numberOfTrailingZeros(cellSize);
+    }
+
+    @Override
+    public void add(Entity entity) {
+        if (handles.containsKey(entity)) {
+            update(entity);
+            return;
+        }
+
+        Handle handle = new Handle(entity);
+        handles.put(entity, handle);
+        if (handles.size() > all.length) {
+            all = Arrays.copyOf(all, all.length << 1);
+        }
+        handle.slot = handles.size() - 1;
+        all[handle.slot] = handle;
+        handle.setBounds(entity, cellShift);
+        insert(handle);
+    }
+
+    @Override
+    public void remove(Entity entity) {
+        Handle handle = handles.remove(entity);
+        if (handle != null) {
+            extract(handle);
+
+            Handle last = all[handles.size()];
+            all[handle.slot] = last;
+            last.slot = handle.slot;
+            all[handles.size()] = null;
+        }
+    }
+
+    @Override
+    public void update(Entity entity) {
+        Handle handle = handles.get(entity);
+        if (handle == null) {
+            return;
+        }
+
+        int minX = entity.getX() >> cellShift;
+        int minY = entity.getY() >> cellShift;
+        int maxX = maxCell(entity.getX(), entity.getWidth());
+        int maxY = maxCell(entity.getY(), entity.getHeight());
+        if (minX == handle.minX && minY == handle.minY && maxX == handle.maxX && maxY == handle.maxY) {
+            return;
+        }
+
+        extract(handle);
+        handle.setBounds(entity, cellShift);
+        insert(handle);
+    }
+
+    @Override
+    public boolean contains(Entity entity) {
+        return handles.containsKey(entity);
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(all, 0, handles.size(), null);
+        handles.clear();
+        cells.clear();
+    }
+
+    @Override
+    public int size() {
+        return handles.size();
+    }
+
+    @Override
+    public void queryPoint(int x, int y, List<Entity> result) {
+        Cell cell = cells.get(Utilities.packCoordinates(x >> cellShift, y >> cellShift));
+        if (cell == null) {
+            return;
+        }
+
+        // an entity is in each cell once, no stamp needed.
+        for (int i = 0; i < cell.count; i++) {
+            Entity entity = cell.handles[i].entity;
+            if (x >= entity.getX() && y >= entity.getY()
+                    && x < entity.getX() + Math.max(1, entity.getWidth()) && y < entity.getY() + Math.max(1, entity.getHeight())) {
+                result.add(entity);
+            }
+        }
+    }
+
+    @Override
+    public void queryRectangle(int x, int y, int width, int height, List<Entity> result) {
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+
+        int stamp = nextStamp();
+        int maxX = maxCell(x, width);
+        int maxY = maxCell(y, height);
+        for (int cellY = y >> cellShift; cellY <= maxY; cellY++) {
+            for (int cellX = x >> cellShift; cellX <= maxX; cellX++) {
+                Cell cell = cells.get(Utilities.packCoordinates(cellX, cellY));
+                if (cell == null) {
+                    continue;
+                }
+
+                for (int i = 0; i < cell.count; i++) {
+                    Handle handle = cell.handles[i];
+                    if (handle.stamp == stamp) {
+                        continue;
+                    }
+                    handle.stamp = stamp;
+
+                    Entity entity = handle.entity;
+                    if (entity.getX() < x + width && entity.getY() < y + height
+                            && entity.getX() + Math.max(1, entity.getWidth()) > x
+                            && entity.getY() + Math.max(1, entity.getHeight()) > y) {
+                        result.add(entity);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void queryRadius(int x, int y, int radius, List<Entity> result) {
+        if (radius < 0) {
+            return;
+        }
+
+        int stamp = nextStamp();
+        long radiusSquared = (long) radius * radius;
+        int maxX = (x + radius) >> cellShift;
+        int maxY = (y + radius) >> cellShift;
+        for (int cellY = (y - radius) >> cellShift; cellY <= maxY; cellY++) {
+            for (int cellX = (x - radius) >> cellShift; cellX <= maxX; cellX++) {
+                Cell cell = cells.get(Utilities.packCoordinates(cellX, cellY));
+                if (cell == null) {
+                    continue;
+                }
+
+                for (int i = 0; i < cell.count; i++) {
+                    Handle handle = cell.handles[i];
+                    if (handle.stamp == stamp) {
+                        continue;
+                    }
+                    handle.stamp = stamp;
+
+                    // the distance from the center to the closest point of the entity.
+                    Entity entity = handle.entity;
+                    long dx = x - clamp(x, entity.getX(), entity.getX() + Math.max(1, entity.getWidth()) - 1);
+                    long dy = y - clamp(y, entity.getY(), entity.getY() + Math.max(1, entity.getHeight()) - 1);
+                    if (dx * dx + dy * dy <= radiusSquared) {
+                        result.add(entity);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void queryNearest(int x, int y, int amount, List<Entity> result) {
+        int size = handles.size();
+        nearest.reset(Math.min(amount, size));
+        if (amount <= 0 || size == 0) {
+            return;
+        }
+
+        // search rings of cells around the point until nothing closer can be found, if the rings
+        // would cover more cells than are allocated, looking at every entity is cheaper.
+        int stamp = nextStamp();
+        int centerX = x >> cellShift;
+        int centerY = y >> cellShift;
+        for (int ring = 0; ; ring++) {
+            long ringCells = ring == 0 ? 1 : 8L * ring;
+            if (ringCells > cells.size()) {
+                for (int i = 0; i < size; i++) {
+                    offer(all[i], x, y, stamp);
+                }
+                break;
+            }
+
+            for (int i = -ring; i <= ring; i++) {
+                offerCell(centerX + i, centerY - ring, x, y, stamp);
+                if (ring != 0) {
+                    offerCell(centerX + i, centerY + ring, x, y, stamp);
+                }
+            }
+            for (int i = -ring + 1; i < ring; i++) {
+                offerCell(centerX - ring, centerY + i, x, y, stamp);
+                offerCell(centerX + ring, centerY + i, x, y, stamp);
+            }
+
+            // every point outside the rings is at least this far from the query point.
+            long reach = Math.min(x - ((long) (centerX - ring) << cellShift), ((long) (centerX + ring + 1) << cellShift) - 1 - x);
+            reach = Math.min(reach, Math.min(y - ((long) (centerY - ring) << cellShift), ((long) (centerY + ring + 1) << cellShift) - 1 - y));
+            if (nearest.isFull() && nearest.farthest() <= (reach + 1) * (reach + 1)) {
+                break;
+            }
+        }
+        nearest.drainTo(result);
+    }
+
+    private void offerCell(int cellX, int cellY, int x, int y, int stamp) {
+        Cell cell = cells.get(Utilities.packCoordinates(cellX, cellY));
+        if (cell != null) {
+            for (int i = 0; i < cell.count; i++) {
+                offer(cell.handles[i], x, y, stamp);
+            }
+        }
+    }
+
+    private void offer(Handle handle, int x, int y, int stamp) {
+        if (handle.stamp == stamp) {
+            return;
+        }
+        handle.stamp = stamp;
+
+        Entity entity = handle.entity;
+        nearest.offer(entity, NearestCollector.distanceSquared(x, y, entity.getX(), entity.getY(),
+                entity.getX() + Math.max(1, entity.getWidth()) - 1, entity.getY() + Math.max(1, entity.getHeight()) - 1));
+    }
+
+    /**
+     * Get the cell size.
+     */
+    public int getCellSize() {
+        return 1 << cellShift;
+    }
+
+    /**
+     * Get the amount of cells holding entities.
+     */
+    public int getCellCount() {
+        return cells.size();
+    }
+
+    private int maxCell(int position, int size) {
+        return (position + Math.max(1, size) - 1) >> cellShift;
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return value < min ? min : value > max ? max : value;
+    }
+
+    private int nextStamp() {
+        if (++queryStamp == 0) {
+            // wrapped around, clear the old stamps so none of them match by accident.
+            for (Handle handle : handles.values()) {
+                handle.stamp = 0;
+            }
+            queryStamp = 1;
+        }
+        return queryStamp;
+    }
+
+    private void insert(Handle handle) {
+        for (int cellY = handle.minY; cellY <= handle.maxY; cellY++) {
+            for (int cellX = handle.minX; cellX <= handle.maxX; cellX++) {
+                long key = Utilities.packCoordinates(cellX, cellY);
+                Cell cell = cells.get(key);
+                if (cell == null) {
+                    cell = freeCount == 0 ? new Cell() : freeCells[--freeCount];
+                    cells.put(key, cell);
+                }
+                cell.add(handle);
+            }
+        }
+    }
+
+    private void extract(Handle handle) {
+        for (int cellY = handle.minY; cellY <= handle.maxY; cellY++) {
+            for (int cellX = handle.minX; cellX <= handle.maxX; cellX++) {
+                long key = Utilities.packCoordinates(cellX, cellY);
+                Cell cell = cells.get(key);
+                if (cell != null && cell.remove(handle) && cell.count == 0) {
+                    cells.remove(key);
+                    if (freeCount == freeCells.length) {
+                        freeCells = Arrays.copyOf(freeCells, freeCount << 1);
+                    }
+                    freeCells[freeCount++] = cell;
+                }
+            }
+        }
+    }
+
+    /**
+     * The cells an entity was put in.
+     */
+    private static final class Handle {
+        private final Entity entity;
+        private int minX, minY, maxX, maxY;
+        private int stamp;
+
+        // the index in the array of all handles.
+        private int slot;
+
+        private Handle(Entity entity) {
+            this.entity = entity;
+        }
+
+        private void setBounds(Entity entity, int cellShift) {
+            minX = entity.getX() >> cellShift;
+            minY = entity.getY() >> cellShift;
+            maxX = (entity.getX() + Math.max(1, entity.getWidth()) - 1) >> cellShift;
+            maxY = (entity.getY() + Math.max(1, entity.getHeight()) - 1) >> cellShift;
+        }
+    }
+
+    /**
+     * The handles of the entities in a cell.
+     */
+    private static final class Cell {
+        private Handle[] handles = new Handle[4];
+        private int count;
+
+        private void add(Handle handle) {
+            if (count == handles.length) {
+                handles = Arrays.copyOf(handles, count << 1);
+            }
+            handles[count++] = handle;
+        }
+
+        private boolean remove(Handle handle) {
+            for (int i = 0; i < count; i++) {
+                if (handles[i] == handle) {
+                    handles[i] = handles[--count];
+                    handles[count] = null;
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
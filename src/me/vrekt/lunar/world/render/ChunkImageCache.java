@@ -0,0 +1,269 @@
+package me.vrekt.lunar.world.render;
+
+import me.vrekt.lunar.utilities.Utilities;
+import me.vrekt.lunar.world.storage.TileStorage;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bakes the tiles of a storage into one image per square chunk of pixels so a visible chunk
+ * costs a single drawImage call. Meant for tiles that rarely change, a change only re-bakes the
+ * chunks it touches. Baked chunks are kept within a memory budget, the least recently drawn are
+ * evicted first.
+ */
+public class ChunkImageCache {
+
+    /**
+     * The most empty chunks remembered as empty, the least recently drawn are forgotten first.
+     */
+    public static final int MAX_EMPTY_CHUNKS = 4096;
+
+    private final TileStorage storage;
+    private final int chunkSize;
+    private final long memoryBudget;
+
+    // the largest tile dimensions, tiles can hang into the chunk from the left and top.
+    private int maxTileWidth, maxTileHeight;
+
+    // least recently drawn first. Kept in insertion order and moved to the end when drawn,
+    // so looking a chunk up to invalidate it doesn't count as drawing it.
+    private final Map<Long, BakedChunk> baked = new LinkedHashMap<>(64);
+    private long memoryUsed;
+    private int emptyChunks;
+
+    private int bakes, evictions;
+
+    /**
+     * Initialize the cache.
+     *
+     * @param storage       the tiles to bake, keyed by pixel position.
+     * @param chunkSize     the width and height of a chunk in pixels.
+     * @param memoryBudget  the most bytes of baked images kept at once.
+     * @param maxTileWidth  the width of the widest tile in the storage.
+     * @param maxTileHeight the height of the tallest tile in the storage.
+     */
+    public ChunkImageCache(TileStorage storage, int chunkSize, long memoryBudget, int maxTileWidth, int maxTileHeight) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be positive.");
+        }
+
+        this.storage = storage;
+        this.chunkSize = chunkSize;
+        this.memoryBudget = memoryBudget;
+        this.maxTileWidth = Math.max(1, maxTileWidth);
+        this.maxTileHeight = Math.max(1, maxTileHeight);
+    }
+
+    /**
+     * Draw the chunks that overlap the view, relative to the view position.
+     */
+    public void draw(Graphics graphics, int viewX, int viewY, int viewWidth, int viewHeight) {
+        int minChunkX = Math.floorDiv(viewX, chunkSize);
+        int minChunkY = Math.floorDiv(viewY, chunkSize);
+        int maxChunkX = Math.floorDiv(viewX + viewWidth - 1, chunkSize);
+        int maxChunkY = Math.floorDiv(viewY + viewHeight - 1, chunkSize);
+
+        for (int chunkY = minChunkY; chunkY <= maxChunkY; chunkY++) {
+            for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+                BakedChunk chunk = getBaked(chunkX, chunkY);
+                if (chunk.image != null) {
+                    graphics.drawImage(chunk.image, chunkX * chunkSize - viewX, chunkY * chunkSize - viewY, null);
+                }
+            }
+        }
+        evict();
+    }
+
+    /**
+     * Mark the chunks a tile covers as dirty, they will be baked again the next time they're drawn.
+     */
+    public void invalidate(int x, int y, int width, int height) {
+        maxTileWidth = Math.max(maxTileWidth, width);
+        maxTileHeight = Math.max(maxTileHeight, height);
+
+        int minChunkX = Math.floorDiv(x, chunkSize);
+        int minChunkY = Math.floorDiv(y, chunkSize);
+        int maxChunkX = Math.floorDiv(x + width - 1, chunkSize);
+        int maxChunkY = Math.floorDiv(y + height - 1, chunkSize);
+
+        for (int chunkY = minChunkY; chunkY <= maxChunkY; chunkY++) {
+            for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+                BakedChunk chunk = baked.get(Utilities.packCoordinates(chunkX, chunkY));
+                if (chunk != null) {
+                    chunk.dirty = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Mark every chunk as dirty, for example after tile textures changed.
+     */
+    public void invalidateAll() {
+        baked.values().forEach(chunk -> chunk.dirty = true);
+    }
+
+    /**
+     * Drop every baked chunk.
+     */
+    public void clear() {
+        baked.clear();
+        memoryUsed = 0;
+        emptyChunks = 0;
+    }
+
+    /**
+     * Get the width and height of a chunk in pixels.
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Get the amount of bytes the baked images use.
+     */
+    public long getMemoryUsed() {
+        return memoryUsed;
+    }
+
+    /**
+     * Get the amount of chunks kept in the cache.
+     */
+    public int getCachedChunks() {
+        return baked.size();
+    }
+
+    /**
+     * Get the amount of empty chunks remembered as empty.
+     */
+    public int getEmptyChunks() {
+        return emptyChunks;
+    }
+
+    /**
+     * Get how many times a chunk was baked.
+     */
+    public int getBakes() {
+        return bakes;
+    }
+
+    /**
+     * Get how many baked chunks were evicted to stay within the budget.
+     */
+    public int getEvictions() {
+        return evictions;
+    }
+
+    private BakedChunk getBaked(int chunkX, int chunkY) {
+        long key = Utilities.packCoordinates(chunkX, chunkY);
+        BakedChunk chunk = baked.remove(key);
+        if (chunk == null) {
+            chunk = new BakedChunk();
+            chunk.dirty = true;
+        }
+        baked.put(key, chunk);
+
+        if (chunk.dirty) {
+            bake(chunk, chunkX * chunkSize, chunkY * chunkSize);
+        }
+        return chunk;
+    }
+
+    private void bake(BakedChunk chunk, int originX, int originY) {
+        bakes++;
+        chunk.dirty = false;
+
+        Graphics2D[] graphics = new Graphics2D[1];
+        storage.forEachInRegion(originX - maxTileWidth + 1, originY - maxTileHeight + 1,
+                originX + chunkSize - 1, originY + chunkSize - 1, (x, y, tile) -> {
+                    if (graphics[0] == null) {
+                        graphics[0] = beginBake(chunk);
+                    }
+                    graphics[0].drawImage(tile.getTexture(), x - originX, y - originY, null);
+                });
+
+        if (graphics[0] != null) {
+            graphics[0].dispose();
+        } else if (chunk.image != null) {
+            // keep empty chunks as a marker so they aren't checked every frame, but without an image.
+            memoryUsed -= imageBytes();
+            chunk.image.flush();
+            chunk.image = null;
+        }
+
+        boolean empty = chunk.image == null;
+        if (empty != chunk.empty) {
+            chunk.empty = empty;
+            emptyChunks += empty ? 1 : -1;
+        }
+    }
+
+    /**
+     * Get a cleared graphics for the chunk image, creating the image if needed.
+     */
+    private Graphics2D beginBake(BakedChunk chunk) {
+        if (chunk.image == null) {
+            chunk.image = createImage();
+            memoryUsed += imageBytes();
+        }
+
+        Graphics2D graphics = chunk.image.createGraphics();
+        graphics.setComposite(AlphaComposite.Clear);
+        graphics.fillRect(0, 0, chunkSize, chunkSize);
+        graphics.setComposite(AlphaComposite.SrcOver);
+        return graphics;
+    }
+
+    /**
+     * Evict the least recently drawn chunks until the cache is within its budget,
+     * and forget the least recently drawn empty chunks past {@link #MAX_EMPTY_CHUNKS}.
+     */
+    private void evict() {
+        Iterator<BakedChunk> iterator = baked.values().iterator();
+        while ((memoryUsed > memoryBudget || emptyChunks > MAX_EMPTY_CHUNKS) && iterator.hasNext()) {
+            BakedChunk chunk = iterator.next();
+            if (chunk.image != null) {
+                if (memoryUsed <= memoryBudget) {
+                    continue;
+                }
+                memoryUsed -= imageBytes();
+                chunk.image.flush();
+                evictions++;
+            } else if (chunk.empty) {
+                emptyChunks--;
+            }
+            iterator.remove();
+        }
+    }
+
+    private BufferedImage createImage() {
+        if (!GraphicsEnvironment.isHeadless()) {
+            // a compatible image matches the screen format, so Java2D can keep it accelerated.
+            return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+                    .getDefaultConfiguration().createCompatibleImage(chunkSize, chunkSize, Transparency.TRANSLUCENT);
+        }
+        return new BufferedImage(chunkSize, chunkSize, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    private long imageBytes() {
+        return (long) chunkSize * chunkSize * 4;
+    }
+
+    /**
+     * A baked chunk, the image is null if the chunk is empty.
+     */
+    private static final class BakedChunk {
+        private BufferedImage image;
+        private boolean dirty;
+        // counted as an empty chunk.
+        private boolean empty;
+    }
+}
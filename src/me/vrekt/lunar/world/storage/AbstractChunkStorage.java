@@ -0,0 +1,247 @@
+package me.vrekt.lunar.world.storage;
+
+import me.vrekt.lunar.utilities.LongObjectMap;
+import me.vrekt.lunar.utilities.Utilities;
+
+import java.util.Arrays;
+
+/**
+ * The chunk bookkeeping shared by the chunked storages, chunks are square and allocated on demand.
+ *
+ * @param <C> the chunk type.
+ */
+abstract class AbstractChunkStorage<C extends AbstractChunkStorage.Chunk> implements TileStorage {
+
+    protected final int chunkShift, chunkMask;
+    protected final CellLayout layout;
+
+    private final LongObjectMap<C> chunks = new LongObjectMap<>();
+
+    // chunks in the order they were allocated, used for iteration.
+    private Chunk[] chunkOrder = new Chunk[16];
+    private int chunkCount;
+    protected int size;
+
+    // the last chunk that was looked up, most lookups hit the same chunk again.
+    private C lastChunk;
+
+    AbstractChunkStorage(int chunkShift, int cellWidth, int cellHeight) {
+        if (chunkShift < 1 || chunkShift > 10) {
+            throw new IllegalArgumentException("chunkShift must be between 1 and 10.");
+        }
+
+        this.chunkShift = chunkShift;
+        this.chunkMask = (1 << chunkShift) - 1;
+        this.layout = new CellLayout(cellWidth, cellHeight);
+    }
+
+    /**
+     * Create an empty chunk.
+     */
+    abstract C createChunk(int chunkX, int chunkY, int area);
+
+    /**
+     * Visit the tiles of the chunk within the local cell bounds, inclusive.
+     */
+    abstract void visitChunk(C chunk, int fromX, int fromY, int toX, int toY, TileVisitor visitor);
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(TileVisitor visitor) {
+        for (int c = 0; c < chunkCount; c++) {
+            C chunk = (C) chunkOrder[c];
+            if (chunk.count != 0) {
+                visitChunk(chunk, 0, 0, chunkMask, chunkMask, visitor);
+            }
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEachInRegion(int minX, int minY, int maxX, int maxY, TileVisitor visitor) {
+        int minCellX = layout.firstCellX(minX);
+        int minCellY = layout.firstCellY(minY);
+        int maxCellX = layout.toCellX(maxX);
+        int maxCellY = layout.toCellY(maxY);
+        if (minCellX > maxCellX || minCellY > maxCellY) {
+            return;
+        }
+
+        int minChunkX = minCellX >> chunkShift;
+        int minChunkY = minCellY >> chunkShift;
+        int maxChunkX = maxCellX >> chunkShift;
+        int maxChunkY = maxCellY >> chunkShift;
+
+        long area = (long) (maxChunkX - minChunkX + 1) * (maxChunkY - minChunkY + 1);
+        if (area <= chunkCount) {
+            for (int chunkY = minChunkY; chunkY <= maxChunkY; chunkY++) {
+                for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+                    C chunk = getChunk(chunkX, chunkY);
+                    if (chunk != null && chunk.count != 0) {
+                        visitClipped(chunk, minCellX, minCellY, maxCellX, maxCellY, visitor);
+                    }
+                }
+            }
+            return;
+        }
+
+        // the region covers more chunks than exist, checking each allocated chunk is cheaper.
+        for (int c = 0; c < chunkCount; c++) {
+            C chunk = (C) chunkOrder[c];
+            if (chunk.count != 0 && chunk.chunkX >= minChunkX && chunk.chunkX <= maxChunkX
+                    && chunk.chunkY >= minChunkY && chunk.chunkY <= maxChunkY) {
+                visitClipped(chunk, minCellX, minCellY, maxCellX, maxCellY, visitor);
+            }
+        }
+    }
+
+    private void visitClipped(C chunk, int minCellX, int minCellY, int maxCellX, int maxCellY, TileVisitor visitor) {
+        int originX = chunk.chunkX << chunkShift;
+        int originY = chunk.chunkY << chunkShift;
+        visitChunk(chunk, Math.max(minCellX - originX, 0), Math.max(minCellY - originY, 0),
+                Math.min(maxCellX - originX, chunkMask), Math.min(maxCellY - originY, chunkMask), visitor);
+    }
+
+    @Override
+    public void clear() {
+        chunks.clear();
+        Arrays.fill(chunkOrder, 0, chunkCount, null);
+        chunkCount = 0;
+        size = 0;
+        lastChunk = null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the chunk size as a power of two.
+     */
+    public int getChunkShift() {
+        return chunkShift;
+    }
+
+    /**
+     * Get the amount of chunks allocated.
+     */
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    @Override
+    public int getCellWidth() {
+        return layout.cellWidth;
+    }
+
+    @Override
+    public int getCellHeight() {
+        return layout.cellHeight;
+    }
+
+    /**
+     * Get the chunk, or null if it hasn't been allocated.
+     */
+    C getChunk(int chunkX, int chunkY) {
+        C chunk = lastChunk;
+        if (chunk != null && chunk.chunkX == chunkX && chunk.chunkY == chunkY) {
+            return chunk;
+        }
+
+        chunk = chunks.get(Utilities.packCoordinates(chunkX, chunkY));
+        if (chunk != null) {
+            lastChunk = chunk;
+        }
+        return chunk;
+    }
+
+    /**
+     * Get the chunk, allocating it if needed.
+     */
+    C getOrCreateChunk(int chunkX, int chunkY) {
+        C chunk = getChunk(chunkX, chunkY);
+        if (chunk == null) {
+            chunk = createChunk(chunkX, chunkY, getChunkArea());
+            installChunk(chunk);
+        }
+        return chunk;
+    }
+
+    /**
+     * Add a chunk that was created elsewhere, for example loaded from disk.
+     * There must not be a chunk at its position already.
+     */
+    void installChunk(C chunk) {
+        chunks.put(Utilities.packCoordinates(chunk.chunkX, chunk.chunkY), chunk);
+        if (chunkCount == chunkOrder.length) {
+            chunkOrder = Arrays.copyOf(chunkOrder, chunkCount << 1);
+        }
+        chunk.order = chunkCount;
+        chunkOrder[chunkCount++] = chunk;
+        size += chunk.count;
+        lastChunk = chunk;
+    }
+
+    /**
+     * Remove the chunk and its tiles.
+     *
+     * @return the removed chunk or null.
+     */
+    C removeChunk(int chunkX, int chunkY) {
+        C chunk = chunks.remove(Utilities.packCoordinates(chunkX, chunkY));
+        if (chunk == null) {
+            return null;
+        }
+
+        // move the last chunk into the gap.
+        Chunk last = chunkOrder[--chunkCount];
+        chunkOrder[chunk.order] = last;
+        last.order = chunk.order;
+        chunkOrder[chunkCount] = null;
+
+        size -= chunk.count;
+        if (lastChunk == chunk) {
+            lastChunk = null;
+        }
+        return chunk;
+    }
+
+    /**
+     * Get the allocated chunk at the index, between 0 and {@link #getChunkCount()}.
+     */
+    @SuppressWarnings("unchecked")
+    C chunkAt(int index) {
+        return (C) chunkOrder[index];
+    }
+
+    /**
+     * Get the amount of cells in a chunk.
+     */
+    int getChunkArea() {
+        return 1 << (chunkShift << 1);
+    }
+
+    /**
+     * Get the index of the cell within its chunk.
+     */
+    int indexOf(int cellX, int cellY) {
+        return ((cellY & chunkMask) << chunkShift) | (cellX & chunkMask);
+    }
+
+    /**
+     * The base of a chunk, tracks its position and how many tiles it holds.
+     */
+    static class Chunk {
+        final int chunkX, chunkY;
+        int count;
+
+        // the index of the chunk in the allocation order.
+        int order;
+
+        Chunk(int chunkX, int chunkY) {
+            this.chunkX = chunkX;
+            this.chunkY = chunkY;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package me.vrekt.lunar.world.storage;
+
+/**
+ * Maps tile keys to cells. Worlds keyed by pixel position use the tile size as the cell size,
+ * so a 32x32 tile at (64, 96) lives in cell (2, 3) instead of leaving the cells in between empty.
+ * Keys must be a multiple of the cell size.
+ */
+final class CellLayout {
+
+    final int cellWidth, cellHeight;
+
+    CellLayout(int cellWidth, int cellHeight) {
+        if (cellWidth < 1 || cellHeight < 1) {
+            throw new IllegalArgumentException("Cell dimensions must be positive.");
+        }
+
+        this.cellWidth = cellWidth;
+        this.cellHeight = cellHeight;
+    }
+
+    /**
+     * Return if the key lines up with a cell.
+     */
+    boolean isAligned(int x, int y) {
+        return (cellWidth == 1 || Math.floorMod(x, cellWidth) == 0)
+                && (cellHeight == 1 || Math.floorMod(y, cellHeight) == 0);
+    }
+
+    /**
+     * Throw if the key doesn't line up with a cell, tiles between cells can't be stored.
+     */
+    void checkAligned(int x, int y) {
+        if (!isAligned(x, y)) {
+            throw new IllegalArgumentException("(" + x + ", " + y + ") is not a multiple of the cell size "
+                    + cellWidth + "x" + cellHeight + ".");
+        }
+    }
+
+    int toCellX(int x) {
+        return cellWidth == 1 ? x : Math.floorDiv(x, cellWidth);
+    }
+
+    int toCellY(int y) {
+        return cellHeight == 1 ? y : Math.floorDiv(y, cellHeight);
+    }
+
+    int toKeyX(int cellX) {
+        return cellX * cellWidth;
+    }
+
+    int toKeyY(int cellY) {
+        return cellY * cellHeight;
+    }
+
+    /**
+     * Get the first cell whose key is at or after the X.
+     */
+    int firstCellX(int x) {
+        return -Math.floorDiv(-x, cellWidth);
+    }
+
+    /**
+     * Get the first cell whose key is at or after the Y.
+     */
+    int firstCellY(int y) {
+        return -Math.floorDiv(-y, cellHeight);
+    }
+
+}
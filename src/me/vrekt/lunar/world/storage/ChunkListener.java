@@ -0,0 +1,19 @@
+package me.vrekt.lunar.world.storage;
+
+/**
+ * Told when a {@link StreamingTileStorage} loads or unloads a chunk. The bounds are tile keys, inclusive.
+ * Called on the game thread.
+ */
+public interface ChunkListener {
+
+    /**
+     * A chunk was loaded and its tiles can now be read.
+     */
+    void chunkLoaded(int minX, int minY, int maxX, int maxY);
+
+    /**
+     * A chunk is about to be unloaded, its tiles can still be read.
+     */
+    void chunkUnloading(int minX, int minY, int maxX, int maxY);
+
+}
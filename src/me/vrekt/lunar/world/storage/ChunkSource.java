@@ -0,0 +1,25 @@
+package me.vrekt.lunar.world.storage;
+
+import java.io.IOException;
+
+/**
+ * Where a {@link StreamingTileStorage} reads and writes its chunks. A chunk is a square of
+ * palette cells in row order, each cell is the tile ID + 1 and zero is an empty cell.
+ * Methods are called from background I/O threads, and by the game thread when it edits a chunk that wasn't loaded yet.
+ */
+public interface ChunkSource {
+
+    /**
+     * Read the chunk.
+     *
+     * @param area the amount of cells in a chunk.
+     * @return the cells, or null if the chunk was never written.
+     */
+    short[] read(int chunkX, int chunkY, int area) throws IOException;
+
+    /**
+     * Write the chunk, replacing what was there.
+     */
+    void write(int chunkX, int chunkY, short[] cells) throws IOException;
+
+}
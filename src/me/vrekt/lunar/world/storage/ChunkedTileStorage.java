@@ -0,0 +1,135 @@
+package me.vrekt.lunar.world.storage;
+
+import me.vrekt.lunar.tile.Tile;
+
+/**
+ * Stores tiles in dense square chunks that are allocated as tiles are added.
+ * Lookups are a chunk lookup plus an array index, and iteration walks chunk by chunk
+ * so tiles that are close together are visited together.
+ * <p>
+ * Best suited for worlds that are mostly filled. Worlds keyed by pixel position should pass
+ * their tile size as the cell size so every cell of a chunk can be used.
+ */
+public class ChunkedTileStorage extends AbstractChunkStorage<ChunkedTileStorage.TileChunk> {
+
+    /**
+     * The default chunk size, 16x16 tiles.
+     */
+    public static final int DEFAULT_CHUNK_SHIFT = 4;
+
+    /**
+     * Initialize the storage with 16x16 chunks.
+     */
+    public ChunkedTileStorage() {
+        this(DEFAULT_CHUNK_SHIFT);
+    }
+
+    /**
+     * Initialize the storage.
+     *
+     * @param chunkShift the chunk size as a power of two, a shift of 4 is a 16x16 chunk.
+     */
+    public ChunkedTileStorage(int chunkShift) {
+        this(chunkShift, 1, 1);
+    }
+
+    /**
+     * Initialize the storage.
+     *
+     * @param chunkShift the chunk size as a power of two, a shift of 4 is a 16x16 chunk.
+     * @param cellWidth  the distance between tile keys on the X axis, for example the tile width.
+     * @param cellHeight the distance between tile keys on the Y axis, for example the tile height.
+     */
+    public ChunkedTileStorage(int chunkShift, int cellWidth, int cellHeight) {
+        super(chunkShift, cellWidth, cellHeight);
+    }
+
+    @Override
+    public Tile get(int x, int y) {
+        if (!layout.isAligned(x, y)) {
+            return null;
+        }
+
+        int cellX = layout.toCellX(x);
+        int cellY = layout.toCellY(y);
+        TileChunk chunk = getChunk(cellX >> chunkShift, cellY >> chunkShift);
+        return chunk == null ? null : chunk.tiles[indexOf(cellX, cellY)];
+    }
+
+    @Override
+    public Tile put(int x, int y, Tile tile) {
+        if (tile == null) {
+            return remove(x, y);
+        }
+        layout.checkAligned(x, y);
+
+        int cellX = layout.toCellX(x);
+        int cellY = layout.toCellY(y);
+        TileChunk chunk = getOrCreateChunk(cellX >> chunkShift, cellY >> chunkShift);
+
+        int index = indexOf(cellX, cellY);
+        Tile previous = chunk.tiles[index];
+        chunk.tiles[index] = tile;
+        if (previous == null) {
+            chunk.count++;
+            size++;
+        }
+        return previous;
+    }
+
+    @Override
+    public Tile remove(int x, int y) {
+        if (!layout.isAligned(x, y)) {
+            return null;
+        }
+
+        int cellX = layout.toCellX(x);
+        int cellY = layout.toCellY(y);
+        TileChunk chunk = getChunk(cellX >> chunkShift, cellY >> chunkShift);
+        if (chunk == null) {
+            return null;
+        }
+
+        int index = indexOf(cellX, cellY);
+        Tile previous = chunk.tiles[index];
+        if (previous != null) {
+            chunk.tiles[index] = null;
+            chunk.count--;
+            size--;
+        }
+        return previous;
+    }
+
+    @Override
+    TileChunk createChunk(int chunkX, int chunkY, int area) {
+        return new TileChunk(chunkX, chunkY, area);
+    }
+
+    @Override
+    void visitChunk(TileChunk chunk, int fromX, int fromY, int toX, int toY, TileVisitor visitor) {
+        int originX = chunk.chunkX << chunkShift;
+        int originY = chunk.chunkY << chunkShift;
+        Tile[] tiles = chunk.tiles;
+        for (int y = fromY; y <= toY; y++) {
+            int row = y << chunkShift;
+            for (int x = fromX; x <= toX; x++) {
+                Tile tile = tiles[row | x];
+                if (tile != null) {
+                    visitor.visit(layout.toKeyX(originX + x), layout.toKeyY(originY + y), tile);
+                }
+            }
+        }
+    }
+
+    /**
+     * A dense square of tiles.
+     */
+    static final class TileChunk extends AbstractChunkStorage.Chunk {
+        private final Tile[] tiles;
+
+        private TileChunk(int chunkX, int chunkY, int area) {
+            super(chunkX, chunkY);
+            this.tiles = new Tile[area];
+        }
+    }
+}
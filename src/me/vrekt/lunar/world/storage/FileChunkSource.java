@@ -0,0 +1,68 @@
+package me.vrekt.lunar.world.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Keeps each chunk in its own file within a directory, named after the chunk position.
+ * Chunks are written to a temporary file first and then moved into place, so a crash
+ * never leaves a half written chunk behind.
+ */
+public class FileChunkSource implements ChunkSource {
+
+    private final Path directory;
+
+    /**
+     * Initialize the source.
+     *
+     * @param directory the directory holding the chunk files, created if it doesn't exist.
+     */
+    public FileChunkSource(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+    }
+
+    @Override
+    public short[] read(int chunkX, int chunkY, int area) throws IOException {
+        byte[] data;
+        try {
+            data = Files.readAllBytes(pathOf(chunkX, chunkY));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+
+        if (data.length != area << 1) {
+            throw new IOException("Chunk (" + chunkX + ", " + chunkY + ") has " + data.length
+                    + " bytes, expected " + (area << 1) + ".");
+        }
+
+        short[] cells = new short[area];
+        ByteBuffer.wrap(data).asShortBuffer().get(cells);
+        return cells;
+    }
+
+    @Override
+    public void write(int chunkX, int chunkY, short[] cells) throws IOException {
+        ByteBuffer data = ByteBuffer.allocate(cells.length << 1);
+        data.asShortBuffer().put(cells);
+
+        Path path = pathOf(chunkX, chunkY);
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.write(temporary, data.array());
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Get the directory holding the chunk files.
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    private Path pathOf(int chunkX, int chunkY) {
+        return directory.resolve(chunkX + "_" + chunkY + ".chunk");
+    }
+}
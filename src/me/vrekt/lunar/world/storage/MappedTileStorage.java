@@ -0,0 +1,579 @@
+package me.vrekt.lunar.world.storage;
+
+import me.vrekt.lunar.asset.AssetManager;
+import me.vrekt.lunar.tile.Tile;
+import me.vrekt.lunar.utilities.LongObjectMap;
+import me.vrekt.lunar.utilities.Utilities;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tiles read straight from a memory mapped world file, nothing is parsed when it is opened so
+ * the time to open a world doesn't depend on its size. Pages of the file are read by the OS as they are touched.
+ * <p>
+ * A world file holds a header, a palette of tile IDs, an index of chunks sorted by position, and one
+ * array of palette cells per chunk, each cell is the palette index + 1 and zero is an empty cell.
+ * Tile IDs are resolved through an {@link AssetManager}, like {@link PaletteTileStorage}.
+ * Write a file with {@link #write(TileStorage, int, int, Path)}.
+ * <p>
+ * Opened read only the storage throws on edits. Opened copy on write, edits change a private copy
+ * of the touched pages and the file itself is never modified, tiles in chunks the file doesn't have are kept in memory.
+ */
+public class MappedTileStorage implements TileStorage {
+
+    /**
+     * The first four bytes of a world file, "LUNW".
+     */
+    public static final int MAGIC = 0x4C554E57;
+
+    /**
+     * The version of the format written.
+     */
+    public static final short VERSION = 1;
+
+    private static final int HEADER_SIZE = 40;
+    private static final int INDEX_ENTRY_SIZE = 16;
+
+    private final ByteBuffer buffer;
+    private final AssetManager assets;
+    private final boolean editable;
+
+    private final int chunkShift, chunkMask, chunkCount, indexOffset;
+    private final int worldWidth, worldHeight;
+    private final CellLayout layout;
+    private int size;
+
+    // palette index to tile ID, grows when an edit adds an ID the file doesn't have.
+    private int[] palette;
+    private int paletteSize;
+    private Map<Integer, Integer> paletteIndices;
+
+    // tiles outside of the chunks in the file, null until one is added.
+    private PaletteTileStorage overflow;
+
+    // the index of the last chunk that was looked up.
+    private int lastChunk = -1;
+
+    private MappedTileStorage(ByteBuffer buffer, AssetManager assets, boolean editable) throws IOException {
+        this.buffer = buffer;
+        this.assets = assets;
+        this.editable = editable;
+
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a world file.");
+        }
+        if (buffer.getShort(4) != VERSION) {
+            throw new IOException("Unsupported world file version " + buffer.getShort(4) + ".");
+        }
+
+        chunkShift = buffer.get(6);
+        chunkMask = (1 << chunkShift) - 1;
+        layout = new CellLayout(buffer.getInt(8), buffer.getInt(12));
+        worldWidth = buffer.getInt(16);
+        worldHeight = buffer.getInt(20);
+        paletteSize = buffer.getInt(24);
+        chunkCount = buffer.getInt(28);
+        size = buffer.getInt(32);
+        indexOffset = indexOffset(paletteSize);
+
+        long end = dataOffset(indexOffset, chunkCount) + ((long) chunkCount << (chunkShift << 1) << 1);
+        if (chunkShift < 1 || chunkShift > 10 || paletteSize < 0 || chunkCount < 0 || end > buffer.capacity()) {
+            throw new IOException("The world file is truncated or corrupt.");
+        }
+
+        palette = new int[paletteSize];
+        for (int i = 0; i < paletteSize; i++) {
+            palette[i] = buffer.getInt(HEADER_SIZE + (i << 2));
+        }
+    }
+
+    /**
+     * Open a world file read only.
+     *
+     * @param path   the world file.
+     * @param assets the AssetManager the tile IDs are resolved through.
+     */
+    public static MappedTileStorage open(Path path, AssetManager assets) throws IOException {
+        return open(path, assets, false);
+    }
+
+    /**
+     * Open a world file.
+     *
+     * @param path        the world file.
+     * @param assets      the AssetManager the tile IDs are resolved through.
+     * @param copyOnWrite if tiles can be added and removed, the file itself is never changed.
+     */
+    public static MappedTileStorage open(Path path, AssetManager assets, boolean copyOnWrite) throws IOException {
+        // a private mapping needs a writable channel, even though nothing is written to the file.
+        StandardOpenOption[] options = copyOnWrite
+                ? new StandardOpenOption[]{StandardOpenOption.READ, StandardOpenOption.WRITE}
+                : new StandardOpenOption[]{StandardOpenOption.READ};
+        try (FileChannel channel = FileChannel.open(path, options)) {
+            MappedByteBuffer buffer = channel.map(copyOnWrite ? FileChannel.MapMode.PRIVATE : FileChannel.MapMode.READ_ONLY,
+                    0, channel.size());
+            return new MappedTileStorage(buffer, assets, copyOnWrite);
+        }
+    }
+
+    /**
+     * Write the tiles of the storage to a world file, chunks are 16x16 cells.
+     *
+     * @param storage the tiles to write, tiles are stored by their ID.
+     * @param width   the width of the world, kept in the file for whoever opens it.
+     * @param height  the height of the world.
+     * @param path    the file to write, replaced if it exists.
+     */
+    public static void write(TileStorage storage, int width, int height, Path path) throws IOException {
+        write(storage, width, height, ChunkedTileStorage.DEFAULT_CHUNK_SHIFT, path);
+    }
+
+    /**
+     * Write the tiles of the storage to a world file. The file keeps the cell size of the storage, so a storage keyed
+     * by pixel position should have the tile size as its cell size or every tile takes a chunk of its own.
+     *
+     * @param storage    the tiles to write, tiles are stored by their ID.
+     * @param width      the width of the world, kept in the file for whoever opens it.
+     * @param height     the height of the world.
+     * @param chunkShift the chunk size as a power of two, a shift of 4 is a 16x16 chunk.
+     * @param path       the file to write, replaced if it exists. A storage that has the old file open keeps its tiles.
+     */
+    public static void write(TileStorage storage, int width, int height, int chunkShift, Path path) throws IOException {
+        if (chunkShift < 1 || chunkShift > 10) {
+            throw new IllegalArgumentException("chunkShift must be between 1 and 10.");
+        }
+
+        CellLayout layout = new CellLayout(storage.getCellWidth(), storage.getCellHeight());
+        int mask = (1 << chunkShift) - 1;
+        int area = 1 << (chunkShift << 1);
+
+        LongObjectMap<short[]> chunks = new LongObjectMap<>();
+        Map<Integer, Integer> indices = new HashMap<>();
+        int[][] palette = {new int[16]};
+        storage.forEach((x, y, tile) -> {
+            Integer index = indices.get(tile.getID());
+            if (index == null) {
+                index = indices.size();
+                if (index > Short.MAX_VALUE - 1) {
+                    throw new IllegalArgumentException("A world file can't hold more than " + Short.MAX_VALUE + " tile IDs.");
+                }
+                indices.put(tile.getID(), index);
+                if (index == palette[0].length) {
+                    palette[0] = Arrays.copyOf(palette[0], index << 1);
+                }
+                palette[0][index] = tile.getID();
+            }
+
+            int cellX = layout.toCellX(x);
+            int cellY = layout.toCellY(y);
+            long key = Utilities.packCoordinates(cellX >> chunkShift, cellY >> chunkShift);
+            short[] cells = chunks.get(key);
+            if (cells == null) {
+                cells = new short[area];
+                chunks.put(key, cells);
+            }
+            cells[((cellY & mask) << chunkShift) | (cellX & mask)] = (short) (index + 1);
+        });
+
+        // the index is sorted so chunks can be found with a binary search.
+        long[] keys = new long[chunks.size()];
+        int chunkCount = 0;
+        for (int slot = 0; slot < chunks.capacity(); slot++) {
+            if (chunks.valueAt(slot) != null) {
+                keys[chunkCount++] = chunks.keyAt(slot);
+            }
+        }
+        Arrays.sort(keys);
+
+        int paletteSize = indices.size();
+        int indexOffset = indexOffset(paletteSize);
+        long dataOffset = dataOffset(indexOffset, chunkCount);
+        long fileSize = dataOffset + ((long) chunkCount * area << 1);
+        if (fileSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The world is too large for a single world file.");
+        }
+
+        // written next to the file and moved over it, a storage that still maps the old file keeps reading it.
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+            out.putInt(0, MAGIC);
+            out.putShort(4, VERSION);
+            out.put(6, (byte) chunkShift);
+            out.putInt(8, layout.cellWidth);
+            out.putInt(12, layout.cellHeight);
+            out.putInt(16, width);
+            out.putInt(20, height);
+            out.putInt(24, paletteSize);
+            out.putInt(28, chunkCount);
+            for (int i = 0; i < paletteSize; i++) {
+                out.putInt(HEADER_SIZE + (i << 2), palette[0][i]);
+            }
+
+            int tiles = 0;
+            for (int i = 0; i < chunkCount; i++) {
+                short[] cells = chunks.get(keys[i]);
+                int count = 0;
+                for (short cell : cells) {
+                    if (cell != 0) {
+                        count++;
+                    }
+                }
+
+                int data = (int) (dataOffset + ((long) i * area << 1));
+                int entry = indexOffset + i * INDEX_ENTRY_SIZE;
+                out.putLong(entry, keys[i]);
+                out.putInt(entry + 8, count);
+                out.putInt(entry + 12, data);
+
+                out.position(data);
+                out.asShortBuffer().put(cells);
+                tiles += count;
+            }
+            out.putInt(32, tiles);
+            out.force();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static int indexOffset(int paletteSize) {
+        // keep the index 8 byte aligned.
+        return (HEADER_SIZE + (paletteSize << 2) + 7) & ~7;
+    }
+
+    private static long dataOffset(int indexOffset, int chunkCount) {
+        return indexOffset + (long) chunkCount * INDEX_ENTRY_SIZE;
+    }
+
+    @Override
+    public Tile get(int x, int y) {
+        if (!layout.isAligned(x, y)) {
+            return null;
+        }
+
+        int cellX = layout.toCellX(x);
+        int cellY = layout.toCellY(y);
+        int chunk = findChunk(cellX >> chunkShift, cellY >> chunkShift);
+        if (chunk < 0) {
+            return overflow == null ? null : overflow.get(x, y);
+        }
+
+        int cell = buffer.getShort(cellOffset(chunk, cellX, cellY));
+        return cell == 0 ? null : assets.getByID(palette[cell - 1]);
+    }
+
+    @Override
+    public Tile put(int x, int y, Tile tile) {
+        if (tile == null) {
+            return remove(x, y);
+        }
+        checkEditable();
+        layout.checkAligned(x, y);
+
+        int cellX = layout.toCellX(x);
+        int cellY = layout.toCellY(y);
+        int chunk = findChunk(cellX >> chunkShift, cellY >> chunkShift);
+        if (chunk < 0) {
+            return putOverflow(x, y, tile);
+        }
+
+        if (assets.getByID(tile.getID()) == null) {
+            assets.addTile(tile);
+        }
+
+        int offset = cellOffset(chunk, cellX, cellY);
+        int previous = buffer.getShort(offset);
+        buffer.putShort(offset, (short) (paletteIndexOf(tile.getID()) + 1));
+        if (previous == 0) {
+            changeCount(chunk, 1);
+            return null;
+        }
+        return assets.getByID(palette[previous - 1]);
+    }
+
+    private Tile putOverflow(int x, int y, Tile tile) {
+        if (overflow == null) {
+            overflow = new PaletteTileStorage(assets, chunkShift, layout.cellWidth, layout.cellHeight);
+        }
+
+        Tile previous = overflow.put(x, y, tile);
+        if (previous == null) {
+            size++;
+        }
+        return previous;
+    }
+
+    @Override
+    public Tile remove(int x, int y) {
+        if (!layout.isAligned(x, y)) {
+            return null;
+        }
+        checkEditable();
+
+        int cellX = layout.toCellX(x);
+        int cellY = layout.toCellY(y);
+        int chunk = findChunk(cellX >> chunkShift, cellY >> chunkShift);
+        if (chunk < 0) {
+            Tile removed = overflow == null ? null : overflow.remove(x, y);
+            if (removed != null) {
+                size--;
+            }
+            return removed;
+        }
+
+        int offset = cellOffset(chunk, cellX, cellY);
+        int previous = buffer.getShort(offset);
+        if (previous == 0) {
+            return null;
+        }
+
+        buffer.putShort(offset, (short) 0);
+        changeCount(chunk, -1);
+        return assets.getByID(palette[previous - 1]);
+    }
+
+    @Override
+    public void forEach(TileVisitor visitor) {
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            if (countOf(chunk) != 0) {
+                visitChunk(chunk, 0, 0, chunkMask, chunkMask, visitor);
+            }
+        }
+
+        if (overflow != null) {
+            overflow.forEach(visitor);
+        }
+    }
+
+    @Override
+    public void forEachInRegion(int minX, int minY, int maxX, int maxY, TileVisitor visitor) {
+        int minCellX = layout.firstCellX(minX);
+        int minCellY = layout.firstCellY(minY);
+        int maxCellX = layout.toCellX(maxX);
+        int maxCellY = layout.toCellY(maxY);
+        if (minCellX > maxCellX || minCellY > maxCellY) {
+            return;
+        }
+
+        int minChunkX = minCellX >> chunkShift;
+        int minChunkY = minCellY >> chunkShift;
+        int maxChunkX = maxCellX >> chunkShift;
+        int maxChunkY = maxCellY >> chunkShift;
+
+        long area = (long) (maxChunkX - minChunkX + 1) * (maxChunkY - minChunkY + 1);
+        if (area <= chunkCount) {
+            for (int chunkY = minChunkY; chunkY <= maxChunkY; chunkY++) {
+                for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+                    int chunk = findChunk(chunkX, chunkY);
+                    if (chunk >= 0 && countOf(chunk) != 0) {
+                        visitClipped(chunk, chunkX, chunkY, minCellX, minCellY, maxCellX, maxCellY, visitor);
+                    }
+                }
+            }
+        } else {
+            // the region covers more chunks than the file has, checking each of them is cheaper.
+            for (int chunk = 0; chunk < chunkCount; chunk++) {
+                long key = keyOf(chunk);
+                int chunkX = Utilities.unpackX(key);
+                int chunkY = Utilities.unpackY(key);
+                if (countOf(chunk) != 0 && chunkX >= minChunkX && chunkX <= maxChunkX
+                        && chunkY >= minChunkY && chunkY <= maxChunkY) {
+                    visitClipped(chunk, chunkX, chunkY, minCellX, minCellY, maxCellX, maxCellY, visitor);
+                }
+            }
+        }
+
+        if (overflow != null) {
+            overflow.forEachInRegion(minX, minY, maxX, maxY, visitor);
+        }
+    }
+
+    private void visitClipped(int chunk, int chunkX, int chunkY, int minCellX, int minCellY, int maxCellX, int maxCellY,
+                              TileVisitor visitor) {
+        int originX = chunkX << chunkShift;
+        int originY = chunkY << chunkShift;
+        visitChunk(chunk, Math.max(minCellX - originX, 0), Math.max(minCellY - originY, 0),
+                Math.min(maxCellX - originX, chunkMask), Math.min(maxCellY - originY, chunkMask), visitor);
+    }
+
+    private void visitChunk(int chunk, int fromX, int fromY, int toX, int toY, TileVisitor visitor) {
+        long key = keyOf(chunk);
+        int originX = Utilities.unpackX(key) << chunkShift;
+        int originY = Utilities.unpackY(key) << chunkShift;
+        int data = dataOf(chunk);
+        for (int y = fromY; y <= toY; y++) {
+            int row = data + ((y << chunkShift) << 1);
+            for (int x = fromX; x <= toX; x++) {
+                int cell = buffer.getShort(row + (x << 1));
+                if (cell != 0) {
+                    visitor.visit(layout.toKeyX(originX + x), layout.toKeyY(originY + y), assets.getByID(palette[cell - 1]));
+                }
+            }
+        }
+    }
+
+    @Override
+    public int getCellWidth() {
+        return layout.cellWidth;
+    }
+
+    @Override
+    public int getCellHeight() {
+        return layout.cellHeight;
+    }
+
+    @Override
+    public void clear() {
+        checkEditable();
+        int area = 1 << (chunkShift << 1);
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            if (countOf(chunk) != 0) {
+                int data = dataOf(chunk);
+                for (int i = 0; i < area; i++) {
+                    buffer.putShort(data + (i << 1), (short) 0);
+                }
+                buffer.putInt(indexOffset + chunk * INDEX_ENTRY_SIZE + 8, 0);
+            }
+        }
+        if (overflow != null) {
+            overflow.clear();
+        }
+        size = 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the width of the world the file was written from.
+     */
+    public int getWorldWidth() {
+        return worldWidth;
+    }
+
+    /**
+     * Get the height of the world the file was written from.
+     */
+    public int getWorldHeight() {
+        return worldHeight;
+    }
+
+    /**
+     * Get the chunk size as a power of two.
+     */
+    public int getChunkShift() {
+        return chunkShift;
+    }
+
+    /**
+     * Get the amount of chunks in the file.
+     */
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    /**
+     * @return if tiles can be added and removed.
+     */
+    public boolean isEditable() {
+        return editable;
+    }
+
+    /**
+     * Find the chunk in the index, a binary search over the sorted keys.
+     *
+     * @return the index of the chunk, or -1 if the file doesn't have it.
+     */
+    private int findChunk(int chunkX, int chunkY) {
+        long key = Utilities.packCoordinates(chunkX, chunkY);
+        if (lastChunk >= 0 && keyOf(lastChunk) == key) {
+            return lastChunk;
+        }
+
+        int low = 0;
+        int high = chunkCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long current = keyOf(middle);
+            if (current < key) {
+                low = middle + 1;
+            } else if (current > key) {
+                high = middle - 1;
+            } else {
+                lastChunk = middle;
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    private long keyOf(int chunk) {
+        return buffer.getLong(indexOffset + chunk * INDEX_ENTRY_SIZE);
+    }
+
+    private int countOf(int chunk) {
+        return buffer.getInt(indexOffset + chunk * INDEX_ENTRY_SIZE + 8);
+    }
+
+    private int dataOf(int chunk) {
+        return buffer.getInt(indexOffset + chunk * INDEX_ENTRY_SIZE + 12);
+    }
+
+    private int cellOffset(int chunk, int cellX, int cellY) {
+        return dataOf(chunk) + ((((cellY & chunkMask) << chunkShift) | (cellX & chunkMask)) << 1);
+    }
+
+    private void changeCount(int chunk, int change) {
+        int entry = indexOffset + chunk * INDEX_ENTRY_SIZE + 8;
+        buffer.putInt(entry, buffer.getInt(entry) + change);
+        size += change;
+    }
+
+    /**
+     * Get the palette index of the tile ID, adding it to the palette if it's new.
+     */
+    private int paletteIndexOf(int ID) {
+        if (paletteIndices == null) {
+            paletteIndices = new HashMap<>();
+            for (int i = 0; i < paletteSize; i++) {
+                paletteIndices.putIfAbsent(palette[i], i);
+            }
+        }
+
+        Integer index = paletteIndices.get(ID);
+        if (index != null) {
+            return index;
+        }
+        if (paletteSize == Short.MAX_VALUE) {
+            throw new IllegalArgumentException("The palette can't hold more than " + Short.MAX_VALUE + " tile IDs.");
+        }
+        if (paletteSize == palette.length) {
+            palette = Arrays.copyOf(palette, Math.max(16, paletteSize << 1));
+        }
+        palette[paletteSize] = ID;
+        paletteIndices.put(ID, paletteSize);
+        return paletteSize++;
+    }
+
+    private void checkEditable() {
+        if (!editable) {
+            throw new UnsupportedOperationException("The world file was opened read only.");
+        }
+    }
+}
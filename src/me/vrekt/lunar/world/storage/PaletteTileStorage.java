@@ -0,0 +1,190 @@
+package me.vrekt.lunar.world.storage;
+
+import me.vrekt.lunar.asset.AssetManager;
+import me.vrekt.lunar.tile.Tile;
+
+/**
+ * Stores a short tile ID per cell instead of a tile reference, the ID is resolved through an
+ * {@link AssetManager} to a single shared tile (the prototype).
+ * Each cell costs two bytes, and since the world never writes to the prototypes they can be
+ * read from any thread. The position of a tile is the key it was looked up with, not its own X and Y.
+ * <p>
+ * Tiles put into this storage must have an ID between 0 and {@link AssetManager#MAX_PALETTE_ID}.
+ * A tile whose ID isn't known to the AssetManager yet is added to it. If the AssetManager already has a
+ * different tile with the same ID that tile is the one that will be returned.
+ */
+public class PaletteTileStorage extends AbstractChunkStorage<PaletteTileStorage.PaletteChunk> {
+
+    private final AssetManager assets;
+
+    /**
+     * Initialize the storage with 16x16 chunks.
+     *
+     * @param assets the AssetManager the tile IDs are resolved through.
+     */
+    public PaletteTileStorage(AssetManager assets) {
+        this(assets, ChunkedTileStorage.DEFAULT_CHUNK_SHIFT);
+    }
+
+    /**
+     * Initialize the storage.
+     *
+     * @param assets     the AssetManager the tile IDs are resolved through.
+     * @param chunkShift the chunk size as a power of two, a shift of 4 is a 16x16 chunk.
+     */
+    public PaletteTileStorage(AssetManager assets, int chunkShift) {
+        this(assets, chunkShift, 1, 1);
+    }
+
+    /**
+     * Initialize the storage.
+     *
+     * @param assets     the AssetManager the tile IDs are resolved through.
+     * @param chunkShift the chunk size as a power of two, a shift of 4 is a 16x16 chunk.
+     * @param cellWidth  the distance between tile keys on the X axis, for example the tile width.
+     * @param cellHeight the distance between tile keys on the Y axis, for example the tile height.
+     */
+    public PaletteTileStorage(AssetManager assets, int chunkShift, int cellWidth, int cellHeight) {
+        super(chunkShift, cellWidth, cellHeight);
+        this.assets = assets;
+    }
+
+    @Override
+    public Tile get(int x, int y) {
+        int ID = getID(x, y);
+        return ID < 0 ? null : assets.getByID(ID);
+    }
+
+    /**
+     * Get the ID of the tile at the X and Y, or -1 if there is none.
+     */
+    public int getID(int x, int y) {
+        if (!layout.isAligned(x, y)) {
+            return -1;
+        }
+
+        int cellX = layout.toCellX(x);
+        int cellY = layout.toCellY(y);
+        PaletteChunk chunk = getChunk(cellX >> chunkShift, cellY >> chunkShift);
+        return chunk == null ? -1 : chunk.cells[indexOf(cellX, cellY)] - 1;
+    }
+
+    @Override
+    public Tile put(int x, int y, Tile tile) {
+        if (tile == null) {
+            return remove(x, y);
+        }
+
+        int ID = tile.getID();
+        if (ID < 0 || ID > AssetManager.MAX_PALETTE_ID) {
+            throw new IllegalArgumentException("Tile ID " + ID + " can't be stored in a palette.");
+        }
+        if (assets.getByID(ID) == null) {
+            assets.addTile(tile);
+        }
+
+        int previous = putID(x, y, ID);
+        return previous < 0 ? null : assets.getByID(previous);
+    }
+
+    /**
+     * Put the tile ID at the X and Y. The ID must already be known to the AssetManager.
+     *
+     * @return the ID that was replaced or -1.
+     */
+    public int putID(int x, int y, int ID) {
+        layout.checkAligned(x, y);
+
+        int cellX = layout.toCellX(x);
+        int cellY = layout.toCellY(y);
+        PaletteChunk chunk = getOrCreateChunk(cellX >> chunkShift, cellY >> chunkShift);
+
+        int index = indexOf(cellX, cellY);
+        int previous = chunk.cells[index] - 1;
+        chunk.cells[index] = (short) (ID + 1);
+        chunk.modified = true;
+        if (previous < 0) {
+            chunk.count++;
+            size++;
+        }
+        return previous;
+    }
+
+    @Override
+    public Tile remove(int x, int y) {
+        if (!layout.isAligned(x, y)) {
+            return null;
+        }
+
+        int cellX = layout.toCellX(x);
+        int cellY = layout.toCellY(y);
+        PaletteChunk chunk = getChunk(cellX >> chunkShift, cellY >> chunkShift);
+        if (chunk == null) {
+            return null;
+        }
+
+        int index = indexOf(cellX, cellY);
+        int previous = chunk.cells[index] - 1;
+        if (previous < 0) {
+            return null;
+        }
+
+        chunk.cells[index] = 0;
+        chunk.modified = true;
+        chunk.count--;
+        size--;
+        return assets.getByID(previous);
+    }
+
+    /**
+     * Get the AssetManager the tile IDs are resolved through.
+     */
+    public AssetManager getAssets() {
+        return assets;
+    }
+
+    @Override
+    PaletteChunk createChunk(int chunkX, int chunkY, int area) {
+        return new PaletteChunk(chunkX, chunkY, area);
+    }
+
+    @Override
+    void visitChunk(PaletteChunk chunk, int fromX, int fromY, int toX, int toY, TileVisitor visitor) {
+        int originX = chunk.chunkX << chunkShift;
+        int originY = chunk.chunkY << chunkShift;
+        short[] cells = chunk.cells;
+        for (int y = fromY; y <= toY; y++) {
+            int row = y << chunkShift;
+            for (int x = fromX; x <= toX; x++) {
+                int cell = cells[row | x];
+                if (cell != 0) {
+                    visitor.visit(layout.toKeyX(originX + x), layout.toKeyY(originY + y), assets.getByID(cell - 1));
+                }
+            }
+        }
+    }
+
+    /**
+     * A dense square of tile IDs, stored as ID + 1 so zero is an empty cell.
+     */
+    static final class PaletteChunk extends AbstractChunkStorage.Chunk {
+        final short[] cells;
+
+        // if a cell changed since the chunk was created or last saved.
+        boolean modified;
+
+        private PaletteChunk(int chunkX, int chunkY, int area) {
+            this(chunkX, chunkY, new short[area]);
+        }
+
+        PaletteChunk(int chunkX, int chunkY, short[] cells) {
+            super(chunkX, chunkY);
+            this.cells = cells;
+            for (short cell : cells) {
+                if (cell != 0) {
+                    count++;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package me.vrekt.lunar.world.storage;
+
+import me.vrekt.lunar.tile.Tile;
+import me.vrekt.lunar.utilities.LongObjectMap;
+import me.vrekt.lunar.utilities.Utilities;
+
+/**
+ * Stores tiles in an open-addressing hash table keyed by the X and Y packed into a long.
+ * Memory is proportional to the amount of tiles rather than the area they cover,
+ * which makes this the better choice for huge worlds that are mostly empty.
+ */
+public class SparseTileStorage implements TileStorage {
+
+    private final LongObjectMap<Tile> tiles;
+    private final CellLayout layout;
+
+    /**
+     * Initialize the storage.
+     */
+    public SparseTileStorage() {
+        this(16);
+    }
+
+    /**
+     * Initialize the storage.
+     *
+     * @param expected the amount of tiles expected, avoids rehashing while the world is built.
+     */
+    public SparseTileStorage(int expected) {
+        this(expected, 1, 1);
+    }
+
+    /**
+     * Initialize the storage.
+     *
+     * @param expected   the amount of tiles expected, avoids rehashing while the world is built.
+     * @param cellWidth  the distance between tile keys on the X axis, for example the tile width.
+     * @param cellHeight the distance between tile keys on the Y axis, for example the tile height.
+     */
+    public SparseTileStorage(int expected, int cellWidth, int cellHeight) {
+        tiles = new LongObjectMap<>(expected);
+        layout = new CellLayout(cellWidth, cellHeight);
+    }
+
+    @Override
+    public Tile get(int x, int y) {
+        return tiles.get(Utilities.packCoordinates(x, y));
+    }
+
+    @Override
+    public Tile put(int x, int y, Tile tile) {
+        if (tile == null) {
+            return remove(x, y);
+        }
+        layout.checkAligned(x, y);
+        return tiles.put(Utilities.packCoordinates(x, y), tile);
+    }
+
+    @Override
+    public Tile remove(int x, int y) {
+        return tiles.remove(Utilities.packCoordinates(x, y));
+    }
+
+    @Override
+    public void forEach(TileVisitor visitor) {
+        for (int i = 0; i < tiles.capacity(); i++) {
+            Tile tile = tiles.valueAt(i);
+            if (tile != null) {
+                long key = tiles.keyAt(i);
+                visitor.visit(Utilities.unpackX(key), Utilities.unpackY(key), tile);
+            }
+        }
+    }
+
+    @Override
+    public void forEachInRegion(int minX, int minY, int maxX, int maxY, TileVisitor visitor) {
+        int minCellX = layout.firstCellX(minX);
+        int minCellY = layout.firstCellY(minY);
+        int maxCellX = layout.toCellX(maxX);
+        int maxCellY = layout.toCellY(maxY);
+        if (minCellX > maxCellX || minCellY > maxCellY) {
+            return;
+        }
+
+        long cells = (long) (maxCellX - minCellX + 1) * (maxCellY - minCellY + 1);
+        if (cells <= tiles.size()) {
+            for (int cellY = minCellY; cellY <= maxCellY; cellY++) {
+                int y = layout.toKeyY(cellY);
+                for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+                    int x = layout.toKeyX(cellX);
+                    Tile tile = tiles.get(Utilities.packCoordinates(x, y));
+                    if (tile != null) {
+                        visitor.visit(x, y, tile);
+                    }
+                }
+            }
+            return;
+        }
+
+        // the region holds more cells than there are tiles, filtering every tile is cheaper.
+        for (int i = 0; i < tiles.capacity(); i++) {
+            Tile tile = tiles.valueAt(i);
+            if (tile == null) {
+                continue;
+            }
+
+            long key = tiles.keyAt(i);
+            int x = Utilities.unpackX(key);
+            int y = Utilities.unpackY(key);
+            if (x >= minX && x <= maxX && y >= minY && y <= maxY) {
+                visitor.visit(x, y, tile);
+            }
+        }
+    }
+
+    @Override
+    public int getCellWidth() {
+        return layout.cellWidth;
+    }
+
+    @Override
+    public int getCellHeight() {
+        return layout.cellHeight;
+    }
+
+    @Override
+    public void clear() {
+        tiles.clear();
+    }
+
+    @Override
+    public int size() {
+        return tiles.size();
+    }
+}
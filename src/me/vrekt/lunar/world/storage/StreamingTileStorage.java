@@ -0,0 +1,578 @@
+package me.vrekt.lunar.world.storage;
+
+import me.vrekt.lunar.asset.AssetManager;
+import me.vrekt.lunar.camera.Camera;
+import me.vrekt.lunar.entity.Entity;
+import me.vrekt.lunar.tile.Tile;
+import me.vrekt.lunar.utilities.LongObjectMap;
+import me.vrekt.lunar.utilities.Utilities;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/**
+ * A palette storage that only keeps the chunks near its focus points in memory, for worlds larger than memory.
+ * Chunks are read from a {@link ChunkSource} on background threads as a focus, like the camera or the player,
+ * approaches them. Chunks far from every focus are unloaded, and written back first if they were modified.
+ * <p>
+ * Call {@link #update()} once per tick on the game thread, {@link me.vrekt.lunar.world.World} does this for its
+ * streaming layers. It installs the chunks that finished loading, requests the chunks around each focus and
+ * ahead of the direction it is moving in, and unloads the rest.
+ * Reading a tile never blocks, a tile in a chunk that isn't loaded yet reads as empty. Adding or removing a tile
+ * in a chunk that isn't loaded reads the chunk on the game thread, so keep edits near a focus.
+ * <p>
+ * {@link #size()}, {@link #forEach(TileVisitor)} and region queries only see the loaded chunks.
+ * Every tile ID in the source must be known to the AssetManager.
+ */
+public class StreamingTileStorage extends PaletteTileStorage {
+
+    /**
+     * The default amount of ticks of movement chunks are requested ahead of a focus.
+     */
+    public static final int DEFAULT_LOOKAHEAD = 30;
+
+    private static final Object FAILED = new Object();
+
+    private final ChunkSource source;
+    private final int loadRadius;
+    private int lookahead = DEFAULT_LOOKAHEAD;
+
+    // reads run in parallel, writes run one at a time so a chunk is never written out of order.
+    private final ExecutorService readers, writer;
+    private final Queue<Completion> completions = new ConcurrentLinkedQueue<>();
+
+    // chunks that were requested but not installed, the Completion of their read or FAILED.
+    // a read is only installed while it is still the one pending, a forgotten read of the same chunk is dropped.
+    private final LongObjectMap<Object> pending = new LongObjectMap<>();
+    // unloaded chunks whose write hasn't finished, these are read from here instead of the source.
+    private final LongObjectMap<short[]> unwritten = new LongObjectMap<>();
+    private long[] staleKeys = new long[16];
+
+    private final List<Focus> focuses = new ArrayList<>();
+    private ChunkListener listener;
+
+    private int pendingWrites;
+    private long loads, blockingLoads, unloads, writes;
+    private boolean closed;
+
+    /**
+     * Initialize the storage with 16x16 chunks and two reading threads.
+     *
+     * @param assets     the AssetManager the tile IDs are resolved through.
+     * @param source     where chunks are read from and written to.
+     * @param cellWidth  the distance between tile keys on the X axis, for example the tile width.
+     * @param cellHeight the distance between tile keys on the Y axis, for example the tile height.
+     * @param loadRadius how many chunks around a focus are kept loaded.
+     */
+    public StreamingTileStorage(AssetManager assets, ChunkSource source, int cellWidth, int cellHeight, int loadRadius) {
+        this(assets, source, ChunkedTileStorage.DEFAULT_CHUNK_SHIFT, cellWidth, cellHeight, loadRadius, 2);
+    }
+
+    /**
+     * Initialize the storage.
+     *
+     * @param assets      the AssetManager the tile IDs are resolved through.
+     * @param source      where chunks are read from and written to.
+     * @param chunkShift  the chunk size as a power of two, a shift of 4 is a 16x16 chunk.
+     * @param cellWidth   the distance between tile keys on the X axis, for example the tile width.
+     * @param cellHeight  the distance between tile keys on the Y axis, for example the tile height.
+     * @param loadRadius  how many chunks around a focus are kept loaded.
+     * @param readThreads the amount of threads reading chunks.
+     */
+    public StreamingTileStorage(AssetManager assets, ChunkSource source, int chunkShift, int cellWidth, int cellHeight,
+                                int loadRadius, int readThreads) {
+        super(assets, chunkShift, cellWidth, cellHeight);
+        if (loadRadius < 0 || readThreads < 1) {
+            throw new IllegalArgumentException("loadRadius can't be negative and readThreads must be positive.");
+        }
+
+        this.source = source;
+        this.loadRadius = loadRadius;
+        this.readers = Executors.newFixedThreadPool(readThreads, task -> createThread(task, "Lunar-ChunkReader"));
+        this.writer = Executors.newSingleThreadExecutor(task -> createThread(task, "Lunar-ChunkWriter"));
+    }
+
+    private static Thread createThread(Runnable task, String name) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Keep the chunks the camera can see loaded, measured from its center.
+     */
+    public void addFocus(Camera camera) {
+        addFocus(camera, () -> camera.getCamX() + camera.getWidth() / 2, () -> camera.getCamY() + camera.getHeight() / 2);
+    }
+
+    /**
+     * Keep the chunks around the entity loaded.
+     */
+    public void addFocus(Entity entity) {
+        addFocus(entity, entity::getX, entity::getY);
+    }
+
+    /**
+     * Keep the chunks around a position loaded, the position is read every update.
+     *
+     * @param owner what the focus belongs to, used to remove it.
+     * @param x     the X of the focus in tile keys.
+     * @param y     the Y of the focus in tile keys.
+     */
+    public void addFocus(Object owner, IntSupplier x, IntSupplier y) {
+        removeFocus(owner);
+        focuses.add(new Focus(owner, x, y));
+    }
+
+    /**
+     * Remove the focus, its chunks are unloaded on the next update unless another focus is close.
+     */
+    public void removeFocus(Object owner) {
+        focuses.removeIf(focus -> focus.owner == owner);
+    }
+
+    /**
+     * Set the listener told about chunks loading and unloading.
+     */
+    public void setChunkListener(ChunkListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Set how many ticks of movement chunks are requested ahead of a focus, zero only loads around it.
+     */
+    public void setLookahead(int ticks) {
+        if (ticks < 0) {
+            throw new IllegalArgumentException("The lookahead can't be negative.");
+        }
+        this.lookahead = ticks;
+    }
+
+    /**
+     * Install finished loads, request chunks around and ahead of every focus and unload the chunks far from all of them.
+     * Call once per tick from the game thread.
+     */
+    public void update() {
+        drainCompletions();
+        if (closed) {
+            return;
+        }
+
+        for (Focus focus : focuses) {
+            focus.refresh();
+        }
+
+        // around every focus first, then ahead of them.
+        for (Focus focus : focuses) {
+            requestAround(focus.chunkX, focus.chunkY);
+        }
+        for (Focus focus : focuses) {
+            if (focus.aheadX != focus.chunkX || focus.aheadY != focus.chunkY) {
+                requestAround(focus.aheadX, focus.aheadY);
+            }
+        }
+
+        unloadDistant();
+    }
+
+    /**
+     * Write every modified chunk in the background, chunks stay loaded.
+     */
+    public void flush() {
+        for (int i = 0; i < getChunkCount(); i++) {
+            PaletteChunk chunk = chunkAt(i);
+            if (chunk.modified) {
+                chunk.modified = false;
+                write(chunk.chunkX, chunk.chunkY, chunk.cells.clone());
+            }
+        }
+    }
+
+    /**
+     * Write every modified chunk and stop the background threads, blocks until the writes are done.
+     * The loaded chunks can still be read afterwards but nothing is streamed anymore.
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+
+        flush();
+        closed = true;
+        readers.shutdown();
+        writer.shutdown();
+        try {
+            readers.awaitTermination(1, TimeUnit.MINUTES);
+            writer.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        drainCompletions();
+    }
+
+    @Override
+    public int putID(int x, int y, int ID) {
+        ensureLoaded(x, y);
+        return super.putID(x, y, ID);
+    }
+
+    @Override
+    public Tile remove(int x, int y) {
+        ensureLoaded(x, y);
+        return super.remove(x, y);
+    }
+
+    /**
+     * Unload every chunk without writing it and forget pending loads, nothing in the source is removed.
+     */
+    @Override
+    public void clear() {
+        super.clear();
+        pending.clear();
+    }
+
+    /**
+     * Load the chunk holding the key on the game thread if it isn't loaded, so it can be edited.
+     */
+    private void ensureLoaded(int x, int y) {
+        if (!layout.isAligned(x, y)) {
+            return;
+        }
+
+        int chunkX = layout.toCellX(x) >> chunkShift;
+        int chunkY = layout.toCellY(y) >> chunkShift;
+        if (getChunk(chunkX, chunkY) != null) {
+            return;
+        }
+
+        long key = Utilities.packCoordinates(chunkX, chunkY);
+        short[] cells = unwritten.get(key);
+        boolean modified = cells != null;
+        if (modified) {
+            cells = cells.clone();
+        } else {
+            try {
+                cells = readChunk(chunkX, chunkY);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to load chunk (" + chunkX + ", " + chunkY + ").", e);
+            }
+            blockingLoads++;
+        }
+
+        pending.remove(key);
+        install(chunkX, chunkY, cells, modified);
+    }
+
+    private void requestAround(int centerX, int centerY) {
+        // ring by ring so the closest chunks are read first.
+        request(centerX, centerY);
+        for (int ring = 1; ring <= loadRadius; ring++) {
+            for (int i = -ring; i <= ring; i++) {
+                request(centerX + i, centerY - ring);
+                request(centerX + i, centerY + ring);
+            }
+            for (int i = -ring + 1; i < ring; i++) {
+                request(centerX - ring, centerY + i);
+                request(centerX + ring, centerY + i);
+            }
+        }
+    }
+
+    private void request(int chunkX, int chunkY) {
+        if (getChunk(chunkX, chunkY) != null) {
+            return;
+        }
+
+        long key = Utilities.packCoordinates(chunkX, chunkY);
+        if (pending.containsKey(key)) {
+            return;
+        }
+
+        short[] cells = unwritten.get(key);
+        if (cells != null) {
+            // the chunk was unloaded moments ago and is still being written.
+            install(chunkX, chunkY, cells.clone(), true);
+            return;
+        }
+
+        Completion completion = new Completion(chunkX, chunkY, false);
+        pending.put(key, completion);
+        readers.execute(() -> {
+            try {
+                completion.cells = readChunk(chunkX, chunkY);
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+                completion.failed = true;
+            }
+            completions.add(completion);
+        });
+    }
+
+    private short[] readChunk(int chunkX, int chunkY) throws IOException {
+        int area = getChunkArea();
+        short[] cells = source.read(chunkX, chunkY, area);
+        if (cells == null) {
+            return new short[area];
+        }
+        if (cells.length != area) {
+            throw new IOException("Chunk (" + chunkX + ", " + chunkY + ") has " + cells.length
+                    + " cells, expected " + area + ".");
+        }
+        return cells;
+    }
+
+    private void install(int chunkX, int chunkY, short[] cells, boolean modified) {
+        PaletteChunk chunk = new PaletteChunk(chunkX, chunkY, cells);
+        chunk.modified = modified;
+        installChunk(chunk);
+        loads++;
+
+        if (listener != null) {
+            listener.chunkLoaded(minKeyX(chunkX), minKeyY(chunkY), minKeyX(chunkX + 1) - layout.cellWidth,
+                    minKeyY(chunkY + 1) - layout.cellHeight);
+        }
+    }
+
+    private void unloadDistant() {
+        int keep = loadRadius + 1;
+        // backwards, removing a chunk moves the last chunk into its place.
+        for (int i = getChunkCount() - 1; i >= 0; i--) {
+            PaletteChunk chunk = chunkAt(i);
+            if (!isWanted(chunk.chunkX, chunk.chunkY, keep)) {
+                unload(chunk);
+            }
+        }
+
+        // forget loads that are no longer wanted, their results are dropped when they arrive.
+        int stale = 0;
+        for (int slot = 0; slot < pending.capacity(); slot++) {
+            if (pending.valueAt(slot) != null) {
+                long key = pending.keyAt(slot);
+                if (!isWanted(Utilities.unpackX(key), Utilities.unpackY(key), keep)) {
+                    if (stale == staleKeys.length) {
+                        staleKeys = Arrays.copyOf(staleKeys, stale << 1);
+                    }
+                    staleKeys[stale++] = key;
+                }
+            }
+        }
+        for (int i = 0; i < stale; i++) {
+            pending.remove(staleKeys[i]);
+        }
+    }
+
+    private boolean isWanted(int chunkX, int chunkY, int radius) {
+        for (Focus focus : focuses) {
+            if (Math.max(Math.abs(chunkX - focus.chunkX), Math.abs(chunkY - focus.chunkY)) <= radius
+                    || Math.max(Math.abs(chunkX - focus.aheadX), Math.abs(chunkY - focus.aheadY)) <= radius) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void unload(PaletteChunk chunk) {
+        int chunkX = chunk.chunkX;
+        int chunkY = chunk.chunkY;
+        if (listener != null) {
+            listener.chunkUnloading(minKeyX(chunkX), minKeyY(chunkY), minKeyX(chunkX + 1) - layout.cellWidth,
+                    minKeyY(chunkY + 1) - layout.cellHeight);
+        }
+
+        removeChunk(chunkX, chunkY);
+        unloads++;
+        if (chunk.modified) {
+            // the chunk is no longer in the storage so its cells can be handed over without a copy.
+            write(chunkX, chunkY, chunk.cells);
+        }
+    }
+
+    private void write(int chunkX, int chunkY, short[] cells) {
+        if (closed) {
+            // the background threads are gone, write on this thread.
+            try {
+                source.write(chunkX, chunkY, cells);
+                writes++;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to write chunk (" + chunkX + ", " + chunkY + ").", e);
+            }
+            return;
+        }
+
+        unwritten.put(Utilities.packCoordinates(chunkX, chunkY), cells);
+        pendingWrites++;
+        writer.execute(() -> {
+            Completion completion = new Completion(chunkX, chunkY, true);
+            completion.cells = cells;
+            try {
+                source.write(chunkX, chunkY, cells);
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+                completion.failed = true;
+            }
+            completions.add(completion);
+        });
+    }
+
+    private void drainCompletions() {
+        Completion completion;
+        while ((completion = completions.poll()) != null) {
+            long key = Utilities.packCoordinates(completion.chunkX, completion.chunkY);
+            if (completion.write) {
+                pendingWrites--;
+                // a failed write keeps the cells in memory so they aren't lost.
+                if (!completion.failed) {
+                    writes++;
+                    if (unwritten.get(key) == completion.cells) {
+                        unwritten.remove(key);
+                    }
+                }
+                continue;
+            }
+
+            // the load was forgotten, or the chunk was loaded on the game thread or requested again in the meantime.
+            if (pending.get(key) != completion) {
+                continue;
+            }
+
+            if (completion.failed) {
+                // not requested again until the chunk leaves the load radius and comes back.
+                pending.put(key, FAILED);
+            } else {
+                pending.remove(key);
+                install(completion.chunkX, completion.chunkY, completion.cells, false);
+            }
+        }
+    }
+
+    private int minKeyX(int chunkX) {
+        return layout.toKeyX(chunkX << chunkShift);
+    }
+
+    private int minKeyY(int chunkY) {
+        return layout.toKeyY(chunkY << chunkShift);
+    }
+
+    /**
+     * Get the ChunkSource.
+     */
+    public ChunkSource getSource() {
+        return source;
+    }
+
+    /**
+     * Get how many chunks around a focus are kept loaded.
+     */
+    public int getLoadRadius() {
+        return loadRadius;
+    }
+
+    /**
+     * Get the amount of chunks requested but not loaded yet.
+     */
+    public int getPendingLoads() {
+        return pending.size();
+    }
+
+    /**
+     * Get the amount of chunk writes that haven't finished.
+     */
+    public int getPendingWrites() {
+        return pendingWrites;
+    }
+
+    /**
+     * Get the amount of chunks loaded.
+     */
+    public long getLoads() {
+        return loads;
+    }
+
+    /**
+     * Get the amount of chunks the game thread had to read itself because an edit hit a chunk that wasn't loaded.
+     */
+    public long getBlockingLoads() {
+        return blockingLoads;
+    }
+
+    /**
+     * Get the amount of chunks unloaded.
+     */
+    public long getUnloads() {
+        return unloads;
+    }
+
+    /**
+     * Get the amount of chunks written.
+     */
+    public long getWrites() {
+        return writes;
+    }
+
+    /**
+     * A load or write that finished on a background thread, handed to the game thread.
+     */
+    private static final class Completion {
+        private final int chunkX, chunkY;
+        private final boolean write;
+        private short[] cells;
+        private boolean failed;
+
+        private Completion(int chunkX, int chunkY, boolean write) {
+            this.chunkX = chunkX;
+            this.chunkY = chunkY;
+            this.write = write;
+        }
+    }
+
+    /**
+     * A position chunks are loaded around, it tracks its movement to load ahead of it.
+     */
+    private final class Focus {
+        private final Object owner;
+        private final IntSupplier x, y;
+
+        private boolean started;
+        private int lastX, lastY;
+        private int chunkX, chunkY, aheadX, aheadY;
+
+        private Focus(Object owner, IntSupplier x, IntSupplier y) {
+            this.owner = owner;
+            this.x = x;
+            this.y = y;
+        }
+
+        private void refresh() {
+            int currentX = x.getAsInt();
+            int currentY = y.getAsInt();
+            int velocityX = started ? currentX - lastX : 0;
+            int velocityY = started ? currentY - lastY : 0;
+            started = true;
+            lastX = currentX;
+            lastY = currentY;
+
+            chunkX = layout.toCellX(currentX) >> chunkShift;
+            chunkY = layout.toCellY(currentY) >> chunkShift;
+
+            // a jump like a teleport shouldn't send requests across the world, so the distance is capped.
+            int reach = loadRadius * 2 + 1;
+            int predictedX = layout.toCellX((int) clamp(currentX + (long) velocityX * lookahead)) >> chunkShift;
+            int predictedY = layout.toCellY((int) clamp(currentY + (long) velocityY * lookahead)) >> chunkShift;
+            aheadX = chunkX + Math.max(-reach, Math.min(reach, predictedX - chunkX));
+            aheadY = chunkY + Math.max(-reach, Math.min(reach, predictedY - chunkY));
+        }
+
+        private long clamp(long value) {
+            return Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, value));
+        }
+    }
+}
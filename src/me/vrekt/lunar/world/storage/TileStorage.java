@@ -0,0 +1,60 @@
+package me.vrekt.lunar.world.storage;
+
+import me.vrekt.lunar.tile.Tile;
+
+/**
+ * The backing store for the tiles of a world, tiles are keyed by their X and Y.
+ */
+public interface TileStorage {
+
+    /**
+     * Get the tile at the X and Y, or null if there is none.
+     */
+    Tile get(int x, int y);
+
+    /**
+     * Put the tile at the X and Y, replacing any tile already there.
+     *
+     * @return the tile that was replaced or null.
+     */
+    Tile put(int x, int y, Tile tile);
+
+    /**
+     * Remove the tile at the X and Y.
+     *
+     * @return the tile that was removed or null.
+     */
+    Tile remove(int x, int y);
+
+    /**
+     * Visit every tile in this storage.
+     */
+    void forEach(TileVisitor visitor);
+
+    /**
+     * Visit every tile with an X between minX and maxX and a Y between minY and maxY, inclusive.
+     * Only the part of the storage that overlaps the region is visited.
+     */
+    void forEachInRegion(int minX, int minY, int maxX, int maxY, TileVisitor visitor);
+
+    /**
+     * Get the distance between tile keys on the X axis, 1 unless the storage was given a cell size.
+     */
+    int getCellWidth();
+
+    /**
+     * Get the distance between tile keys on the Y axis, 1 unless the storage was given a cell size.
+     */
+    int getCellHeight();
+
+    /**
+     * Remove every tile.
+     */
+    void clear();
+
+    /**
+     * Get the amount of tiles stored.
+     */
+    int size();
+
+}
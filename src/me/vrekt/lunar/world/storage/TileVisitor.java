@@ -0,0 +1,16 @@
+package me.vrekt.lunar.world.storage;
+
+import me.vrekt.lunar.tile.Tile;
+
+/**
+ * Receives tiles while iterating a {@link TileStorage}.
+ */
+@FunctionalInterface
+public interface TileVisitor {
+
+    /**
+     * Visit the tile stored at the X and Y.
+     */
+    void visit(int x, int y, Tile tile);
+
+}
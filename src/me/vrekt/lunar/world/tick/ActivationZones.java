@@ -0,0 +1,321 @@
+package me.vrekt.lunar.world.tick;
+
+import me.vrekt.lunar.camera.Camera;
+import me.vrekt.lunar.entity.Entity;
+import me.vrekt.lunar.world.World;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntSupplier;
+
+/**
+ * Only updates the entities near a focus, like the camera or the player, every tick.
+ * Entities within the active distance of a focus update every tick, entities within the reduced distance update
+ * every few ticks with the ticks that passed, and entities further away sleep and cost nothing.
+ * Entities are found with the entity index of the world, so the cost depends on how many entities are near a focus.
+ * <p>
+ * A sleeping entity wakes when a focus comes close or when {@link #wake(Entity)} is called, for example by an event.
+ * A woken entity updates every tick for a while and wakes the entities near it too.
+ * Distances are measured on each axis, from the edges of a camera or from a point.
+ */
+public class ActivationZones {
+
+    /**
+     * The default distance entities update every tick within.
+     */
+    public static final int DEFAULT_ACTIVE_DISTANCE = 256;
+
+    /**
+     * The default distance entities update at a reduced rate within.
+     */
+    public static final int DEFAULT_REDUCED_DISTANCE = 1024;
+
+    /**
+     * The default amount of ticks between updates of entities at a reduced rate.
+     */
+    public static final int DEFAULT_REDUCED_INTERVAL = 8;
+
+    /**
+     * The default amount of ticks a woken entity stays awake.
+     */
+    public static final int DEFAULT_WAKE_TICKS = 60;
+
+    private final List<Focus> focuses = new ArrayList<>();
+    private int activeDistance = DEFAULT_ACTIVE_DISTANCE;
+    private int reducedDistance = DEFAULT_REDUCED_DISTANCE;
+    private int reducedInterval = DEFAULT_REDUCED_INTERVAL;
+    private int wakeTicks = DEFAULT_WAKE_TICKS;
+    private int wakeDistance = 64;
+    private int maxElapsedTicks = 60;
+
+    // woken entities and the ticks they stay awake for, negative for entities woken by a neighbour.
+    private final Map<Entity, int[]> woken = new IdentityHashMap<>();
+    private final List<Entity> wokenOrder = new ArrayList<>();
+
+    private final List<Entity> query = new ArrayList<>();
+    private final List<Entity> neighbours = new ArrayList<>();
+    private final Set<Entity> throttled = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private long tick;
+    private int activeCount, reducedCount, throttledCount, sleepingCount, wokenCount;
+
+    /**
+     * Keep the entities the camera can see, and the entities within the active distance of its edges, active.
+     */
+    public void addFocus(Camera camera) {
+        addFocus(camera, camera::getCamX, camera::getCamY, camera::getWidth, camera::getHeight);
+    }
+
+    /**
+     * Keep the entities near the entity active.
+     */
+    public void addFocus(Entity entity) {
+        addFocus(entity, entity::getX, entity::getY, entity::getWidth, entity::getHeight);
+    }
+
+    /**
+     * Keep the entities near a rectangle active.
+     *
+     * @param owner what the focus belongs to, used to remove it.
+     */
+    public void addFocus(Object owner, IntSupplier x, IntSupplier y, IntSupplier width, IntSupplier height) {
+        removeFocus(owner);
+        focuses.add(new Focus(owner, x, y, width, height));
+    }
+
+    /**
+     * Remove the focus, the entities near it sleep unless another focus is close.
+     */
+    public void removeFocus(Object owner) {
+        focuses.removeIf(focus -> focus.owner == owner);
+    }
+
+    /**
+     * Set the distances from a focus entities update every tick and at a reduced rate within.
+     */
+    public void setDistances(int activeDistance, int reducedDistance) {
+        if (activeDistance < 0 || reducedDistance < activeDistance) {
+            throw new IllegalArgumentException("The reduced distance can't be less than the active distance.");
+        }
+        this.activeDistance = activeDistance;
+        this.reducedDistance = reducedDistance;
+    }
+
+    /**
+     * Set the amount of ticks between updates of entities at a reduced rate.
+     */
+    public void setReducedInterval(int reducedInterval) {
+        if (reducedInterval < 1) {
+            throw new IllegalArgumentException("The interval must be at least one tick.");
+        }
+        this.reducedInterval = reducedInterval;
+    }
+
+    /**
+     * Set how long woken entities stay awake and the distance they wake their neighbours within.
+     */
+    public void setWaking(int wakeTicks, int wakeDistance) {
+        if (wakeTicks < 1 || wakeDistance < 0) {
+            throw new IllegalArgumentException("Entities must stay awake at least one tick.");
+        }
+        this.wakeTicks = wakeTicks;
+        this.wakeDistance = wakeDistance;
+    }
+
+    /**
+     * Set the most ticks an update catches up on, entities that slept longer don't jump further.
+     */
+    public void setMaxElapsedTicks(int maxElapsedTicks) {
+        if (maxElapsedTicks < 1) {
+            throw new IllegalArgumentException("An update catches up on at least one tick.");
+        }
+        this.maxElapsedTicks = maxElapsedTicks;
+    }
+
+    /**
+     * Keep the entity updating every tick for a while, wherever it is, and wake the entities near it.
+     */
+    public void wake(Entity entity) {
+        wake(entity, wakeTicks);
+    }
+
+    private void wake(Entity entity, int ticks) {
+        int[] remaining = woken.get(entity);
+        if (remaining == null) {
+            woken.put(entity, new int[]{ticks});
+            wokenOrder.add(entity);
+        } else if (Math.abs(remaining[0]) < Math.abs(ticks) || (remaining[0] < 0 && ticks > 0)) {
+            remaining[0] = ticks;
+        }
+    }
+
+    /**
+     * Update the entities of the world that are near a focus or awake.
+     */
+    public void tick(World world) {
+        tick++;
+        activeCount = reducedCount = throttledCount = wokenCount = 0;
+        throttled.clear();
+
+        for (Focus focus : focuses) {
+            focus.query(world, activeDistance, query);
+            for (int i = 0; i < query.size(); i++) {
+                if (update(query.get(i))) {
+                    activeCount++;
+                }
+            }
+        }
+
+        updateWoken(world);
+
+        for (Focus focus : focuses) {
+            focus.query(world, reducedDistance, query);
+            for (int i = 0; i < query.size(); i++) {
+                Entity entity = query.get(i);
+                long last = lastTick(entity);
+                if (last == tick) {
+                    continue;
+                }
+
+                // staggered by entity so the entities at a reduced rate don't all update on the same tick.
+                if ((tick + entity.getEntityID()) % reducedInterval == 0 || tick - last >= reducedInterval) {
+                    update(entity);
+                    reducedCount++;
+                } else {
+                    throttled.add(entity);
+                }
+            }
+        }
+        query.clear();
+
+        throttledCount = throttled.size();
+        sleepingCount = Math.max(0, world.getWorldEntities().size() - activeCount - wokenCount - reducedCount - throttledCount);
+    }
+
+    /**
+     * Update the woken entities, entities woken by an event wake their neighbours.
+     */
+    private void updateWoken(World world) {
+        // entities woken by a neighbour are appended and update this tick too.
+        int kept = 0;
+        for (int i = 0; i < wokenOrder.size(); i++) {
+            Entity entity = wokenOrder.get(i);
+            int[] remaining = woken.get(entity);
+            if (!world.containsEntity(entity)) {
+                woken.remove(entity);
+                continue;
+            }
+
+            if (update(entity)) {
+                wokenCount++;
+            }
+            if (remaining[0] > 0 && wakeDistance > 0) {
+                world.getEntitiesIn(entity.getX() - wakeDistance, entity.getY() - wakeDistance,
+                        entity.getWidth() + wakeDistance * 2, entity.getHeight() + wakeDistance * 2, neighbours);
+                for (int j = 0; j < neighbours.size(); j++) {
+                    if (neighbours.get(j) != entity) {
+                        wake(neighbours.get(j), -wakeTicks);
+                    }
+                }
+                neighbours.clear();
+            }
+
+            remaining[0] += remaining[0] > 0 ? -1 : 1;
+            if (remaining[0] == 0) {
+                woken.remove(entity);
+            } else {
+                wokenOrder.set(kept++, entity);
+            }
+        }
+        wokenOrder.subList(kept, wokenOrder.size()).clear();
+    }
+
+    /**
+     * Update the entity with the ticks since it last updated, unless it already updated this tick.
+     */
+    private boolean update(Entity entity) {
+        long last = lastTick(entity);
+        if (last == tick) {
+            return false;
+        }
+
+        int elapsed = last == 0 ? 1 : (int) Math.max(1, Math.min(tick - last, maxElapsedTicks));
+        entity.setLastTick(tick);
+        entity.updateEntity(elapsed);
+        return true;
+    }
+
+    /**
+     * Get the tick the entity last updated on, or 0 if it never did under these zones. An entity keeps the tick of
+     * zones that updated it before, which can be ahead of the tick of these.
+     */
+    private long lastTick(Entity entity) {
+        long last = entity.getLastTick();
+        return last > tick ? 0 : last;
+    }
+
+    /**
+     * Get the amount of entities that updated last tick because they were within the active distance.
+     */
+    public int getActiveCount() {
+        return activeCount;
+    }
+
+    /**
+     * Get the amount of entities that updated last tick at a reduced rate.
+     */
+    public int getReducedCount() {
+        return reducedCount;
+    }
+
+    /**
+     * Get the amount of entities within the reduced distance that skipped last tick.
+     */
+    public int getThrottledCount() {
+        return throttledCount;
+    }
+
+    /**
+     * Get the amount of entities that updated last tick because they were woken.
+     */
+    public int getWokenCount() {
+        return wokenCount;
+    }
+
+    /**
+     * Get the amount of entities that slept last tick.
+     */
+    public int getSleepingCount() {
+        return sleepingCount;
+    }
+
+    /**
+     * Get the amount of ticks so far.
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    private static final class Focus {
+        private final Object owner;
+        private final IntSupplier x, y, width, height;
+
+        private Focus(Object owner, IntSupplier x, IntSupplier y, IntSupplier width, IntSupplier height) {
+            this.owner = owner;
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+        }
+
+        private void query(World world, int distance, List<Entity> result) {
+            result.clear();
+            world.getEntitiesIn(x.getAsInt() - distance, y.getAsInt() - distance,
+                    Math.max(1, width.getAsInt()) + distance * 2, Math.max(1, height.getAsInt()) + distance * 2, result);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package me.vrekt.lunar.world.tick;
+
+/**
+ * An entity that can be updated at the same time as entities in other regions, see {@link ParallelTickPhase}.
+ * Implemented by {@link me.vrekt.lunar.entity.Entity} subclasses.
+ */
+public interface ParallelEntity {
+
+    /**
+     * Update the entity, called instead of {@link me.vrekt.lunar.entity.Entity#updateEntity()}.
+     * Only change this entity and the entities {@link TickContext#isLocal(me.vrekt.lunar.entity.Entity)} says are
+     * in the same region, read other entities through the context and defer anything else with {@link TickContext#defer(Runnable)}.
+     */
+    void updateEntity(TickContext context);
+
+}
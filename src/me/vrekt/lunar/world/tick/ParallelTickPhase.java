@@ -0,0 +1,249 @@
+package me.vrekt.lunar.world.tick;
+
+import me.vrekt.lunar.entity.Entity;
+import me.vrekt.lunar.utilities.LongObjectMap;
+import me.vrekt.lunar.utilities.Utilities;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Updates the entities of a world on a {@link ForkJoinPool}. Entities implementing {@link ParallelEntity} are split
+ * into square regions by their position and the regions update at the same time, each on one thread.
+ * <p>
+ * The positions every entity had when the tick began are copied first and read through {@link TickContext},
+ * so what an entity sees of the other regions doesn't depend on how far they got. Anything that reaches
+ * across regions is deferred and run afterwards on the calling thread in region order, which keeps ticks
+ * deterministic. Entities that don't implement {@link ParallelEntity} update last, on the calling thread.
+ * <p>
+ * While regions update, entities must not query the world, add or remove entities, or create bounding boxes.
+ * Use {@link me.vrekt.lunar.world.World#tickEntities()} to run a phase.
+ */
+public class ParallelTickPhase {
+
+    /**
+     * The default region size in pixels.
+     */
+    public static final int DEFAULT_REGION_SIZE = 256;
+
+    // regions with fewer entities than this are not split over more tasks.
+    private static final int SPLIT_THRESHOLD = 256;
+
+    private static final Comparator<TickContext> REGION_ORDER = (first, second) -> {
+        int compare = Integer.compare(first.getRegionY(), second.getRegionY());
+        return compare != 0 ? compare : Integer.compare(first.getRegionX(), second.getRegionX());
+    };
+
+    private final ForkJoinPool pool;
+    private final int regionShift;
+
+    private final LongObjectMap<TickContext> regions = new LongObjectMap<>();
+    private TickContext[] active = new TickContext[16];
+    private int activeCount;
+    private TickContext[] free = new TickContext[16];
+    private int freeCount;
+
+    // by world slot, the entity, its region and its position when the tick began.
+    private Entity[] entities = new Entity[64];
+    private TickContext[] regionOf = new TickContext[64];
+    private int[] startX = new int[64], startY = new int[64];
+    private int entityCount;
+
+    private Entity[] serial = new Entity[16];
+    private int serialCount;
+
+    private long parallelNanos, mergeNanos;
+
+    /**
+     * Initialize the phase on the common pool with 256 pixel regions.
+     */
+    public ParallelTickPhase() {
+        this(ForkJoinPool.commonPool(), DEFAULT_REGION_SIZE);
+    }
+
+    /**
+     * Initialize the phase.
+     *
+     * @param pool       the pool regions update on.
+     * @param regionSize the width and height of a region, must be a power of two.
+     *                   Regions of many entities spread the work, regions of few entities defer less.
+     */
+    public ParallelTickPhase(ForkJoinPool pool, int regionSize) {
+        if (regionSize < 1 || Integer.bitCount(regionSize) != 1) {
+            throw new IllegalArgumentException("The region size must be a power of two.");
+        }
+        this.pool = pool;
+        this.regionShift = Integer.numberOfTrailingZeros(regionSize);
+    }
+
+    /**
+     * Update the entities, the entity at index i must have world slot i.
+     */
+    public void tick(List<Entity> worldEntities) {
+        long start = System.nanoTime();
+        partition(worldEntities);
+
+        if (activeCount == 1) {
+            active[0].run();
+        } else if (activeCount > 1) {
+            pool.invoke(new RegionTask(0, activeCount));
+        }
+        long merge = System.nanoTime();
+        parallelNanos = merge - start;
+
+        for (int i = 0; i < activeCount; i++) {
+            List<Runnable> deferred = active[i].deferred;
+            for (int j = 0; j < deferred.size(); j++) {
+                deferred.get(j).run();
+            }
+        }
+        for (int i = 0; i < serialCount; i++) {
+            serial[i].updateEntity();
+        }
+        clear();
+        mergeNanos = System.nanoTime() - merge;
+    }
+
+    /**
+     * Copy the positions and put every parallel entity in the region of its position.
+     */
+    private void partition(List<Entity> worldEntities) {
+        entityCount = worldEntities.size();
+        if (entityCount > entities.length) {
+            int capacity = Integer.highestOneBit(entityCount - 1) << 1;
+            entities = new Entity[capacity];
+            regionOf = new TickContext[capacity];
+            startX = new int[capacity];
+            startY = new int[capacity];
+        }
+
+        for (int slot = 0; slot < entityCount; slot++) {
+            Entity entity = worldEntities.get(slot);
+            entities[slot] = entity;
+            startX[slot] = entity.getX();
+            startY[slot] = entity.getY();
+
+            if (!(entity instanceof ParallelEntity)) {
+                if (serialCount == serial.length) {
+                    serial = Arrays.copyOf(serial, serialCount << 1);
+                }
+                serial[serialCount++] = entity;
+                continue;
+            }
+
+            int regionX = entity.getX() >> regionShift;
+            int regionY = entity.getY() >> regionShift;
+            long key = Utilities.packCoordinates(regionX, regionY);
+            TickContext region = regions.get(key);
+            if (region == null) {
+                region = freeCount > 0 ? free[--freeCount] : new TickContext(this);
+                region.reset(key, regionX, regionY);
+                regions.put(key, region);
+                if (activeCount == active.length) {
+                    active = Arrays.copyOf(active, activeCount << 1);
+                }
+                active[activeCount++] = region;
+            }
+            region.add(entity);
+            regionOf[slot] = region;
+        }
+
+        Arrays.sort(active, 0, activeCount, REGION_ORDER);
+    }
+
+    private void clear() {
+        for (int i = 0; i < activeCount; i++) {
+            TickContext region = active[i];
+            regions.remove(region.getKey());
+            region.reset(0, 0, 0);
+            if (freeCount == free.length) {
+                free = Arrays.copyOf(free, freeCount << 1);
+            }
+            free[freeCount++] = region;
+            active[i] = null;
+        }
+        activeCount = 0;
+
+        Arrays.fill(entities, 0, entityCount, null);
+        Arrays.fill(regionOf, 0, entityCount, null);
+        entityCount = 0;
+        Arrays.fill(serial, 0, serialCount, null);
+        serialCount = 0;
+    }
+
+    private int slotOf(Entity entity) {
+        int slot = entity.getWorldSlot();
+        return slot >= 0 && slot < entityCount && entities[slot] == entity ? slot : -1;
+    }
+
+    int snapshotX(Entity entity) {
+        int slot = slotOf(entity);
+        return slot == -1 ? entity.getX() : startX[slot];
+    }
+
+    int snapshotY(Entity entity) {
+        int slot = slotOf(entity);
+        return slot == -1 ? entity.getY() : startY[slot];
+    }
+
+    TickContext regionOf(Entity entity) {
+        int slot = slotOf(entity);
+        return slot == -1 ? null : regionOf[slot];
+    }
+
+    /**
+     * Get how long the regions took to update last tick, in nanoseconds.
+     */
+    public long getParallelNanos() {
+        return parallelNanos;
+    }
+
+    /**
+     * Get how long the deferred actions and the serial entities took last tick, in nanoseconds.
+     */
+    public long getMergeNanos() {
+        return mergeNanos;
+    }
+
+    /**
+     * Get the region size.
+     */
+    public int getRegionSize() {
+        return 1 << regionShift;
+    }
+
+    /**
+     * Updates a range of regions, split in halves while the range holds enough entities to be worth it.
+     */
+    @SuppressWarnings("serial")
+    private final class RegionTask extends RecursiveAction {
+        private final int from, to;
+
+        private RegionTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int entities = 0;
+                for (int i = from; i < to && entities < SPLIT_THRESHOLD; i++) {
+                    entities += active[i].count;
+                }
+                if (entities >= SPLIT_THRESHOLD) {
+                    int middle = (from + to) >>> 1;
+                    invokeAll(new RegionTask(from, middle), new RegionTask(middle, to));
+                    return;
+                }
+            }
+
+            for (int i = from; i < to; i++) {
+                active[i].run();
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package me.vrekt.lunar.world.tick;
+
+import me.vrekt.lunar.entity.Entity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * One region of a {@link ParallelTickPhase}, given to the entities updated in it.
+ * The entities of a region update on the same thread in the order of the world, regions update at the same time.
+ */
+public final class TickContext {
+
+    private final ParallelTickPhase phase;
+    private long key;
+    private int regionX, regionY;
+
+    Entity[] entities = new Entity[16];
+    int count;
+    final List<Runnable> deferred = new ArrayList<>();
+
+    TickContext(ParallelTickPhase phase) {
+        this.phase = phase;
+    }
+
+    void reset(long key, int regionX, int regionY) {
+        this.key = key;
+        this.regionX = regionX;
+        this.regionY = regionY;
+        Arrays.fill(entities, 0, count, null);
+        count = 0;
+        deferred.clear();
+    }
+
+    void add(Entity entity) {
+        if (count == entities.length) {
+            entities = Arrays.copyOf(entities, count << 1);
+        }
+        entities[count++] = entity;
+    }
+
+    void run() {
+        for (int i = 0; i < count; i++) {
+            ((ParallelEntity) entities[i]).updateEntity(this);
+        }
+    }
+
+    /**
+     * Get the X of the entity when the tick began, the same for every region.
+     */
+    public int getX(Entity entity) {
+        return phase.snapshotX(entity);
+    }
+
+    /**
+     * Get the Y of the entity when the tick began, the same for every region.
+     */
+    public int getY(Entity entity) {
+        return phase.snapshotY(entity);
+    }
+
+    /**
+     * Return if the entity updates in this region, in which case it can be read and changed directly.
+     */
+    public boolean isLocal(Entity entity) {
+        return phase.regionOf(entity) == this;
+    }
+
+    /**
+     * Run the action after every region updated, on the thread that ticks the world.
+     * Actions run in the order of the regions and then the order they were deferred in, so the outcome
+     * doesn't depend on which thread updated what.
+     */
+    public void defer(Runnable action) {
+        deferred.add(action);
+    }
+
+    /**
+     * Get the X of this region, in regions.
+     */
+    public int getRegionX() {
+        return regionX;
+    }
+
+    /**
+     * Get the Y of this region, in regions.
+     */
+    public int getRegionY() {
+        return regionY;
+    }
+
+    /**
+     * Get the amount of entities updated in this region.
+     */
+    public int size() {
+        return count;
+    }
+
+    long getKey() {
+        return key;
+    }
+}